@@ -0,0 +1,277 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.lambdaschool.usermodel.UserModelApplication;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Start time and read latency of the application on an in-memory database, compared with the database file
+ * of the persistent profile, read plainly or through a memory mapping.
+ * <p>
+ * In memory every start generates the users again; from a file they are already there.
+ * The file is generated once per number of users into target/persistence-benchmark and reused by later runs,
+ * delete it after changing the models. For example
+ * mvn -P benchmarks verify -Djmh.args="-p users=5000000 PersistenceBenchmark"
+ */
+public class PersistenceBenchmark
+{
+    /**
+     * Where the application keeps its data, and how to start it there
+     */
+    @State(Scope.Benchmark)
+    public static class Storage
+    {
+        /**
+         * Numbers the in-memory databases, so a start never finds the data of the one before
+         */
+        private static final AtomicInteger DATABASES = new AtomicInteger();
+
+        /**
+         * memory for an in-memory database, file or nioMapped for the persistent profile with that file access
+         */
+        @Param({"memory", "file", "nioMapped"})
+        public String storage;
+
+        /**
+         * The number of users (int) generated on top of the seed data
+         */
+        @Param({"100000"})
+        public int users;
+
+        /**
+         * The directory (Path) of the database file with this number of users
+         */
+        private Path dataDir;
+
+        /**
+         * Generates the database file unless an earlier run left one behind
+         */
+        @Setup(Level.Trial)
+        public void createDatabaseFile()
+        {
+            dataDir = Paths.get("target",
+                "persistence-benchmark",
+                "users-" + users)
+                .toAbsolutePath();
+            if (!"memory".equals(storage) && !Files.exists(dataDir.resolve("usermodel.mv.db")))
+            {
+                // plain file access writes faster than a mapping
+                start("file").close();
+            }
+        }
+
+        /**
+         * Starts the application on this storage
+         *
+         * @return The running application
+         */
+        ConfigurableApplicationContext start()
+        {
+            return start(storage);
+        }
+
+        /**
+         * Starts the application, generating the users when they are not there yet.
+         * The username index and email counts are left out: they are read in the background after every start,
+         * from memory or file alike, and would only compete with the reads measured.
+         *
+         * @param storage memory, or the file access of the persistent profile
+         * @return The running application
+         */
+        private ConfigurableApplicationContext start(String storage)
+        {
+            // passed as command line arguments, as only those override application.properties
+            List<String> args = new ArrayList<>(Arrays.asList("--server.port=0",
+                "--h2.tcp.enabled=false",
+                "--h2.web.enabled=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--usermodel.search.index.enabled=false",
+                "--usermodel.emailcounts.enabled=false",
+                "--usermodel.generate.users=" + users));
+            if ("memory".equals(storage))
+            {
+                args.add("--spring.datasource.url=jdbc:h2:mem:persistence" + DATABASES.incrementAndGet() + ";DB_CLOSE_ON_EXIT=FALSE");
+            } else
+            {
+                args.add("--spring.profiles.active=persistent");
+                args.add("--usermodel.data-dir=" + dataDir);
+                args.add("--usermodel.h2.file-access=" + storage);
+            }
+            return new SpringApplicationBuilder(UserModelApplication.class).run(args.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * The application started by the start time benchmark, stopped after each start
+     */
+    @State(Scope.Benchmark)
+    public static class Started
+    {
+        /**
+         * The running application
+         */
+        ConfigurableApplicationContext context;
+
+        /**
+         * Stops the application
+         */
+        @TearDown(Level.Iteration)
+        public void stop()
+        {
+            if (context != null)
+            {
+                context.close();
+                context = null;
+            }
+        }
+    }
+
+    /**
+     * The application read from by the read latency benchmark
+     */
+    @State(Scope.Benchmark)
+    public static class Running
+    {
+        /**
+         * The running application
+         */
+        ConfigurableApplicationContext context;
+
+        /**
+         * The user service of the running application
+         */
+        UserService userService;
+
+        /**
+         * Runs the reads in a read-only transaction, the way the controllers run them with the session kept open
+         */
+        TransactionTemplate readOnlyTransaction;
+
+        /**
+         * The primary keys of all users
+         */
+        long[] userids;
+
+        /**
+         * Starts the application and finds its users
+         *
+         * @param storage Where the data is kept
+         */
+        @Setup(Level.Trial)
+        public void start(Storage storage)
+        {
+            context = storage.start();
+            userService = context.getBean(UserService.class);
+            readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            readOnlyTransaction.setReadOnly(true);
+            userids = context.getBean(JdbcTemplate.class)
+                .queryForList("SELECT userid FROM users",
+                    Long.class)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        }
+
+        /**
+         * Stops the application
+         */
+        @TearDown(Level.Trial)
+        public void stop()
+        {
+            context.close();
+        }
+    }
+
+    /**
+     * The random choices of one benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Reader
+    {
+        /**
+         * Picks the user read next
+         */
+        SplittableRandom random = new SplittableRandom(42);
+    }
+
+    /**
+     * Starts the application in a fresh JVM until it is ready to serve, including putting in any data still missing
+     *
+     * @param storage Where the data is kept
+     * @param started Holds the application until it is stopped
+     * @return The running application
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(value = 5,
+        warmups = 1)
+    public ConfigurableApplicationContext coldStart(
+        Storage storage,
+        Started started)
+    {
+        started.context = storage.start();
+        return started.context;
+    }
+
+    /**
+     * Reads a random user with its emails and roles once the application is warmed up.
+     * The database is small enough for H2's cache, so this is the cost of reading through the cache once it holds every page.
+     *
+     * @param running The running application
+     * @param reader  The benchmark thread
+     * @return The number of emails and roles read, so the reads are not optimized away
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5,
+        time = 5)
+    @Measurement(iterations = 5,
+        time = 5)
+    @Fork(1)
+    public int findUserById(
+        Running running,
+        Reader reader)
+    {
+        long userid = running.userids[reader.random.nextInt(running.userids.length)];
+        return running.readOnlyTransaction.execute(status ->
+        {
+            User user = running.userService.findUserById(userid);
+            return user.getUseremails()
+                .size() + user.getRoles()
+                .size();
+        });
+    }
+}
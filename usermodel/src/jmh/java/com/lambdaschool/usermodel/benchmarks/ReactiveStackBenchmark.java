@@ -0,0 +1,215 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.lambdaschool.usermodel.UserModelApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.netty.DisposableServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the user reads over http, comparing the controllers on Tomcat with the reactive stack on Netty
+ * serving the same endpoints from the same database. Many client threads send requests at once, more than Tomcat
+ * has threads and far more than there are cores.
+ * <p>
+ * The core count is fixed with -XX:ActiveProcessorCount, which sizes Tomcat's and Netty's thread pools alike.
+ * Pin the run to as many cores so the two also get the same CPU, for example
+ * taskset -c 0-3 mvn -P benchmarks verify -Djmh.args=ReactiveStackBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2,
+    time = 10)
+@Measurement(iterations = 3,
+    time = 10)
+@Fork(value = 1,
+    jvmArgsAppend = "-XX:ActiveProcessorCount=4")
+@Threads(128)
+public class ReactiveStackBenchmark
+{
+    /**
+     * Which stack serves the requests: mvc for the controllers, reactive for the WebFlux and R2DBC handlers
+     */
+    @Param({"mvc", "reactive"})
+    public String stack;
+
+    /**
+     * The number (int) of database connections of each stack
+     */
+    @Param({"10"})
+    public int poolSize;
+
+    /**
+     * The number of users (int) generated before the run
+     */
+    @Param({"10000"})
+    public int users;
+
+    /**
+     * The running application
+     */
+    private ConfigurableApplicationContext context;
+
+    /**
+     * Sends the requests. Its own threads only deliver responses, the benchmark threads wait for them.
+     */
+    private HttpClient client;
+
+    /**
+     * Where the chosen stack listens, for example http://localhost:43517
+     */
+    private String baseUrl;
+
+    /**
+     * The primary keys of the generated users
+     */
+    private long[] userids;
+
+    /**
+     * The usernames of the generated users
+     */
+    private String[] usernames;
+
+    /**
+     * Starts the application, with both stacks, and generated users
+     */
+    @Setup(Level.Trial)
+    public void startApplication()
+    {
+        // passed as command line arguments, as only those override application.properties
+        context = new SpringApplicationBuilder(UserModelApplication.class).run("--server.port=0",
+            "--h2.tcp.enabled=false",
+            "--h2.web.enabled=false",
+            "--spring.datasource.url=jdbc:h2:mem:reactivestack;DB_CLOSE_ON_EXIT=FALSE",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN",
+            "--usermodel.search.index.enabled=false",
+            "--usermodel.emailcounts.enabled=false",
+            "--usermodel.reactive.enabled=true",
+            "--usermodel.reactive.port=0",
+            "--usermodel.reactive.pool-size=" + poolSize,
+            "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+            "--usermodel.generate.users=" + users);
+
+        List<Map<String, Object>> rows = context.getBean(JdbcTemplate.class)
+            .queryForList("SELECT userid, username FROM users");
+        userids = new long[rows.size()];
+        usernames = new String[rows.size()];
+        for (int i = 0; i < rows.size(); i++)
+        {
+            userids[i] = ((Number) rows.get(i)
+                .get("USERID")).longValue();
+            usernames[i] = (String) rows.get(i)
+                .get("USERNAME");
+        }
+
+        int port = "reactive".equals(stack) ? context.getBean(DisposableServer.class)
+            .port() : ((WebServerApplicationContext) context).getWebServer()
+            .getPort();
+        baseUrl = "http://localhost:" + port;
+        client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    /**
+     * Stops the application
+     */
+    @TearDown(Level.Trial)
+    public void stopApplication()
+    {
+        context.close();
+    }
+
+    /**
+     * The random choices of one client thread
+     */
+    @State(Scope.Thread)
+    public static class Client
+    {
+        /**
+         * The seed (long) of the next client thread, so the threads do not all ask for the same users
+         */
+        private static final AtomicLong NEXT_SEED = new AtomicLong(42);
+
+        /**
+         * Picks the user of the next request
+         */
+        SplittableRandom random = new SplittableRandom(NEXT_SEED.getAndIncrement());
+    }
+
+    /**
+     * Reads one user with its emails and roles by its id
+     *
+     * @param client The client thread
+     * @return The status code, so the call is not optimized away
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    @Benchmark
+    public int getUser(Client client) throws IOException, InterruptedException
+    {
+        return get("/users/user/" + userids[client.random.nextInt(userids.length)]);
+    }
+
+    /**
+     * Reads one user with its emails and roles by its name
+     *
+     * @param client The client thread
+     * @return The status code, so the call is not optimized away
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    @Benchmark
+    public int getUserByName(Client client) throws IOException, InterruptedException
+    {
+        return get("/users/user/name/" + usernames[client.random.nextInt(usernames.length)]);
+    }
+
+    /**
+     * Sends a GET request and checks it succeeded
+     *
+     * @param path The path of the endpoint
+     * @return The status code (int) of the response
+     * @throws IOException          if the request fails or does not return 200
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    private int get(String path) throws IOException, InterruptedException
+    {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200)
+        {
+            throw new IOException(path + " returned " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,123 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.lambdaschool.usermodel.UserModelApplication;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads every user, with its emails and roles, in a read-only transaction and in a read-write one.
+ * The service runs its reads read-only; the read-write run shows what that saves: Hibernate keeps no copy of the
+ * loaded state for dirty checking, and has nothing to flush and check at commit.
+ * <p>
+ * Run with the gc profiler to see the memory allocated per call, for example
+ * mvn -P benchmarks verify -Djmh.args="-prof gc ReadOnlyTransactionBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3,
+    time = 10)
+@Measurement(iterations = 5,
+    time = 10)
+@Fork(value = 1,
+    jvmArgsAppend = "-Xmx2g")
+public class ReadOnlyTransactionBenchmark
+{
+    /**
+     * readOnly or readWrite, the transaction findAll runs in
+     */
+    @Param({"readOnly", "readWrite"})
+    public String transaction;
+
+    /**
+     * The number of users (int) generated before the run
+     */
+    @Param({"100000"})
+    public int users;
+
+    /**
+     * The running application
+     */
+    private ConfigurableApplicationContext context;
+
+    /**
+     * The user service of the running application
+     */
+    private UserService userService;
+
+    /**
+     * Runs findAll in the chosen transaction. The service method joins it, so this decides whether it is read-only.
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Starts the application with generated users
+     */
+    @Setup(Level.Trial)
+    public void startApplication()
+    {
+        // passed as command line arguments, as only those override application.properties
+        context = new SpringApplicationBuilder(UserModelApplication.class).run("--server.port=0",
+            "--h2.tcp.enabled=false",
+            "--h2.web.enabled=false",
+            "--spring.datasource.url=jdbc:h2:mem:readonly;DB_CLOSE_ON_EXIT=FALSE",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN",
+            "--usermodel.search.index.enabled=false",
+            "--usermodel.emailcounts.enabled=false",
+            "--usermodel.generate.users=" + users);
+
+        userService = context.getBean(UserService.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly("readOnly".equals(transaction));
+    }
+
+    /**
+     * Stops the application
+     */
+    @TearDown(Level.Trial)
+    public void stopApplication()
+    {
+        context.close();
+    }
+
+    /**
+     * Lists every user and loads their emails and roles, as writing the response would
+     *
+     * @return The number (int) of emails and roles read, so the reads are not optimized away
+     */
+    @Benchmark
+    public int findAll()
+    {
+        return transactionTemplate.execute(status ->
+        {
+            int read = 0;
+            for (User user : userService.findAll())
+            {
+                read += user.getUseremails()
+                    .size() + user.getRoles()
+                    .size();
+            }
+            return read;
+        });
+    }
+}
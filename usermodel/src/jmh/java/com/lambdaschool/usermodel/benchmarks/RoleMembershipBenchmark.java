@@ -0,0 +1,112 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.lambdaschool.usermodel.services.RoleMembership;
+import com.lambdaschool.usermodel.services.RoleService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks checking whether a user has a role against the seeded embedded H2 database, see UserModelState:
+ * from the role membership index, through UserService.hasRole as callers do, and with the query the index replaces.
+ * Each call checks the next sampled user against the admin role, which every tenth seeded user has.
+ * <p>
+ * Run with -prof gc to see the index check allocates nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3,
+    time = 2)
+@Measurement(iterations = 5,
+    time = 2)
+@Fork(1)
+public class RoleMembershipBenchmark
+{
+    /**
+     * The position (int) of the next sample to use
+     */
+    private int next = 0;
+
+    /**
+     * The role membership index of the running application
+     */
+    private RoleMembership roleMembership;
+
+    /**
+     * The primary key (long) of the admin role
+     */
+    private long adminRoleid;
+
+    /**
+     * Waits for the role membership index to be read
+     *
+     * @param state The seeded application
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Setup(Level.Trial)
+    public void waitForIndex(UserModelState state) throws InterruptedException
+    {
+        roleMembership = state.context.getBean(RoleMembership.class);
+        adminRoleid = state.context.getBean(RoleService.class)
+            .findByName("admin")
+            .getRoleid();
+        while (!roleMembership.isReady())
+        {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * The primary key of the next sampled user
+     *
+     * @param state The seeded application
+     * @return The user id (long) of a sampled user
+     */
+    private long nextUserid(UserModelState state)
+    {
+        next = (next + 1) % UserModelState.SAMPLES;
+        return state.sampleUsers[next].getUserid();
+    }
+
+    @Benchmark
+    public boolean hasRoleIndex(UserModelState state)
+    {
+        return roleMembership.hasRole(nextUserid(state),
+            adminRoleid);
+    }
+
+    @Benchmark
+    public boolean hasRoleService(UserModelState state)
+    {
+        return state.userService.hasRole(nextUserid(state),
+            adminRoleid);
+    }
+
+    @Benchmark
+    public boolean hasRoleQuery(UserModelState state)
+    {
+        long userid = nextUserid(state);
+        return state.readOnlyTransaction.execute(status -> state.userRepository.checkUserRolesCombo(userid,
+            adminRoleid)
+            .getCount() > 0);
+    }
+
+    @Benchmark
+    public long[] findMembers(UserModelState state)
+    {
+        return roleMembership.findMembers(adminRoleid,
+            nextUserid(state),
+            100);
+    }
+}
@@ -0,0 +1,140 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.lambdaschool.usermodel.UserModelApplication;
+import com.lambdaschool.usermodel.repository.UserRepository;
+import com.lambdaschool.usermodel.services.UserService;
+import com.lambdaschool.usermodel.services.UsernameIndex;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Random;
+
+/**
+ * Starts the application against its own embedded H2 database filled by SyntheticData with the loadtest profile,
+ * for the benchmarks needing millions of users, which UserModelState takes too long to seed through the services.
+ * <p>
+ * The number of users is the JMH parameter users, for example -p users=1000000. 2000000 users take about 7 minutes
+ * to generate on one core and fit in -jvmArgsAppend -Xmx4g; the default 5000000 take longer and need a bigger heap.
+ * The email counts, role membership index and audit log are turned off, so only the username index takes memory.
+ */
+@State(Scope.Benchmark)
+public class SyntheticUsersState
+{
+    /**
+     * The number of users (int) generated
+     */
+    @Param({"5000000"})
+    public int users;
+
+    /**
+     * The seed (long) of the generated data and of the sampled substrings
+     */
+    @Param({"42"})
+    public long seed;
+
+    /**
+     * The number of prepared substrings (int) the benchmarks cycle through
+     */
+    public static final int SAMPLES = 1024;
+
+    /**
+     * The running application
+     */
+    public ConfigurableApplicationContext context;
+
+    /**
+     * The user service of the running application
+     */
+    public UserService userService;
+
+    /**
+     * The user repository of the running application, used for the LIKE query the username index replaces
+     */
+    public UserRepository userRepository;
+
+    /**
+     * The username index of the running application
+     */
+    public UsernameIndex usernameIndex;
+
+    /**
+     * Runs code in a read-only transaction, the way the service runs its reads
+     */
+    public TransactionTemplate readOnlyTransaction;
+
+    /**
+     * Substrings of 3 or 4 characters of randomly picked usernames
+     */
+    public String[] sampleSubstrings = new String[SAMPLES];
+
+    /**
+     * Starts the application, which generates the users, and waits for the username index to be built
+     *
+     * @throws InterruptedException if interrupted while waiting for the username index
+     */
+    @Setup(Level.Trial)
+    public void startApplication() throws InterruptedException
+    {
+        // passed as command line arguments, as only those override application.properties
+        context = new SpringApplicationBuilder(UserModelApplication.class).profiles("loadtest")
+            .run("--server.port=0",
+                "--h2.tcp.enabled=false",
+                "--h2.web.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:syntheticbenchmarks;DB_CLOSE_ON_EXIT=FALSE",
+                "--usermodel.generate.users=" + users,
+                "--usermodel.generate.seed=" + seed,
+                "--usermodel.emailcounts.enabled=false",
+                "--usermodel.membership.enabled=false",
+                "--usermodel.audit.enabled=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+
+        userService = context.getBean(UserService.class);
+        userRepository = context.getBean(UserRepository.class);
+        usernameIndex = context.getBean(UsernameIndex.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+
+        while (!usernameIndex.isReady())
+        {
+            Thread.sleep(100);
+        }
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long[] range = jdbcTemplate.queryForObject("SELECT MIN(userid), MAX(userid) FROM users",
+            (rs, row) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        Random random = new Random(seed);
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            String name = null;
+            while (name == null || name.length() < 4)
+            {
+                name = jdbcTemplate.query("SELECT username FROM users WHERE userid >= ? ORDER BY userid LIMIT 1",
+                    rs -> rs.next() ? rs.getString(1) : null,
+                    range[0] + (long) (random.nextDouble() * (range[1] - range[0] + 1)));
+            }
+            int length = 3 + random.nextInt(2);
+            int start = random.nextInt(name.length() - length + 1);
+            sampleSubstrings[i] = name.substring(start,
+                start + length);
+        }
+    }
+
+    /**
+     * Stops the application
+     */
+    @TearDown(Level.Trial)
+    public void stopApplication()
+    {
+        context.close();
+    }
+}
@@ -0,0 +1,258 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.github.javafaker.Faker;
+import com.lambdaschool.usermodel.UserModelApplication;
+import com.lambdaschool.usermodel.models.BulkImportResult;
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserRoles;
+import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.repository.UserRepository;
+import com.lambdaschool.usermodel.services.RoleService;
+import com.lambdaschool.usermodel.services.UserImportService;
+import com.lambdaschool.usermodel.services.UserService;
+import com.lambdaschool.usermodel.services.UsernameIndex;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Starts the application against its own embedded H2 database and seeds it with users for the benchmarks.
+ * <p>
+ * The number of users is the JMH parameter users, for example -p users=100000.
+ * The data is the same on every run: names come from Java Faker with a fixed seed.
+ */
+@State(Scope.Benchmark)
+public class UserModelState
+{
+    /**
+     * The number of users (int) seeded on top of the seed data
+     */
+    @Param({"1000", "10000"})
+    public int users;
+
+    /**
+     * The seed (long) of the random data
+     */
+    @Param({"42"})
+    public long seed;
+
+    /**
+     * The number of prepared ids, names and substrings (int) the benchmarks cycle through
+     */
+    public static final int SAMPLES = 1024;
+
+    /**
+     * The running application
+     */
+    public ConfigurableApplicationContext context;
+
+    /**
+     * The user service of the running application
+     */
+    public UserService userService;
+
+    /**
+     * The user repository of the running application, used for the LIKE query the username index replaces
+     */
+    public UserRepository userRepository;
+
+    /**
+     * The username index of the running application
+     */
+    public UsernameIndex usernameIndex;
+
+    /**
+     * Runs code in a read-only transaction, the way the service runs its reads
+     */
+    public TransactionTemplate readOnlyTransaction;
+
+    /**
+     * The primary key (long) of the role the addUserRole benchmark adds and deletes
+     */
+    public long dataRoleid;
+
+    /**
+     * Sampled seeded users, each with its id, username and emails as saved
+     */
+    public User[] sampleUsers = new User[SAMPLES];
+
+    /**
+     * Sampled username substrings of 3 or 4 characters
+     */
+    public String[] sampleSubstrings = new String[SAMPLES];
+
+    /**
+     * Starts the application, seeds the users and waits for the username index to be built
+     *
+     * @throws InterruptedException if interrupted while waiting for the username index
+     */
+    @Setup(Level.Trial)
+    public void startApplication() throws InterruptedException
+    {
+        // passed as command line arguments, as only those override application.properties
+        context = new SpringApplicationBuilder(UserModelApplication.class).run("--server.port=0",
+            "--h2.tcp.enabled=false",
+            "--h2.web.enabled=false",
+            "--spring.datasource.url=jdbc:h2:mem:benchmarks;DB_CLOSE_ON_EXIT=FALSE",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN");
+
+        userService = context.getBean(UserService.class);
+        userRepository = context.getBean(UserRepository.class);
+        usernameIndex = context.getBean(UsernameIndex.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+
+        RoleService roleService = context.getBean(RoleService.class);
+        Role userRole = roleService.findByName("user");
+        Role adminRole = roleService.findByName("admin");
+        dataRoleid = roleService.findByName("data")
+            .getRoleid();
+
+        BulkImportResult result = context.getBean(UserImportService.class)
+            .saveAll(generateUsers(userRole.getRoleid(),
+                adminRole.getRoleid()));
+        if (result.getImported() != users)
+        {
+            throw new IllegalStateException("Seeded " + result.getImported() + " of " + users + " users: " + result.getErrors());
+        }
+
+        while (!usernameIndex.isReady())
+        {
+            Thread.sleep(10);
+        }
+
+        Random random = new Random(seed);
+        readOnlyTransaction.executeWithoutResult(status ->
+        {
+            for (int i = 0; i < SAMPLES; i++)
+            {
+                User u = userService.findUserById(userRepository.findByUsernameContainingIgnoreCase("bench" + random.nextInt(users) + ".")
+                    .get(0)
+                    .getUserid());
+                sampleUsers[i] = detachedCopy(u);
+            }
+        });
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            String name = sampleUsers[random.nextInt(SAMPLES)].getUsername();
+            int length = 3 + random.nextInt(2);
+            int start = random.nextInt(name.length() - length + 1);
+            sampleSubstrings[i] = name.substring(start,
+                start + length);
+        }
+    }
+
+    /**
+     * Stops the application
+     */
+    @TearDown(Level.Trial)
+    public void stopApplication()
+    {
+        context.close();
+    }
+
+    /**
+     * Generates the users to seed. Usernames are a Faker user name followed by the number of the user,
+     * prefixed with bench so the seed data is never picked.
+     *
+     * @param userRoleid  The role every user gets
+     * @param adminRoleid The role every tenth user also gets
+     * @return The users to seed, generated as they are read
+     */
+    private Iterator<User> generateUsers(
+        long userRoleid,
+        long adminRoleid)
+    {
+        Faker faker = new Faker(new Locale("en-US"),
+            new Random(seed));
+
+        return new Iterator<User>()
+        {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < users;
+            }
+
+            @Override
+            public User next()
+            {
+                int i = next++;
+                User u = new User("bench" + i + "." + faker.name()
+                    .username(),
+                    "password",
+                    "bench" + i + "@bench.local",
+                    new ArrayList<>());
+                u.getUseremails()
+                    .add(new Useremail(u,
+                        faker.internet()
+                            .emailAddress()));
+                u.addRole(roleReference(userRoleid));
+                if (i % 10 == 0)
+                {
+                    u.addRole(roleReference(adminRoleid));
+                }
+                return u;
+            }
+        };
+    }
+
+    /**
+     * A role carrying only its id, the way a client sends it
+     *
+     * @param roleid The primary key (long) of the role
+     * @return A new role with only its id set
+     */
+    private static Role roleReference(long roleid)
+    {
+        Role r = new Role();
+        r.setRoleid(roleid);
+        return r;
+    }
+
+    /**
+     * Copies the id, username, primary email, roles and useremails of a user, the way a client sends it back on a PUT.
+     * Must be called inside of a transaction.
+     *
+     * @param u The user to copy
+     * @return A new user with the same id and values, not connected to the database
+     */
+    private static User detachedCopy(User u)
+    {
+        User copy = new User(u.getUsername(),
+            "password",
+            u.getPrimaryemail(),
+            new ArrayList<>());
+        copy.setUserid(u.getUserid());
+        for (UserRoles ur : u.getRoles())
+        {
+            copy.addRole(roleReference(ur.getRole()
+                .getRoleid()));
+        }
+        List<Useremail> useremails = new ArrayList<>();
+        for (Useremail ue : u.getUseremails())
+        {
+            useremails.add(new Useremail(copy,
+                ue.getUseremail()));
+        }
+        copy.setUseremails(useremails);
+        return copy;
+    }
+}
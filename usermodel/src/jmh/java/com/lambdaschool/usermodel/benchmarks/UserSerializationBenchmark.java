@@ -0,0 +1,162 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.Useremail;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks writing User graphs with Jackson, configured the way the application configures it, and reading lists
+ * of them back the way a calling service would: as JSON, and in the binary formats of BinaryFormatsConfig.
+ * The users are built in memory, no database is involved.
+ * <p>
+ * The size of the written list in each format is printed at setup, for example with -p listSize=10000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,
+    time = 2)
+@Measurement(iterations = 5,
+    time = 2)
+@Fork(1)
+public class UserSerializationBenchmark
+{
+    /**
+     * The number of users (int) in the list written by serializeUserList
+     */
+    @Param({"100", "10000"})
+    public int listSize;
+
+    /**
+     * The number of useremails (int) of each user
+     */
+    @Param({"3"})
+    public int useremails;
+
+    /**
+     * The format (String) written and read: json, smile or cbor
+     */
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    /**
+     * The writer and reader of the format
+     */
+    private ObjectMapper objectMapper;
+
+    /**
+     * A single user with its roles and useremails
+     */
+    private User user;
+
+    /**
+     * A list of listSize users
+     */
+    private List<User> users;
+
+    /**
+     * The list of users as written in the format
+     */
+    private byte[] usersWritten;
+
+    /**
+     * Builds the users, the writer of the format and the written list
+     *
+     * @throws JsonProcessingException if the list cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException
+    {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if ("smile".equals(format))
+        {
+            builder.factory(new SmileFactory());
+        } else if ("cbor".equals(format))
+        {
+            builder.factory(new CBORFactory());
+        }
+        objectMapper = builder.build();
+        objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+
+        List<Role> roles = new ArrayList<>();
+        String[] names = {"admin", "user", "data"};
+        for (int i = 0; i < names.length; i++)
+        {
+            Role r = new Role(names[i]);
+            r.setRoleid(i + 1);
+            roles.add(r);
+        }
+
+        users = new ArrayList<>();
+        for (int i = 0; i < listSize; i++)
+        {
+            User u = new User("user" + i,
+                "password",
+                "user" + i + "@lambdaschool.local",
+                new ArrayList<>());
+            u.setUserid(100 + i);
+            for (int j = 0; j < useremails; j++)
+            {
+                Useremail ue = new Useremail(u,
+                    "user" + i + "." + j + "@mymail.local");
+                ue.setUseremailid(10000 + i * useremails + j);
+                u.getUseremails()
+                    .add(ue);
+            }
+            for (int j = 0; j <= i % roles.size(); j++)
+            {
+                u.addRole(roles.get(j));
+            }
+            users.add(u);
+        }
+        user = users.get(users.size() - 1);
+
+        usersWritten = objectMapper.writeValueAsBytes(users);
+        System.out.println(listSize + " users as " + format + ": " + usersWritten.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws JsonProcessingException
+    {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] serializeUserList() throws JsonProcessingException
+    {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public List<User> deserializeUserList() throws IOException
+    {
+        return objectMapper.readValue(usersWritten,
+            new TypeReference<List<User>>()
+            {
+            });
+    }
+}
@@ -0,0 +1,138 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.lambdaschool.usermodel.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the UserServiceImpl hot paths against the seeded embedded H2 database, see UserModelState.
+ * Each call picks the next of the sampled users or username substrings.
+ * <p>
+ * findByNameContaining goes through the username index; findByNameContainingLike runs the LIKE query
+ * the index replaced, over the same substrings, to compare the two. Their latency percentiles over millions of users
+ * are sampled by UsernameSearchLatencyBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,
+    time = 2)
+@Measurement(iterations = 5,
+    time = 2)
+@Fork(1)
+public class UserServiceBenchmark
+{
+    /**
+     * The position (int) of the next sample to use
+     */
+    private int next = 0;
+
+    /**
+     * The next sampled user
+     *
+     * @param state The seeded application
+     * @return A sampled user, as saved
+     */
+    private User nextUser(UserModelState state)
+    {
+        next = (next + 1) % UserModelState.SAMPLES;
+        return state.sampleUsers[next];
+    }
+
+    /**
+     * The next sampled username substring
+     *
+     * @param state The seeded application
+     * @return A substring (String) of a sampled username
+     */
+    private String nextSubstring(UserModelState state)
+    {
+        next = (next + 1) % UserModelState.SAMPLES;
+        return state.sampleSubstrings[next];
+    }
+
+    @Benchmark
+    public User findUserById(UserModelState state)
+    {
+        return state.userService.findUserById(nextUser(state).getUserid());
+    }
+
+    @Benchmark
+    public User findByName(UserModelState state)
+    {
+        return state.userService.findByName(nextUser(state).getUsername());
+    }
+
+    @Benchmark
+    public List<User> findByNameContaining(UserModelState state)
+    {
+        return state.userService.findByNameContaining(nextSubstring(state));
+    }
+
+    @Benchmark
+    public List<User> findByNameContainingLike(UserModelState state)
+    {
+        String substring = nextSubstring(state);
+        return state.readOnlyTransaction.execute(status -> state.userRepository.findByUsernameContainingIgnoreCase(substring));
+    }
+
+    @Benchmark
+    public List<Long> usernameIndexSearch(UserModelState state)
+    {
+        return state.usernameIndex.search(nextSubstring(state),
+            50);
+    }
+
+    /**
+     * A full replace (PUT) sending back the user as it is, apart from the password
+     *
+     * @param state The seeded application
+     * @return The replaced user
+     */
+    @Benchmark
+    public User save(UserModelState state)
+    {
+        return state.userService.save(nextUser(state));
+    }
+
+    /**
+     * A partial update (PATCH) of the password
+     *
+     * @param state The seeded application
+     * @return The updated user
+     */
+    @Benchmark
+    public User update(UserModelState state)
+    {
+        User u = nextUser(state);
+        User patch = new User();
+        patch.setPassword("password" + next);
+        return state.userService.update(patch,
+            u.getUserid());
+    }
+
+    /**
+     * Adds a role to a user and deletes it again, so the data stays the same from one call to the next
+     *
+     * @param state The seeded application
+     */
+    @Benchmark
+    public void addUserRole(UserModelState state)
+    {
+        long userid = nextUser(state).getUserid();
+        state.userService.addUserRole(userid,
+            state.dataRoleid);
+        state.userService.deleteUserRole(userid,
+            state.dataRoleid);
+    }
+}
@@ -0,0 +1,96 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.lambdaschool.usermodel.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the latency of username searches over millions of generated users, see SyntheticUsersState, to check
+ * the p99 of the username index against the LIKE query it replaced. Each call searches the next sampled substring,
+ * keeping the best 50 users as GET /users/user/name/like/{userName}?limit=50 does.
+ * <p>
+ * Run for example with
+ * mvn -P benchmarks verify -DskipTests -Djmh.args="UsernameSearchLatencyBenchmark -jvmArgsAppend -Xmx8g"
+ * and read the p0.99 lines of each benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3,
+    time = 2)
+@Measurement(iterations = 5,
+    time = 5)
+@Fork(1)
+public class UsernameSearchLatencyBenchmark
+{
+    /**
+     * The most users (int) a search returns
+     */
+    private static final int LIMIT = 50;
+
+    /**
+     * The position (int) of the next sample to use
+     */
+    private int next = 0;
+
+    /**
+     * The next sampled username substring
+     *
+     * @param state The application with the generated users
+     * @return A substring (String) of a generated username
+     */
+    private String nextSubstring(SyntheticUsersState state)
+    {
+        next = (next + 1) % SyntheticUsersState.SAMPLES;
+        return state.sampleSubstrings[next];
+    }
+
+    /**
+     * The search the endpoint runs: the username index, then the users found are read
+     *
+     * @param state The application with the generated users
+     * @return The best matching users
+     */
+    @Benchmark
+    public List<User> findByNameContaining(SyntheticUsersState state)
+    {
+        return state.userService.findByNameContaining(nextSubstring(state),
+            LIMIT);
+    }
+
+    /**
+     * The username index alone
+     *
+     * @param state The application with the generated users
+     * @return The user ids of the best matching users
+     */
+    @Benchmark
+    public List<Long> usernameIndexSearch(SyntheticUsersState state)
+    {
+        return state.usernameIndex.search(nextSubstring(state),
+            LIMIT);
+    }
+
+    /**
+     * The LIKE query the index replaced, reading every matching user
+     *
+     * @param state The application with the generated users
+     * @return Every matching user
+     */
+    @Benchmark
+    public List<User> findByNameContainingLike(SyntheticUsersState state)
+    {
+        String substring = nextSubstring(state);
+        return state.readOnlyTransaction.execute(status -> state.userRepository.findByUsernameContainingIgnoreCase(substring));
+    }
+}
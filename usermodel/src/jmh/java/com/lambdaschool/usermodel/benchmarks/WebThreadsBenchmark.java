@@ -0,0 +1,209 @@
+package com.lambdaschool.usermodel.benchmarks;
+
+import com.lambdaschool.usermodel.UserModelApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the web tier over http, comparing requests run on Tomcat's platform threads with requests run on
+ * virtual threads. Many client threads send requests at once, more than Tomcat has threads, so in platform mode
+ * requests queue for a thread while others wait on the database.
+ * <p>
+ * Throughput is reported as operations per second and latency percentiles, including p0.99, by the sample time mode.
+ * The virtual mode needs Java 21: run the benchmarks profile with JAVA_HOME pointing at a Java 21, for example
+ * mvn -P benchmarks verify -Djmh.args=WebThreadsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2,
+    time = 5)
+@Measurement(iterations = 3,
+    time = 5)
+@Fork(1)
+@Threads(64)
+public class WebThreadsBenchmark
+{
+    /**
+     * How requests are run: platform for Tomcat's thread pool, virtual for a virtual thread per request
+     */
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    /**
+     * The size (int) of Tomcat's thread pool in platform mode, kept below the number of client threads
+     */
+    @Param({"20"})
+    public int maxThreads;
+
+    /**
+     * The number (int) of database connections, the same in both modes
+     */
+    @Param({"10"})
+    public int poolSize;
+
+    /**
+     * The number of users (int) generated before the run
+     */
+    @Param({"10000"})
+    public int users;
+
+    /**
+     * The running application
+     */
+    private ConfigurableApplicationContext context;
+
+    /**
+     * Sends the requests. Its own threads only deliver responses, the benchmark threads wait for them.
+     */
+    private HttpClient client;
+
+    /**
+     * Where the application listens, for example http://localhost:43517
+     */
+    private String baseUrl;
+
+    /**
+     * The primary keys of the generated users
+     */
+    private long[] userids;
+
+    /**
+     * Username substrings searched for, taken from the generated names
+     */
+    private static final String[] SUBSTRINGS = {"ann", "son", "mar", "lee", "ber", "ric", "ell", "tan"};
+
+    /**
+     * Starts the application in the chosen mode with generated users
+     */
+    @Setup(Level.Trial)
+    public void startApplication()
+    {
+        // passed as command line arguments, as only those override application.properties
+        context = new SpringApplicationBuilder(UserModelApplication.class).run("--server.port=0",
+            "--h2.tcp.enabled=false",
+            "--h2.web.enabled=false",
+            "--spring.datasource.url=jdbc:h2:mem:webthreads;DB_CLOSE_ON_EXIT=FALSE",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN",
+            "--usermodel.web.virtual-threads=" + "virtual".equals(threads),
+            "--server.tomcat.max-threads=" + maxThreads,
+            "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+            "--usermodel.generate.users=" + users);
+
+        List<Long> ids = context.getBean(JdbcTemplate.class)
+            .queryForList("SELECT userid FROM users",
+                Long.class);
+        userids = ids.stream()
+            .mapToLong(Long::longValue)
+            .toArray();
+
+        int port = ((WebServerApplicationContext) context).getWebServer()
+            .getPort();
+        baseUrl = "http://localhost:" + port;
+        client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    /**
+     * Stops the application
+     */
+    @TearDown(Level.Trial)
+    public void stopApplication()
+    {
+        context.close();
+    }
+
+    /**
+     * The random choices of one client thread
+     */
+    @State(Scope.Thread)
+    public static class Client
+    {
+        /**
+         * The seed (long) of the next client thread, so the threads do not all ask for the same users
+         */
+        private static final AtomicLong NEXT_SEED = new AtomicLong(42);
+
+        /**
+         * Picks the user or substring of the next request
+         */
+        SplittableRandom random = new SplittableRandom(NEXT_SEED.getAndIncrement());
+    }
+
+    /**
+     * Reads one user with its emails and roles
+     *
+     * @param client The client thread
+     * @return The status code, so the call is not optimized away
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    @Benchmark
+    public int getUser(Client client) throws IOException, InterruptedException
+    {
+        return get("/users/user/" + userids[client.random.nextInt(userids.length)]);
+    }
+
+    /**
+     * Searches users by part of their name
+     *
+     * @param client The client thread
+     * @return The status code, so the call is not optimized away
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    @Benchmark
+    public int searchUsers(Client client) throws IOException, InterruptedException
+    {
+        return get("/users/user/name/like/" + SUBSTRINGS[client.random.nextInt(SUBSTRINGS.length)] + "?limit=20");
+    }
+
+    /**
+     * Sends a GET request and checks it succeeded
+     *
+     * @param path The path of the endpoint
+     * @return The status code (int) of the response
+     * @throws IOException          if the request fails or does not return 200
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    private int get(String path) throws IOException, InterruptedException
+    {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200)
+        {
+            throw new IOException(path + " returned " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
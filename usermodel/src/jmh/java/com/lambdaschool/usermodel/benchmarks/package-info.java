@@ -0,0 +1,8 @@
+/**
+ * Contains the JMH benchmarks of the service and repository hot paths and of the JSON output.
+ * <p>
+ * Only compiled and run with the benchmarks Maven profile: mvn -P benchmarks verify
+ *
+ * @author John Mitchell (john@lambdaschool.com) with Lambda School unless otherwise noted.
+ */
+package com.lambdaschool.usermodel.benchmarks;
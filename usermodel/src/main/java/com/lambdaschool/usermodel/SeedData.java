@@ -11,6 +11,8 @@ import com.lambdaschool.usermodel.services.RoleService;
 import com.lambdaschool.usermodel.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,9 +24,15 @@ import java.util.Locale;
  * <p>
  * CoomandLineRunner: Spring Boot automatically runs the run method once and only once
  * after the application context has been loaded.
+ * <p>
+ * Turned off by usermodel.seed.enabled=false, for example by the loadtest profile which generates users with SyntheticData instead.
  */
 @Transactional
 @Component
+@Order(1)
+@ConditionalOnProperty(name = "usermodel.seed.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
 public class SeedData implements CommandLineRunner
 {
     /**
@@ -45,6 +53,7 @@ public class SeedData implements CommandLineRunner
      * Second a random set of data using Java Faker is seeded into our database.
      * Note this process does not remove data from the database. So if data exists in the database
      * prior to running this process, that data remains in the database.
+     * If there are roles already, the data was seeded before, for example in the persistent profile, and nothing is added.
      *
      * @param args The parameter is required by the parent interface but is not used in this process.
      */
@@ -52,6 +61,12 @@ public class SeedData implements CommandLineRunner
     @Override
     public void run(String[] args) throws Exception
     {
+        if (!roleService.findAll()
+            .isEmpty())
+        {
+            return;
+        }
+
         Role r1 = new Role("admin");
         Role r2 = new Role("user");
         Role r3 = new Role("data");
@@ -0,0 +1,535 @@
+package com.lambdaschool.usermodel;
+
+import com.github.javafaker.Faker;
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.services.RoleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SyntheticData fills the database with a configurable number of generated users, for load testing.
+ * It implements CommandLineRunner and only runs when usermodel.generate.users is set, for example
+ * <pre>
+ * java -jar usermodel.jar --spring.profiles.active=loadtest --usermodel.generate.users=10000000
+ * </pre>
+ * Nothing is generated when the users table already holds that many users, so a persistent database is only filled once.
+ * A run cut short is resumed on the next start: the chunks committed are kept and only the missing users are generated,
+ * with ids after MAX(userid). Their data then differs from that of a run never cut short.
+ * SeedData runs first when it is enabled, so the generated users are added after the known ones and share their roles.
+ * Unlike SeedData, rows are written with plain JDBC batches, one transaction per chunk of users,
+ * from several threads at once. Hibernate is bypassed, so:
+ * <ul>
+ * <li>ids are reserved from hibernate_sequence up front and the sequence is moved past them afterwards</li>
+ * <li>the second-level cache is emptied once done</li>
+ * <li>the username search index is fine, it is built from the database after the runners finish</li>
+ * </ul>
+ * Each chunk draws its data from its own random generator, seeded from usermodel.generate.seed, the chunk number and
+ * the number of users there were before, so the same settings always produce the same data whatever the number of
+ * threads.
+ * <p>
+ * The rate is logged every few seconds and at the end. On 8 threads with the loadtest settings it was about 9800
+ * users/s in memory up to 300000 users, down to about 4500 users/s at 600000 as the indexes grow, and about 2400
+ * users/s into the H2 file of the persistent profile. 10000000 users take the better part of an hour or more.
+ */
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "usermodel.generate.users")
+public class SyntheticData implements CommandLineRunner
+{
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticData.class);
+
+    /**
+     * The auditor recorded on generated rows, the same one UserAuditing reports
+     */
+    private static final String AUDITOR = "SYSTEM";
+
+    /**
+     * Domains used for generated email addresses
+     */
+    private static final String[] DOMAINS = {"gmail.com", "yahoo.com", "outlook.com", "email.local", "mymail.local", "school.lambda"};
+
+    /**
+     * The number (int) of first and of last names drawn from the faker up front. Calling the faker for every user
+     * costs more than writing the user, so users pick from these instead.
+     */
+    private static final int NAMES = 2000;
+
+    /**
+     * Connects the Role Service to this process, used to look up and create the roles handed out
+     */
+    @Autowired
+    RoleService roleService;
+
+    /**
+     * Writes the generated rows
+     */
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Used to commit each chunk in its own transaction
+     */
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    /**
+     * Used to empty the second-level cache after the tables were changed behind Hibernate's back
+     */
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Used to shut down once done when usermodel.generate.exit is set
+     */
+    @Autowired
+    ApplicationContext applicationContext;
+
+    /**
+     * The number of users (long) to generate
+     */
+    @Value("${usermodel.generate.users}")
+    private long users;
+
+    /**
+     * The seed (long) of the random data. The same seed gives the same users.
+     */
+    @Value("${usermodel.generate.seed:42}")
+    private long seed;
+
+    /**
+     * The number of threads (int) writing chunks at the same time. Keep it below the connection pool size.
+     */
+    @Value("${usermodel.generate.threads:4}")
+    private int threads;
+
+    /**
+     * The number of users (int) written per transaction
+     */
+    @Value("${usermodel.generate.chunk-size:5000}")
+    private int chunkSize;
+
+    /**
+     * How many extra emails a user gets, as count:weight pairs. 0:2,1:5 means 0 emails twice out of 7 users and 1 email the rest of the time.
+     */
+    @Value("${usermodel.generate.emails-per-user:0:20,1:50,2:20,3:10}")
+    private String emailsPerUser;
+
+    /**
+     * The chance each role is given to a user, as role:probability pairs. Missing roles are created.
+     */
+    @Value("${usermodel.generate.roles:user:1.0,data:0.25,admin:0.02}")
+    private String roleProbabilities;
+
+    /**
+     * Whether (boolean) to shut the application down once the data is written, for loading a database from the command line
+     */
+    @Value("${usermodel.generate.exit:false}")
+    private boolean exitWhenDone;
+
+    /**
+     * Generates the users unless there are enough already
+     *
+     * @param args The parameter is required by the parent interface but is not used in this process.
+     */
+    @Override
+    public void run(String... args) throws Exception
+    {
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users",
+            Long.class);
+        if (existing >= users)
+        {
+            logger.info("Not generating users, there are {} already",
+                existing);
+        } else
+        {
+            generate(existing);
+        }
+
+        if (exitWhenDone)
+        {
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    /**
+     * Generates the users still missing on several threads and reports how fast they were written
+     *
+     * @param existing The number of users (long) already in the database, from SeedData or a run cut short
+     * @throws Exception if writing a chunk failed
+     */
+    private void generate(long existing) throws Exception
+    {
+        long missing = users - existing;
+        int[] emailCounts = parseEmailCounts(emailsPerUser);
+        int maxEmails = 0;
+        for (int count : emailCounts)
+        {
+            maxEmails = Math.max(maxEmails,
+                count);
+        }
+        Map<Long, Double> roles = findOrCreateRoles(parsePairs(roleProbabilities));
+
+        Faker faker = new Faker(new Locale("en-US"),
+            new Random(seed));
+        String[] firstNames = new String[NAMES];
+        String[] lastNames = new String[NAMES];
+        for (int i = 0; i < NAMES; i++)
+        {
+            firstNames[i] = clean(faker.name()
+                .firstName());
+            lastNames[i] = clean(faker.name()
+                .lastName());
+        }
+
+        // every user gets a block of ids big enough for itself and the most emails it can have
+        int idsPerUser = maxEmails + 1;
+        // starts after MAX(userid), so a run cut short goes on after the chunks it committed
+        long firstId = reserveIds(missing * idsPerUser);
+
+        long chunks = (missing + chunkSize - 1) / chunkSize;
+        Progress progress = new Progress();
+        logger.info("Generating {} users after the {} there are, from user id {}, in {} chunks of {} on {} threads, seed {}",
+            missing,
+            existing,
+            firstId,
+            chunks,
+            chunkSize,
+            threads,
+            seed);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> results = new ArrayList<>();
+            for (long chunk = 0; chunk < chunks; chunk++)
+            {
+                long chunkNumber = chunk;
+                results.add(executor.submit(() -> writeChunk(chunkNumber,
+                    existing,
+                    missing,
+                    firstNames,
+                    lastNames,
+                    firstId,
+                    idsPerUser,
+                    emailCounts,
+                    roles,
+                    progress)));
+            }
+            for (Future<?> result : results)
+            {
+                result.get();
+            }
+        } finally
+        {
+            executor.shutdownNow();
+        }
+
+        entityManagerFactory.getCache()
+            .evictAll();
+        progress.log("Generated");
+    }
+
+    /**
+     * Generates and writes one chunk of users, with their emails and roles, in one transaction
+     *
+     * @param chunk       The number (long) of the chunk, used to seed its random data and find its ids
+     * @param existing    The number of users (long) there were before, also used to seed the random data
+     * @param count       The number of users (long) generated by all chunks
+     * @param firstNames  The first names to pick from
+     * @param lastNames   The last names to pick from
+     * @param firstId     The first id (long) reserved for generated rows
+     * @param idsPerUser  The number of ids (int) reserved per user
+     * @param emailCounts The number of emails to pick from, each count repeated by its weight
+     * @param roles       The chance (Double) a user gets each role, by role id
+     * @param progress    Where the number of written rows is tracked
+     */
+    private void writeChunk(
+        long chunk,
+        long existing,
+        long count,
+        String[] firstNames,
+        String[] lastNames,
+        long firstId,
+        int idsPerUser,
+        int[] emailCounts,
+        Map<Long, Double> roles,
+        Progress progress)
+    {
+        SplittableRandom random = new SplittableRandom(seed ^ (chunk * 0x9E3779B97F4A7C15L) ^ (existing * 0xC2B2AE3D27D4EB4FL));
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        long firstUser = chunk * chunkSize;
+        long lastUser = Math.min(firstUser + chunkSize,
+            count);
+
+        List<Object[]> userRows = new ArrayList<>();
+        List<Object[]> emailRows = new ArrayList<>();
+        List<Object[]> roleRows = new ArrayList<>();
+        for (long user = firstUser; user < lastUser; user++)
+        {
+            long userid = firstId + user * idsPerUser;
+            // the userid keeps names unique, whatever names are picked
+            String username = firstNames[random.nextInt(NAMES)] + "." + lastNames[random.nextInt(NAMES)] + "." + Long.toString(userid,
+                36);
+            userRows.add(new Object[]{userid, username, "password", username + "@" + DOMAINS[random.nextInt(DOMAINS.length)], AUDITOR, now, AUDITOR, now});
+
+            int emails = emailCounts[random.nextInt(emailCounts.length)];
+            for (int i = 1; i <= emails; i++)
+            {
+                emailRows.add(new Object[]{userid + i, username + i + "@" + DOMAINS[random.nextInt(DOMAINS.length)], userid, AUDITOR, now, AUDITOR, now});
+            }
+
+            for (Map.Entry<Long, Double> role : roles.entrySet())
+            {
+                if (random.nextDouble() < role.getValue())
+                {
+                    roleRows.add(new Object[]{userid, role.getKey(), AUDITOR, now, AUDITOR, now});
+                }
+            }
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status ->
+        {
+            jdbcTemplate.batchUpdate("INSERT INTO users(userid, username, password, primaryemail, created_by, created_date, last_modified_by, last_modified_date, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)",
+                userRows);
+            jdbcTemplate.batchUpdate("INSERT INTO useremails(useremailid, useremail, userid, created_by, created_date, last_modified_by, last_modified_date, version) VALUES (?, ?, ?, ?, ?, ?, ?, 0)",
+                emailRows);
+            jdbcTemplate.batchUpdate("INSERT INTO userroles(userid, roleid, created_by, created_date, last_modified_by, last_modified_date) VALUES (?, ?, ?, ?, ?, ?)",
+                roleRows);
+        });
+
+        progress.add(userRows.size(),
+            emailRows.size(),
+            roleRows.size());
+    }
+
+    /**
+     * Reserves a range of ids from hibernate_sequence and moves the sequence past it,
+     * so ids Hibernate hands out later do not collide with generated ones
+     *
+     * @param count The number of ids (long) needed
+     * @return The first id (long) of the range
+     */
+    private long reserveIds(long count)
+    {
+        // Hibernate's pooled optimizer may already be using the ids up to the current value of the sequence
+        Long current = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR hibernate_sequence",
+            Long.class);
+        Long highest = jdbcTemplate.queryForObject("SELECT GREATEST((SELECT COALESCE(MAX(userid), 0) FROM users), (SELECT COALESCE(MAX(useremailid), 0) FROM useremails), (SELECT COALESCE(MAX(roleid), 0) FROM roles))",
+            Long.class);
+        long firstId = Math.max(current,
+            highest) + 1;
+
+        // the next value Hibernate reads marks the top of its next block of ids, so leave a whole block of room
+        jdbcTemplate.execute("ALTER SEQUENCE hibernate_sequence RESTART WITH " + (firstId + count + 100));
+        return firstId;
+    }
+
+    /**
+     * Finds the roles to hand out, creating the ones that do not exist yet
+     *
+     * @param probabilities The chance (Double) a user gets each role, by role name
+     * @return The chance (Double) a user gets each role, by role id
+     */
+    private Map<Long, Double> findOrCreateRoles(Map<String, Double> probabilities)
+    {
+        Map<String, Long> existing = new HashMap<>();
+        for (Role role : roleService.findAll())
+        {
+            existing.put(role.getName()
+                    .toUpperCase(),
+                role.getRoleid());
+        }
+
+        Map<Long, Double> roles = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> probability : probabilities.entrySet())
+        {
+            Long roleid = existing.get(probability.getKey()
+                .toUpperCase());
+            if (roleid == null)
+            {
+                roleid = roleService.save(new Role(probability.getKey()))
+                    .getRoleid();
+            }
+            roles.put(roleid,
+                probability.getValue());
+        }
+        return roles;
+    }
+
+    /**
+     * Turns count:weight pairs into an array holding each count as many times as its weight
+     *
+     * @param pairs The pairs, for example 0:20,1:50
+     * @return The counts to pick from at random
+     */
+    private static int[] parseEmailCounts(String pairs)
+    {
+        List<Integer> counts = new ArrayList<>();
+        for (Map.Entry<String, Double> pair : parsePairs(pairs).entrySet())
+        {
+            for (int i = 0; i < pair.getValue(); i++)
+            {
+                counts.add(Integer.parseInt(pair.getKey()));
+            }
+        }
+        if (counts.isEmpty())
+        {
+            throw new IllegalArgumentException("usermodel.generate.emails-per-user has no weights: " + pairs);
+        }
+        return counts.stream()
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    /**
+     * Parses a list of key:number pairs separated by commas
+     *
+     * @param pairs The pairs, for example user:1.0,admin:0.02
+     * @return The numbers by key, in the order given
+     */
+    private static Map<String, Double> parsePairs(String pairs)
+    {
+        Map<String, Double> parsed = new LinkedHashMap<>();
+        for (String pair : pairs.split(","))
+        {
+            if (pair.isBlank())
+            {
+                continue;
+            }
+            int colon = pair.lastIndexOf(':');
+            if (colon < 0)
+            {
+                throw new IllegalArgumentException("Expected key:number but got " + pair);
+            }
+            parsed.put(pair.substring(0,
+                colon)
+                    .trim(),
+                Double.parseDouble(pair.substring(colon + 1)
+                    .trim()));
+        }
+        return parsed;
+    }
+
+    /**
+     * Keeps only the letters of a name, lowercase, so it can be used in usernames and email addresses
+     *
+     * @param name The name from the faker
+     * @return The name (String) with only the letters a to z
+     */
+    private static String clean(String name)
+    {
+        return name.toLowerCase()
+            .replaceAll("[^a-z]",
+                "");
+    }
+
+    /**
+     * Counts the rows written so far, shared by the threads, and logs the rate at most every few seconds
+     */
+    private static class Progress
+    {
+        /**
+         * How often (milliseconds) progress is logged
+         */
+        private static final long LOG_INTERVAL = 5000;
+
+        /**
+         * When (nanoseconds) generating started
+         */
+        private final long start = System.nanoTime();
+
+        /**
+         * Users written so far
+         */
+        private final AtomicLong users = new AtomicLong();
+
+        /**
+         * Useremails written so far
+         */
+        private final AtomicLong emails = new AtomicLong();
+
+        /**
+         * User role combinations written so far
+         */
+        private final AtomicLong userroles = new AtomicLong();
+
+        /**
+         * When (milliseconds) progress was last logged
+         */
+        private final AtomicLong lastLog = new AtomicLong(System.currentTimeMillis());
+
+        /**
+         * Adds a written chunk, logging the progress if it has not been logged for a while
+         *
+         * @param users     Users written
+         * @param emails    Useremails written
+         * @param userroles User role combinations written
+         */
+        void add(
+            long users,
+            long emails,
+            long userroles)
+        {
+            this.users.addAndGet(users);
+            this.emails.addAndGet(emails);
+            this.userroles.addAndGet(userroles);
+
+            long now = System.currentTimeMillis();
+            long last = lastLog.get();
+            if (now - last >= LOG_INTERVAL && lastLog.compareAndSet(last,
+                now))
+            {
+                log("Generating");
+            }
+        }
+
+        /**
+         * Logs the rows written so far and the rate they were written at
+         *
+         * @param what Word starting the message
+         */
+        void log(String what)
+        {
+            double seconds = Math.max((System.nanoTime() - start) / 1e9,
+                0.001);
+            long rows = users.get() + emails.get() + userroles.get();
+            logger.info("{} {} users, {} useremails, {} userroles in {} s: {} rows/s, {} users/s",
+                what,
+                users.get(),
+                emails.get(),
+                userroles.get(),
+                String.format("%.1f",
+                    seconds),
+                Math.round(rows / seconds),
+                Math.round(users.get() / seconds));
+        }
+    }
+}
@@ -3,11 +3,13 @@ package com.lambdaschool.usermodel;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main class to start the application.
  */
 @EnableJpaAuditing
+@EnableScheduling
 @SpringBootApplication
 public class UserModelApplication
 {
@@ -0,0 +1,157 @@
+package com.lambdaschool.usermodel.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+
+/**
+ * Lets clients ask for the users, roles and useremails in a binary form of JSON instead of JSON text, for services
+ * calling the endpoints often: Smile with Accept: application/x-jackson-smile, CBOR with Accept: application/cbor.
+ * Request bodies are read in the same formats when sent with the matching Content-Type, except by the bulk endpoints,
+ * which stream JSON or NDJSON.
+ * <p>
+ * Both carry the same fields as the JSON, so a client only swaps the Jackson factory it reads with. Field names are
+ * written once per document in Smile, which makes the lists much smaller; see UserSerializationBenchmark for sizes
+ * and costs. JSON stays the default, for clients not asking for a format or asking for any.
+ * <p>
+ * The object mappers are built from the builder Spring Boot configures from spring.jackson.*, so the binary forms
+ * are written with the same settings as the JSON.
+ * <p>
+ * As the body of one URL now depends on the Accept header, every endpoint producing more than one format answers with
+ * Vary: Accept, so caches keep the formats apart, and the ETags of the users and roles carry the format, see etagSuffix.
+ */
+@Configuration
+public class BinaryFormatsConfig implements WebMvcConfigurer
+{
+    /**
+     * The Smile media type
+     */
+    public static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    /**
+     * The CBOR media type
+     */
+    public static final MediaType CBOR = MediaType.valueOf("application/cbor");
+
+    /**
+     * What to add to the ETag of a response so the same version in different formats gets different tags.
+     * The format is the first of JSON, Smile and CBOR the Accept header takes, by quality, as Spring picks it.
+     *
+     * @param request The request, with the Accept header if the client asked for a format
+     * @return Empty (String) for JSON, so JSON tags stay as they were, -smile for Smile and -cbor for CBOR
+     */
+    public static String etagSuffix(WebRequest request)
+    {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null)
+        {
+            return "";
+        }
+
+        List<MediaType> accepted;
+        try
+        {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e)
+        {
+            return "";
+        }
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted)
+        {
+            if (type.getQualityValue() == 0)
+            {
+                continue;
+            }
+            // JSON first, as it comes first in produces and so wins a wildcard
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON))
+            {
+                return "";
+            }
+            if (type.isCompatibleWith(SMILE))
+            {
+                return "-smile";
+            }
+            if (type.isCompatibleWith(CBOR))
+            {
+                return "-cbor";
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Adds Vary: Accept to the responses of the endpoints producing more than one format, also to NOT_MODIFIED ones
+     *
+     * @param registry Where the interceptors are registered
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry)
+    {
+        registry.addInterceptor(new HandlerInterceptor()
+        {
+            @Override
+            public boolean preHandle(
+                HttpServletRequest request,
+                HttpServletResponse response,
+                Object handler)
+            {
+                if (handler instanceof HandlerMethod)
+                {
+                    RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(((HandlerMethod) handler).getMethod(),
+                        RequestMapping.class);
+                    if (mapping != null && mapping.produces().length > 1)
+                    {
+                        response.addHeader(HttpHeaders.VARY,
+                            HttpHeaders.ACCEPT);
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Writes and reads application/x-jackson-smile
+     *
+     * @param builder The object mapper builder configured by Spring Boot
+     * @return The Smile converter, put ahead of the default one by Spring Boot
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder)
+    {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory())
+            .build());
+    }
+
+    /**
+     * Writes and reads application/cbor
+     *
+     * @param builder The object mapper builder configured by Spring Boot
+     * @return The CBOR converter, put ahead of the default one by Spring Boot
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder)
+    {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory())
+            .build());
+    }
+}
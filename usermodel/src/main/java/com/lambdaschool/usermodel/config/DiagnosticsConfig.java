@@ -0,0 +1,199 @@
+package com.lambdaschool.usermodel.config;
+
+import com.lambdaschool.usermodel.models.RequestDiagnostics;
+import com.lambdaschool.usermodel.services.DiagnosticsService;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Turns on the diagnostics of requests sent with the header Usermodel-Diagnostics: true, see DiagnosticsFilter.
+ * On unless usermodel.diagnostics.enabled=false.
+ * <p>
+ * Hooks into Hibernate to count, for the request the thread is serving: the statements through a StatementInspector,
+ * the time spent preparing and executing them through a session event listener, and the entities and collections
+ * loaded through event listeners, so the loads are counted whether or not hibernate.generate_statistics is on.
+ * On a thread serving no diagnosed request each hook only reads a ThreadLocal.
+ */
+@Configuration
+@ConditionalOnProperty(name = "usermodel.diagnostics.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+public class DiagnosticsConfig
+{
+    /**
+     * Records what each request sent with the diagnostics header cost
+     *
+     * @param diagnosticsService Where finished diagnostics are kept
+     * @return The filter
+     */
+    @Bean
+    public DiagnosticsFilter diagnosticsFilter(DiagnosticsService diagnosticsService)
+    {
+        return new DiagnosticsFilter(diagnosticsService);
+    }
+
+    /**
+     * Adds the statement and JDBC time hooks to the Hibernate properties
+     *
+     * @return The customizer adding the hooks
+     */
+    @Bean
+    public HibernatePropertiesCustomizer diagnosticsCustomizer()
+    {
+        return hibernateProperties ->
+        {
+            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new StatementCounter());
+            hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                JdbcTimer.class.getName());
+        };
+    }
+
+    /**
+     * Adds the load hooks to the event listeners of the session factory
+     *
+     * @param entityManagerFactory The entity manager factory, built by then
+     * @return The hooks
+     */
+    @Bean
+    public LoadCounter loadCounter(EntityManagerFactory entityManagerFactory)
+    {
+        LoadCounter loadCounter = new LoadCounter();
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD,
+            loadCounter);
+        registry.appendListeners(EventType.INIT_COLLECTION,
+            loadCounter);
+        return loadCounter;
+    }
+
+    /**
+     * Counts the statements Hibernate prepares, leaving them as they are
+     */
+    public static class StatementCounter implements StatementInspector
+    {
+        @Override
+        public String inspect(String sql)
+        {
+            RequestDiagnostics diagnostics = DiagnosticsFilter.current();
+            if (diagnostics != null)
+            {
+                diagnostics.statementPrepared();
+            }
+            return sql;
+        }
+    }
+
+    /**
+     * Times the statements and batches run by a session. Hibernate creates one per session, by class name.
+     */
+    public static class JdbcTimer extends BaseSessionEventListener
+    {
+        /**
+         * When (long, System.nanoTime) the statement or batch being run started
+         */
+        private long start;
+
+        /**
+         * Starts timing
+         */
+        private void started()
+        {
+            start = System.nanoTime();
+        }
+
+        /**
+         * Adds the time since started to the request being diagnosed, if any
+         */
+        private void ended()
+        {
+            RequestDiagnostics diagnostics = DiagnosticsFilter.current();
+            if (diagnostics != null)
+            {
+                diagnostics.addJdbcNanos(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void jdbcPrepareStatementStart()
+        {
+            started();
+        }
+
+        @Override
+        public void jdbcPrepareStatementEnd()
+        {
+            ended();
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart()
+        {
+            started();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd()
+        {
+            ended();
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart()
+        {
+            started();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd()
+        {
+            ended();
+        }
+    }
+
+    /**
+     * Counts the entities and collections read for the request being diagnosed. Runs after Hibernate's own listeners,
+     * once per entity read from a result set or the second-level cache, and once per collection initialized when it is
+     * first used. Collections read along with their owner by a join fetch, or along with another by a batch fetch,
+     * are not counted on their own.
+     */
+    public static class LoadCounter implements PostLoadEventListener,
+                                               InitializeCollectionEventListener
+    {
+        @Override
+        public void onPostLoad(PostLoadEvent event)
+        {
+            RequestDiagnostics diagnostics = DiagnosticsFilter.current();
+            if (diagnostics != null)
+            {
+                diagnostics.entityLoaded();
+            }
+        }
+
+        @Override
+        public void onInitializeCollection(InitializeCollectionEvent event)
+        {
+            RequestDiagnostics diagnostics = DiagnosticsFilter.current();
+            if (diagnostics != null)
+            {
+                diagnostics.collectionLoaded();
+            }
+        }
+    }
+}
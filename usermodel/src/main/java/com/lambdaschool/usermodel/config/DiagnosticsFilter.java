@@ -0,0 +1,260 @@
+package com.lambdaschool.usermodel.config;
+
+import com.lambdaschool.usermodel.models.RequestDiagnostics;
+import com.lambdaschool.usermodel.services.DiagnosticsService;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records what a request cost when it has the header Usermodel-Diagnostics: true, and hands the result to the
+ * DiagnosticsService once the response is written, where GET /diagnostics/requests lists it. The response gets the
+ * number of the request in the Usermodel-Diagnostics-Id header. Other requests pass through untouched.
+ * <p>
+ * The statements, JDBC time and loads are counted by the Hibernate hooks of DiagnosticsConfig, which find the request
+ * through current(), so only work done on the thread serving the request is counted. The same goes for the memory
+ * the thread allocated and its CPU time, read before and after from the JVM.
+ */
+public class DiagnosticsFilter extends OncePerRequestFilter
+{
+    /**
+     * The header turning diagnostics on for a request
+     */
+    public static final String DIAGNOSTICS_HEADER = "Usermodel-Diagnostics";
+
+    /**
+     * The header giving the number of the diagnosed request
+     */
+    public static final String DIAGNOSTICS_ID_HEADER = "Usermodel-Diagnostics-Id";
+
+    /**
+     * The diagnostics of the request the thread is serving, null if it is not diagnosed
+     */
+    private static final ThreadLocal<RequestDiagnostics> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The JVM's threads, with allocation and CPU time per thread when the JVM supports it
+     */
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The number (long) given to the last diagnosed request
+     */
+    private final AtomicLong lastId = new AtomicLong();
+
+    /**
+     * Where finished diagnostics are kept
+     */
+    private final DiagnosticsService diagnosticsService;
+
+    /**
+     * Given the params, create the filter
+     *
+     * @param diagnosticsService Where finished diagnostics are kept
+     */
+    public DiagnosticsFilter(DiagnosticsService diagnosticsService)
+    {
+        this.diagnosticsService = diagnosticsService;
+    }
+
+    /**
+     * The diagnostics of the request the current thread is serving
+     *
+     * @return the diagnostics, null if the request is not diagnosed or the thread serves no request
+     */
+    public static RequestDiagnostics current()
+    {
+        return CURRENT.get();
+    }
+
+    @Override
+    protected void doFilterInternal(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        FilterChain filterChain) throws
+                                 ServletException,
+                                 IOException
+    {
+        if (!"true".equalsIgnoreCase(request.getHeader(DIAGNOSTICS_HEADER)))
+        {
+            filterChain.doFilter(request,
+                response);
+            return;
+        }
+
+        String path = request.getQueryString() == null ? request.getRequestURI() : request.getRequestURI() + "?" + request.getQueryString();
+        RequestDiagnostics diagnostics = new RequestDiagnostics(lastId.incrementAndGet(),
+            request.getMethod(),
+            path);
+        response.setHeader(DIAGNOSTICS_ID_HEADER,
+            Long.toString(diagnostics.getId()));
+        CountingResponse countingResponse = new CountingResponse(response);
+
+        long threadid = Thread.currentThread()
+            .getId();
+        long allocatedBefore = allocatedBytes(threadid);
+        long cpuBefore = cpuNanos();
+        long start = System.nanoTime();
+        CURRENT.set(diagnostics);
+        try
+        {
+            filterChain.doFilter(request,
+                countingResponse);
+            countingResponse.flushBuffer();
+        } finally
+        {
+            CURRENT.remove();
+            long allocatedAfter = allocatedBytes(threadid);
+            long cpuAfter = cpuNanos();
+            diagnostics.finished(handlerName(request),
+                response.getStatus(),
+                System.nanoTime() - start,
+                countingResponse.bytesWritten,
+                allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore,
+                cpuBefore < 0 || cpuAfter < 0 ? -1 : cpuAfter - cpuBefore);
+            diagnosticsService.save(diagnostics);
+        }
+    }
+
+    /**
+     * Names the controller method that served the request
+     *
+     * @param request The request
+     * @return The class and method (String) of the controller, null if no controller method served the request
+     */
+    public static String handlerName(HttpServletRequest request)
+    {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod)
+        {
+            HandlerMethod method = (HandlerMethod) handler;
+            return method.getBeanType()
+                .getSimpleName() + "." + method.getMethod()
+                .getName();
+        }
+        return null;
+    }
+
+    /**
+     * Reads how much memory a thread has allocated so far
+     *
+     * @param threadid The id (long) of the thread
+     * @return The bytes (long) the thread allocated since it started, -1 if the JVM cannot tell
+     */
+    private static long allocatedBytes(long threadid)
+    {
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadid);
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the CPU time of the current thread so far
+     *
+     * @return The CPU time (long) in nanoseconds, -1 if the JVM cannot tell
+     */
+    private static long cpuNanos()
+    {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * Counts the bytes written to the response body through its output stream. The JSON converters write through the
+     * output stream; text written through getWriter is not counted.
+     */
+    private static class CountingResponse extends HttpServletResponseWrapper
+    {
+        /**
+         * The number of bytes (long) written so far
+         */
+        private long bytesWritten;
+
+        /**
+         * The output stream handed out, wrapped once
+         */
+        private ServletOutputStream outputStream;
+
+        /**
+         * Given the params, wrap the response
+         *
+         * @param response The response to count the body of
+         */
+        CountingResponse(HttpServletResponse response)
+        {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws
+                                                     IOException
+        {
+            if (outputStream == null)
+            {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream()
+                {
+                    @Override
+                    public boolean isReady()
+                    {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener)
+                    {
+                        delegate.setWriteListener(writeListener);
+                    }
+
+                    @Override
+                    public void write(int b) throws
+                                             IOException
+                    {
+                        delegate.write(b);
+                        bytesWritten++;
+                    }
+
+                    @Override
+                    public void write(
+                        byte[] b,
+                        int off,
+                        int len) throws
+                                 IOException
+                    {
+                        delegate.write(b,
+                            off,
+                            len);
+                        bytesWritten += len;
+                    }
+
+                    @Override
+                    public void flush() throws
+                                        IOException
+                    {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws
+                                        IOException
+                    {
+                        delegate.close();
+                    }
+                };
+            }
+            return outputStream;
+        }
+    }
+}
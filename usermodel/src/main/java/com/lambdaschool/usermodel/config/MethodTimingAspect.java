@@ -0,0 +1,113 @@
+package com.lambdaschool.usermodel.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call to a service and to a repository.
+ * <p>
+ * Service calls are recorded as usermodel.service.calls and repository calls as usermodel.repository.calls,
+ * both tagged with the class, the method and whether the call threw (outcome SUCCESS or ERROR).
+ * Tags only hold names from the code, never arguments, so the number of time series stays bounded;
+ * MetricsConfig caps them anyway.
+ */
+@Aspect
+@Component
+public class MethodTimingAspect
+{
+    /**
+     * Where the timers are registered. Looked up on first use: the registry binds the role cache meters,
+     * which need the repositories this aspect wraps, so it cannot be injected directly.
+     */
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    /**
+     * Times the public methods of the service implementations, except UserService.hasRole: answered from the role
+     * membership index it takes nanoseconds, less than recording the timer would
+     *
+     * @param joinPoint The service call
+     * @return What the service returned
+     * @throws Throwable Whatever the service threw
+     */
+    @Around("execution(public * com.lambdaschool.usermodel.services.*Impl.*(..))" +
+        " && !execution(* com.lambdaschool.usermodel.services.UserServiceImpl.hasRole(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable
+    {
+        return time("usermodel.service.calls",
+            joinPoint.getSignature()
+                .getDeclaringType()
+                .getSimpleName(),
+            joinPoint);
+    }
+
+    /**
+     * Times the repository methods, including the ones inherited from CrudRepository.
+     * Repositories are proxies, so they are matched by bean name; the type check keeps out the
+     * factory beans Spring Data registers under the same names.
+     *
+     * @param joinPoint The repository call
+     * @return What the repository returned
+     * @throws Throwable Whatever the repository threw
+     */
+    @Around("bean(*Repository) && this(org.springframework.data.repository.Repository)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable
+    {
+        Class<?>[] interfaces = joinPoint.getThis()
+            .getClass()
+            .getInterfaces();
+        String repository = interfaces.length > 0 ? interfaces[0].getSimpleName() : "unknown";
+        return time("usermodel.repository.calls",
+            repository,
+            joinPoint);
+    }
+
+    /**
+     * Runs the call and records how long it took
+     *
+     * @param name      The name of the timer
+     * @param className The simple name of the class called
+     * @param joinPoint The call
+     * @return What the call returned
+     * @throws Throwable Whatever the call threw
+     */
+    private Object time(
+        String name,
+        String className,
+        ProceedingJoinPoint joinPoint) throws Throwable
+    {
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+        if (meterRegistry == null)
+        {
+            return joinPoint.proceed();
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "SUCCESS";
+        try
+        {
+            return joinPoint.proceed();
+        } catch (Throwable t)
+        {
+            outcome = "ERROR";
+            throw t;
+        } finally
+        {
+            sample.stop(Timer.builder(name)
+                .tags("class",
+                    className,
+                    "method",
+                    joinPoint.getSignature()
+                        .getName(),
+                    "outcome",
+                    outcome)
+                .register(meterRegistry));
+        }
+    }
+}
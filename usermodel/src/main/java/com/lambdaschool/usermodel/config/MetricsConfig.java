@@ -0,0 +1,98 @@
+package com.lambdaschool.usermodel.config;
+
+import com.lambdaschool.usermodel.services.RoleCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Micrometer settings of the application. The meters themselves come from:
+ * <ul>
+ * <li>http.server.requests - Spring Boot, one timer per endpoint</li>
+ * <li>usermodel.service.calls and usermodel.repository.calls - MethodTimingAspect</li>
+ * <li>hibernate.* - Spring Boot, from the Hibernate statistics, when hibernate.generate_statistics=true</li>
+ * <li>hikaricp.* - Spring Boot, the connection pool to H2</li>
+ * <li>usermodel.rolecache.* - the role cache, below</li>
+ * <li>usermodel.replicas.* - Replicas, when read replicas are configured</li>
+ * </ul>
+ * All of them are served at /actuator/prometheus. Histogram settings are in application.properties.
+ */
+@Configuration
+public class MetricsConfig
+{
+    /**
+     * The most values (int) a method tag may take per timer before new values are dropped
+     */
+    @Value("${usermodel.metrics.max-method-tags:200}")
+    private int maxMethodTags;
+
+    /**
+     * Caps the number of methods tracked by the service timers, so a mistake in the aspect cannot flood the registry
+     *
+     * @return Filter dropping service timers past the cap
+     */
+    @Bean
+    public MeterFilter serviceMethodTagLimit()
+    {
+        return MeterFilter.maximumAllowableTags("usermodel.service.calls",
+            "method",
+            maxMethodTags,
+            MeterFilter.deny());
+    }
+
+    /**
+     * Caps the number of methods tracked by the repository timers
+     *
+     * @return Filter dropping repository timers past the cap
+     */
+    @Bean
+    public MeterFilter repositoryMethodTagLimit()
+    {
+        return MeterFilter.maximumAllowableTags("usermodel.repository.calls",
+            "method",
+            maxMethodTags,
+            MeterFilter.deny());
+    }
+
+    /**
+     * Publishes the counters of the role cache
+     *
+     * @param roleCache The role cache
+     * @return Binder registering the role cache meters
+     */
+    @Bean
+    public MeterBinder roleCacheMetrics(RoleCache roleCache)
+    {
+        return registry ->
+        {
+            FunctionCounter.builder("usermodel.rolecache.hits",
+                roleCache,
+                c -> c.getStats()
+                    .getHits())
+                .description("Role lookups answered by the role cache")
+                .register(registry);
+            FunctionCounter.builder("usermodel.rolecache.misses",
+                roleCache,
+                c -> c.getStats()
+                    .getMisses())
+                .description("Role lookups that found the role cache empty")
+                .register(registry);
+            FunctionCounter.builder("usermodel.rolecache.evictions",
+                roleCache,
+                c -> c.getStats()
+                    .getEvictions())
+                .description("Times the role cache was emptied")
+                .register(registry);
+            Gauge.builder("usermodel.rolecache.size",
+                roleCache,
+                c -> c.getStats()
+                    .getSize())
+                .description("Roles in the role cache")
+                .register(registry);
+        };
+    }
+}
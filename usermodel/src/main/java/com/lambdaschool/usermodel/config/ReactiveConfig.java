@@ -0,0 +1,164 @@
+package com.lambdaschool.usermodel.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.reactive.ReactiveUserRepository;
+import com.lambdaschool.usermodel.reactive.UserHandler;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+/**
+ * Serves the user reads a second time, from a reactive stack: its own Netty server on usermodel.reactive.port,
+ * reading the same database through R2DBC, see the reactive package. Off unless usermodel.reactive.enabled=true.
+ * <p>
+ * Tomcat and the controllers are unaffected and still serve everything on server.port. A request on the reactive port
+ * holds no thread while it waits on the database, so it is not limited by server.tomcat.max-threads; the R2DBC pool,
+ * usermodel.reactive.pool-size, limits how many queries run at once instead, and the others wait for a connection.
+ * <p>
+ * The R2DBC driver for H2 runs the embedded database in the thread that acquired the connection, so connections are
+ * handed out on Reactor's parallel scheduler, one thread per core, and never run queries on Netty's event loop threads.
+ * Reads always go to spring.datasource.url, never to the read replicas.
+ */
+@Configuration
+@ConditionalOnProperty(name = "usermodel.reactive.enabled",
+    havingValue = "true")
+@EnableR2dbcRepositories(basePackageClasses = ReactiveUserRepository.class)
+public class ReactiveConfig extends AbstractR2dbcConfiguration
+{
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveConfig.class);
+
+    /**
+     * The JDBC url (String) of the database, turned into its R2DBC connection settings
+     */
+    @Value("${spring.datasource.url:jdbc:h2:mem:testdb}")
+    private String url;
+
+    /**
+     * The user name (String) to connect to the database with
+     */
+    @Value("${spring.datasource.username:sa}")
+    private String username;
+
+    /**
+     * The password (String) to connect to the database with
+     */
+    @Value("${spring.datasource.password:}")
+    private String password;
+
+    /**
+     * The number of R2DBC connections (int) kept to the database
+     */
+    @Value("${usermodel.reactive.pool-size:10}")
+    private int poolSize;
+
+    /**
+     * How long (Duration) a query waits for a connection before failing
+     */
+    @Value("${usermodel.reactive.connection-timeout:PT30S}")
+    private Duration connectionTimeout;
+
+    /**
+     * The port (int) the reactive stack listens on, 0 for any free port
+     */
+    @Value("${usermodel.reactive.port:2020}")
+    private int port;
+
+    /**
+     * The pool of R2DBC connections to the database the rest of the application uses
+     *
+     * @return The connection pool, closed with the application
+     */
+    @Override
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory()
+    {
+        // the R2DBC driver takes the part of the JDBC url after jdbc:h2:, for example mem:testdb
+        H2ConnectionConfiguration configuration = H2ConnectionConfiguration.builder()
+            .url(url.startsWith("jdbc:h2:") ? url.substring("jdbc:h2:".length()) : url)
+            .username(username)
+            .password(password)
+            .build();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(new H2ConnectionFactory(configuration))
+            .name("reactive")
+            .maxSize(poolSize)
+            .initialSize(Math.min(poolSize,
+                2))
+            .maxAcquireTime(connectionTimeout)
+            // otherwise a connection given back is handed to the next waiting request in the thread giving it back,
+            // so one event loop ends up running the queries of every other one while its own requests wait
+            .customizer(pool -> pool.acquisitionScheduler(Schedulers.parallel()))
+            .build());
+    }
+
+    /**
+     * Serves the user read endpoints of the reactive stack
+     *
+     * @return The handler
+     */
+    @Bean
+    public UserHandler userHandler()
+    {
+        return new UserHandler();
+    }
+
+    /**
+     * Starts the Netty server of the reactive stack, routing the same paths as UserController to the handler
+     *
+     * @param userHandler  Serves the user read endpoints
+     * @param objectMapper Writes the JSON, with the settings of the rest of the application
+     * @return The running server, stopped with the application
+     */
+    @Bean(destroyMethod = "disposeNow")
+    public DisposableServer reactiveServer(
+        UserHandler userHandler,
+        ObjectMapper objectMapper)
+    {
+        RouterFunction<ServerResponse> routes = RouterFunctions.route(GET("/users/users"),
+            userHandler::listAllUsers)
+            .andRoute(GET("/users/user/name/{userName}"),
+                userHandler::getUserByName)
+            .andRoute(GET("/users/user/{userId}"),
+                userHandler::getUserById);
+        HandlerStrategies strategies = HandlerStrategies.builder()
+            .codecs(codecs ->
+            {
+                codecs.defaultCodecs()
+                    .jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                codecs.defaultCodecs()
+                    .jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+            })
+            .build();
+
+        DisposableServer server = HttpServer.create()
+            .port(port)
+            .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes,
+                strategies)))
+            .bindNow();
+        logger.info("Reactive user reads served on port {}",
+            server.port());
+        return server;
+    }
+}
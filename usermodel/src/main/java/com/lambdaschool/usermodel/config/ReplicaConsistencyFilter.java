@@ -0,0 +1,62 @@
+package com.lambdaschool.usermodel.config;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Reads the Usermodel-Read-After header of a request, so its reads only go to replicas that have the client's
+ * last write, and forgets it once the request is done
+ */
+public class ReplicaConsistencyFilter extends OncePerRequestFilter
+{
+    /**
+     * Where the time of the write is kept during the request
+     */
+    private final Replicas replicas;
+
+    /**
+     * Given the params, create the filter
+     *
+     * @param replicas The replicas reads are routed to
+     */
+    public ReplicaConsistencyFilter(Replicas replicas)
+    {
+        this.replicas = replicas;
+    }
+
+    @Override
+    protected void doFilterInternal(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        FilterChain filterChain) throws
+                                 ServletException,
+                                 IOException
+    {
+        String readAfter = request.getHeader(Replicas.READ_AFTER_HEADER);
+        try
+        {
+            if (readAfter != null)
+            {
+                try
+                {
+                    replicas.readAfter(Long.parseLong(readAfter.trim()));
+                } catch (NumberFormatException e)
+                {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        Replicas.READ_AFTER_HEADER + " must be a time in milliseconds, got " + readAfter);
+                    return;
+                }
+            }
+            filterChain.doFilter(request,
+                response);
+        } finally
+        {
+            replicas.clearReadAfter();
+        }
+    }
+}
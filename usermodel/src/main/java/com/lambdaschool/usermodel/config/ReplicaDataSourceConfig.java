@@ -0,0 +1,135 @@
+package com.lambdaschool.usermodel.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions, the @Transactional(readOnly = true) service methods, to read replicas
+ * and everything else to the primary, spring.datasource.url. Off unless usermodel.replicas.urls is set.
+ * <p>
+ * The replicas are JDBC urls of databases kept in step with the primary by other means: H2 has no change capture
+ * to feed them. How stale a read may be is bounded by usermodel.replicas.max-lag, see Replicas.
+ * Anything read outside a transaction, like lazy collections loaded while the response is written, comes from the primary.
+ * Pointing a replica at the primary itself through the H2 TCP server, for example
+ * usermodel.replicas.urls=jdbc:h2:tcp://localhost:9092/mem:testdb, tries out the routing without a second database.
+ */
+@Configuration
+@ConditionalOnProperty(name = "usermodel.replicas.urls")
+public class ReplicaDataSourceConfig
+{
+    /**
+     * The JDBC urls of the replicas, comma separated
+     */
+    @Value("${usermodel.replicas.urls}")
+    private String[] urls;
+
+    /**
+     * The user name (String) to connect to the replicas with
+     */
+    @Value("${usermodel.replicas.username:${spring.datasource.username:sa}}")
+    private String username;
+
+    /**
+     * The password (String) to connect to the replicas with
+     */
+    @Value("${usermodel.replicas.password:${spring.datasource.password:}}")
+    private String password;
+
+    /**
+     * How far (Duration) a replica may be behind the primary and still be read from
+     */
+    @Value("${usermodel.replicas.max-lag:PT5S}")
+    private Duration maxLag;
+
+    /**
+     * The number of connections (int) kept to each replica
+     */
+    @Value("${usermodel.replicas.pool-size:10}")
+    private int poolSize;
+
+    /**
+     * How long (Duration) to wait for a connection to a replica, kept short so an unreachable replica is noticed
+     */
+    @Value("${usermodel.replicas.connection-timeout:PT2S}")
+    private Duration connectionTimeout;
+
+    /**
+     * The primary and the replicas, with the heartbeat telling how far behind each replica is.
+     * The pools are not beans of their own: the only DataSource bean is the routing one, which Spring Boot initializes.
+     *
+     * @param properties  The spring.datasource properties
+     * @param environment Where the spring.datasource.hikari properties are read from
+     * @return The replicas
+     */
+    @Bean
+    public Replicas replicas(
+        DataSourceProperties properties,
+        Environment environment)
+    {
+        // set up like the pool Spring Boot makes without replicas
+        HikariDataSource primary = properties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .build();
+        Binder.get(environment)
+            .bind("spring.datasource.hikari",
+                Bindable.ofInstance(primary));
+
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < urls.length; i++)
+        {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + i);
+            pool.setJdbcUrl(urls[i].trim());
+            pool.setUsername(username);
+            pool.setPassword(password);
+            pool.setMaximumPoolSize(poolSize);
+            pool.setConnectionTimeout(connectionTimeout.toMillis());
+            pool.setReadOnly(true);
+            // started on first use, so a replica that is down does not keep the application from starting
+            pool.setInitializationFailTimeout(-1);
+            pools.add(pool);
+        }
+        return new Replicas(primary,
+            pools,
+            maxLag);
+    }
+
+    /**
+     * The data source used by JPA and JDBC, routing each connection to the primary or a replica
+     *
+     * @param replicas The primary and the replicas
+     * @return The routing data source, taking connections only once they are used
+     */
+    @Bean
+    public DataSource dataSource(Replicas replicas)
+    {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(replicas);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Reads the time of the client's last write from each request
+     *
+     * @param replicas The primary and the replicas
+     * @return The filter
+     */
+    @Bean
+    public ReplicaConsistencyFilter replicaConsistencyFilter(Replicas replicas)
+    {
+        return new ReplicaConsistencyFilter(replicas);
+    }
+}
@@ -0,0 +1,36 @@
+package com.lambdaschool.usermodel.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections to the primary or to a read replica, as picked by Replicas.
+ * <p>
+ * The pick depends on whether the transaction is read-only, which Spring only records after the transaction manager
+ * asked for a connection, so this data source is used behind a LazyConnectionDataSourceProxy: the connection is only
+ * taken once the first statement runs.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource
+{
+    /**
+     * Picks the data source of each connection
+     */
+    private final Replicas replicas;
+
+    /**
+     * Given the params, create a routing data source over the primary and the replicas
+     *
+     * @param replicas The primary and the replicas
+     */
+    public ReplicaRoutingDataSource(Replicas replicas)
+    {
+        this.replicas = replicas;
+        setTargetDataSources(replicas.targets());
+        setDefaultTargetDataSource(replicas.getPrimary());
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey()
+    {
+        return replicas.route();
+    }
+}
@@ -0,0 +1,444 @@
+package com.lambdaschool.usermodel.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The read replicas behind ReplicaRoutingDataSource, how far each is behind the primary,
+ * and which one a connection is taken from.
+ * <p>
+ * Every usermodel.replicas.heartbeat-interval the time is written to the replica_heartbeat table of the primary
+ * and read back from each replica. A replica holding a heartbeat written at time t has every change committed on the
+ * primary before t, so it is now - t behind. Replicas further behind than usermodel.replicas.max-lag, or not
+ * reachable, get no reads until they catch up. As the heartbeat is only read every interval, max-lag has to be
+ * longer than the interval.
+ * <p>
+ * Reads see their own writes: after a commit on the primary, the rest of the same request only reads from replicas
+ * whose heartbeat is newer than the commit. A request that wrote is answered with the time of its last commit in the
+ * Usermodel-Read-After header, and later requests sending that header back get the same guarantee. The time is kept
+ * on the request thread, and ReplicaConsistencyFilter forgets it when the request is done. Threads outside a request,
+ * like the audit log writer, the scheduled jobs and the bulk role assignment batches, have nobody to forget it for them
+ * on a pooled thread, so their commits are kept in one time shared by all of them instead, and their reads only go to
+ * replicas newer than the last such commit.
+ */
+public class Replicas implements MeterBinder
+{
+    /**
+     * The header (String) carrying the time of a client's last write, in milliseconds since the epoch
+     */
+    public static final String READ_AFTER_HEADER = "Usermodel-Read-After";
+
+    /**
+     * The lookup key (String) of the primary
+     */
+    static final String PRIMARY = "primary";
+
+    private static final Logger logger = LoggerFactory.getLogger(Replicas.class);
+
+    /**
+     * Where the writes, and the reads no replica can take, go
+     */
+    private final HikariDataSource primary;
+
+    /**
+     * Writes the heartbeat to the primary
+     */
+    private final JdbcTemplate primaryJdbcTemplate;
+
+    /**
+     * The replicas, in the order of usermodel.replicas.urls
+     */
+    private final List<Replica> replicas;
+
+    /**
+     * How far (long) in milliseconds a replica may be behind the primary and still be read from
+     */
+    private final long maxLagMillis;
+
+    /**
+     * Spreads the reads over the replicas in turn
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * The time (Long) in milliseconds of the last write of the current thread or of the client of the current request,
+     * reads from replicas must be newer. Null if none.
+     */
+    private final ThreadLocal<Long> readAfter = new ThreadLocal<>();
+
+    /**
+     * The time (long) in milliseconds of the last write committed outside a request, reads outside a request from
+     * replicas must be newer. 0 if none.
+     */
+    private final AtomicLong backgroundReadAfter = new AtomicLong();
+
+    /**
+     * Counts the connections taken from each data source, by lookup key. Empty until the meters are registered.
+     */
+    private volatile Map<String, Counter> routed = Collections.emptyMap();
+
+    /**
+     * Given the params, create the replicas
+     *
+     * @param primary  The connection pool of the primary
+     * @param replicas The connection pools of the replicas
+     * @param maxLag   How far (Duration) a replica may be behind the primary and still be read from
+     */
+    public Replicas(
+        HikariDataSource primary,
+        List<HikariDataSource> replicas,
+        Duration maxLag)
+    {
+        this.primary = primary;
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.replicas = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++)
+        {
+            this.replicas.add(new Replica("replica-" + i,
+                replicas.get(i)));
+        }
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    /**
+     * Creates the heartbeat table on the primary. Replicas get it, and its rows, from the primary.
+     */
+    @PostConstruct
+    public void createHeartbeatTable()
+    {
+        primaryJdbcTemplate.execute("CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat BIGINT NOT NULL)");
+    }
+
+    /**
+     * The data sources to route to
+     *
+     * @return The primary and every replica, by lookup key
+     */
+    Map<Object, Object> targets()
+    {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY,
+            primary);
+        for (Replica replica : replicas)
+        {
+            targets.put(replica.name,
+                replica.dataSource);
+        }
+        return targets;
+    }
+
+    /**
+     * The data source of the primary
+     *
+     * @return The data source writes go to
+     */
+    DataSource getPrimary()
+    {
+        return primary;
+    }
+
+    /**
+     * Picks the data source of a new connection. Read-only transactions go to the next replica close enough to
+     * the primary, everything else to the primary. A read-write transaction marks the thread as having written
+     * once it commits.
+     *
+     * @return The lookup key of the data source
+     */
+    Object route()
+    {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+        {
+            if (TransactionSynchronizationManager.isSynchronizationActive())
+            {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+                {
+                    @Override
+                    public void afterCommit()
+                    {
+                        wrote();
+                    }
+                });
+            }
+            return count(PRIMARY);
+        }
+
+        Long after = readAfter.get();
+        if (after == null && !inRequest())
+        {
+            after = backgroundReadAfter.get();
+        }
+        long oldest = Math.max(System.currentTimeMillis() - maxLagMillis,
+            after == null ? 0 : after + 1);
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++)
+        {
+            Replica replica = replicas.get(Math.floorMod(start + i,
+                replicas.size()));
+            if (replica.reachable && replica.heartbeat >= oldest)
+            {
+                return count(replica.name);
+            }
+        }
+        return count(PRIMARY);
+    }
+
+    /**
+     * Counts a connection taken from a data source
+     *
+     * @param key The lookup key of the data source
+     * @return The lookup key
+     */
+    private String count(String key)
+    {
+        Counter counter = routed.get(key);
+        if (counter != null)
+        {
+            counter.increment();
+        }
+        return key;
+    }
+
+    /**
+     * Remembers that a write was committed now: for the rest of the current request, and its client, when there is one,
+     * otherwise for every thread outside a request
+     */
+    private void wrote()
+    {
+        long now = System.currentTimeMillis();
+        if (!inRequest())
+        {
+            backgroundReadAfter.accumulateAndGet(now,
+                Math::max);
+            return;
+        }
+        readAfter.set(now);
+
+        HttpServletResponse response = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getResponse();
+        if (response != null && !response.isCommitted())
+        {
+            response.setHeader(READ_AFTER_HEADER,
+                Long.toString(now));
+        }
+    }
+
+    /**
+     * Checks if the current thread is serving a request, so ReplicaConsistencyFilter forgets its writes once it is done
+     *
+     * @return true if a servlet request is bound to the thread
+     */
+    private static boolean inRequest()
+    {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes;
+    }
+
+    /**
+     * Makes the reads of the current thread newer than a write of its client
+     *
+     * @param millis The time (long) of the write in milliseconds since the epoch
+     */
+    void readAfter(long millis)
+    {
+        readAfter.set(millis);
+    }
+
+    /**
+     * Forgets the writes of the current thread, at the end of a request
+     */
+    void clearReadAfter()
+    {
+        readAfter.remove();
+    }
+
+    /**
+     * Writes the heartbeat to the primary and reads it back from every replica
+     */
+    @Scheduled(fixedDelayString = "${usermodel.replicas.heartbeat-interval:PT1S}")
+    public void heartbeat()
+    {
+        try
+        {
+            primaryJdbcTemplate.update("MERGE INTO replica_heartbeat KEY (id) VALUES (1, ?)",
+                System.currentTimeMillis());
+        } catch (DataAccessException e)
+        {
+            logger.warn("Heartbeat could not be written to the primary",
+                e);
+        }
+        for (Replica replica : replicas)
+        {
+            replica.check();
+        }
+    }
+
+    /**
+     * Closes the connection pools
+     */
+    public void close()
+    {
+        primary.close();
+        for (Replica replica : replicas)
+        {
+            replica.dataSource.close();
+        }
+    }
+
+    /**
+     * Publishes the connections taken from each data source, how far each replica is behind,
+     * and the hikaricp.* meters of every pool, which Spring Boot only adds to pools that are beans
+     *
+     * @param registry Where the meters are registered
+     */
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        primary.setMetricRegistry(registry);
+        Map<String, Counter> counters = new HashMap<>();
+        counters.put(PRIMARY,
+            routedCounter(registry,
+                PRIMARY));
+        for (Replica replica : replicas)
+        {
+            replica.dataSource.setMetricRegistry(registry);
+            counters.put(replica.name,
+                routedCounter(registry,
+                    replica.name));
+            TimeGauge.builder("usermodel.replicas.lag",
+                replica,
+                TimeUnit.MILLISECONDS,
+                Replica::lagMillis)
+                .tag("replica",
+                    replica.name)
+                .description("How far the replica is behind the primary, as of its last heartbeat")
+                .register(registry);
+        }
+        routed = counters;
+    }
+
+    /**
+     * Registers the counter of the connections taken from one data source
+     *
+     * @param registry Where the counter is registered
+     * @param target   The lookup key of the data source
+     * @return The counter
+     */
+    private static Counter routedCounter(
+        MeterRegistry registry,
+        String target)
+    {
+        return Counter.builder("usermodel.replicas.routed")
+            .tag("target",
+                target)
+            .description("Connections taken from the primary or a replica")
+            .register(registry);
+    }
+
+    /**
+     * One read replica and its last heartbeat
+     */
+    private static class Replica
+    {
+        /**
+         * The lookup key (String) of the replica, replica-0 for the first url
+         */
+        private final String name;
+
+        /**
+         * The connection pool of the replica
+         */
+        private final HikariDataSource dataSource;
+
+        /**
+         * Reads the heartbeat from the replica
+         */
+        private final JdbcTemplate jdbcTemplate;
+
+        /**
+         * The time (long) in milliseconds of the newest heartbeat the replica holds, 0 if none yet
+         */
+        private volatile long heartbeat = 0;
+
+        /**
+         * False (boolean) when the heartbeat could not be read at the last check
+         */
+        private volatile boolean reachable = false;
+
+        /**
+         * Given the params, create a replica
+         *
+         * @param name       The lookup key (String) of the replica
+         * @param dataSource The connection pool of the replica
+         */
+        Replica(
+            String name,
+            HikariDataSource dataSource)
+        {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+
+        /**
+         * Reads the heartbeat from the replica
+         */
+        void check()
+        {
+            try
+            {
+                List<Long> beats = jdbcTemplate.queryForList("SELECT beat FROM replica_heartbeat WHERE id = 1",
+                    Long.class);
+                heartbeat = beats.isEmpty() ? 0 : beats.get(0);
+                if (!reachable)
+                {
+                    logger.info("Replica {} is reachable",
+                        name);
+                    reachable = true;
+                }
+            } catch (DataAccessException e)
+            {
+                if (reachable)
+                {
+                    logger.warn("Replica {} cannot be reached, its reads go elsewhere until it can",
+                        name,
+                        e);
+                    reachable = false;
+                }
+            }
+        }
+
+        /**
+         * How far the replica is behind the primary
+         *
+         * @return The age (double) of its newest heartbeat in milliseconds, NaN if it has none
+         */
+        double lagMillis()
+        {
+            long beat = heartbeat;
+            return beat == 0 ? Double.NaN : System.currentTimeMillis() - beat;
+        }
+    }
+}
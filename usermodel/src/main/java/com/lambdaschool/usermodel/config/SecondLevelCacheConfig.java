@@ -0,0 +1,153 @@
+package com.lambdaschool.usermodel.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Turns on the Hibernate second-level cache, backed by Caffeine through JCache.
+ * Off unless usermodel.cache.enabled=true.
+ * <p>
+ * Every region is created up front from application.properties:
+ * usermodel.cache.maximum-size and usermodel.cache.expire-after-write apply to all regions
+ * and can be overridden per region, for example usermodel.cache.user.maximum-size.
+ * With usermodel.cache.statistics=true Hibernate keeps hit, miss and put counts per region, see GET /cache/regions.
+ * <p>
+ * Rows changed behind Hibernate's back, for example with plain JDBC, are not seen until their entry expires.
+ */
+@Configuration
+@ConditionalOnExpression("${usermodel.cache.enabled:false}")
+public class SecondLevelCacheConfig
+{
+    /**
+     * The entity and collection regions, named in the @Cache annotations of the models
+     */
+    public static final List<String> ENTITY_REGIONS = Arrays.asList("user",
+        "user.useremails",
+        "user.roles",
+        "useremail",
+        "role",
+        "role.users",
+        "userroles");
+
+    /**
+     * The query result regions, named in the query hints of the repositories
+     */
+    public static final List<String> QUERY_REGIONS = Arrays.asList("user.byname",
+        "default-query-results-region");
+
+    /**
+     * The region Hibernate uses to know when a table last changed so it can tell stale query results.
+     * Must never lose entries, so it is not bounded by size or time.
+     */
+    public static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    /**
+     * Used to read the cache settings, including the per region overrides
+     */
+    @Autowired
+    private Environment env;
+
+    /**
+     * The JCache cache manager holding the regions. Each application context gets its own
+     * so contexts started side by side, as in tests, do not share entries.
+     *
+     * @return The cache manager with every region created
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager()
+    {
+        CaffeineCachingProvider provider = (CaffeineCachingProvider) Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("usermodel-" + UUID.randomUUID()),
+            getClass().getClassLoader());
+
+        for (String region : ENTITY_REGIONS)
+        {
+            cacheManager.createCache(region,
+                regionConfiguration(region));
+        }
+        for (String region : QUERY_REGIONS)
+        {
+            cacheManager.createCache(region,
+                regionConfiguration(region));
+        }
+        cacheManager.createCache(TIMESTAMPS_REGION,
+            new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    /**
+     * Hands the cache manager to Hibernate and turns on the entity, collection and query caches
+     *
+     * @param hibernateCacheManager The cache manager holding the regions
+     * @return The customizer adding the cache settings to the Hibernate properties
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager)
+    {
+        boolean statistics = env.getProperty("usermodel.cache.statistics",
+            Boolean.class,
+            false);
+
+        return hibernateProperties ->
+        {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE,
+                true);
+            hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE,
+                true);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY,
+                "jcache");
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER,
+                hibernateCacheManager);
+            // every region is created above, a missing one is a typo in a @Cache annotation
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY,
+                "fail");
+            if (statistics)
+            {
+                hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS,
+                    true);
+            }
+        };
+    }
+
+    /**
+     * Builds the size and time limits of a region from application.properties
+     *
+     * @param region The name of the region
+     * @return The Caffeine configuration of the region
+     */
+    private CaffeineConfiguration<Object, Object> regionConfiguration(String region)
+    {
+        long maximumSize = env.getProperty("usermodel.cache." + region + ".maximum-size",
+            Long.class,
+            env.getProperty("usermodel.cache.maximum-size",
+                Long.class,
+                10000L));
+        Duration expireAfterWrite = env.getProperty("usermodel.cache." + region + ".expire-after-write",
+            Duration.class,
+            env.getProperty("usermodel.cache.expire-after-write",
+                Duration.class,
+                Duration.ofMinutes(10)));
+
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        return configuration;
+    }
+}
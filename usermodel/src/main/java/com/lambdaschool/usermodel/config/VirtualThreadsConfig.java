@@ -0,0 +1,66 @@
+package com.lambdaschool.usermodel.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs web requests on virtual threads instead of Tomcat's pool of platform threads.
+ * Off unless usermodel.web.virtual-threads=true.
+ * <p>
+ * A request waiting on the database then parks its virtual thread instead of holding one of the server.tomcat.max-threads
+ * platform threads, so a burst of requests no longer queues behind a few slow ones. Concurrency is bounded by
+ * server.tomcat.max-connections instead, and database access by the Hikari pool, sized on its own with
+ * spring.datasource.hikari.maximum-pool-size: requests beyond the pool wait for a connection up to
+ * spring.datasource.hikari.connection-timeout.
+ * <p>
+ * Virtual threads need Java 21. The application is still compiled for Java 11, as Spring 5 cannot read newer class files,
+ * so the executor is looked up when the application starts and starting fails on an older Java.
+ * JDBC drivers that block inside synchronized code, like embedded H2, pin the virtual thread to its carrier while they do;
+ * -Djdk.tracePinnedThreads=short shows where.
+ */
+@Configuration
+@ConditionalOnProperty(name = "usermodel.web.virtual-threads",
+    havingValue = "true")
+public class VirtualThreadsConfig
+{
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+
+    /**
+     * Hands Tomcat an executor starting a new virtual thread for every request
+     *
+     * @return The customizer replacing the executor of the Tomcat connector
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer()
+    {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        logger.info("Web requests run on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * Calls Executors.newVirtualThreadPerTaskExecutor, which only exists from Java 21 on
+     *
+     * @return An executor starting a new virtual thread for each task
+     * @throws IllegalStateException if the running Java has no virtual threads
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("usermodel.web.virtual-threads needs Java 21 or later, running on " + Runtime.version(),
+                e);
+        }
+    }
+}
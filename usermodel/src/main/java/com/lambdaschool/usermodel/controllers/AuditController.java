@@ -0,0 +1,51 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.lambdaschool.usermodel.models.AuditEntry;
+import com.lambdaschool.usermodel.services.AuditService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * The entry point for clients to read the change history of users, roles, useremails and user roles
+ */
+@RestController
+@RequestMapping("/audit")
+public class AuditController
+{
+    /**
+     * Using the Audit service to read the history
+     */
+    @Autowired
+    private AuditService auditService;
+
+    /**
+     * The changes to one row, oldest first
+     * <br>Example: <a href="http://localhost:2019/audit/users/52">http://localhost:2019/audit/users/52</a>
+     * <br>Example: <a href="http://localhost:2019/audit/userroles/52:1">http://localhost:2019/audit/userroles/52:1</a>
+     *
+     * @param tablename The table of the row: users, roles, useremails or userroles
+     * @param rowkey    The primary key of the row, userid:roleid for userroles
+     * @return JSON list of the changes to the row, empty if there are none
+     * @see AuditService#findHistory(String, String) AuditService.findHistory(String, String)
+     */
+    @GetMapping(value = "/{tablename}/{rowkey}",
+        produces = {"application/json"})
+    public ResponseEntity<?> getHistory(
+        @PathVariable
+            String tablename,
+        @PathVariable
+            String rowkey)
+    {
+        List<AuditEntry> history = auditService.findHistory(tablename,
+            rowkey);
+        return new ResponseEntity<>(history,
+            HttpStatus.OK);
+    }
+}
@@ -0,0 +1,42 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.lambdaschool.usermodel.models.CacheRegionStats;
+import com.lambdaschool.usermodel.services.CacheStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * The entry point for clients to see how the second-level cache is doing
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController
+{
+    /**
+     * Using the Cache Stats service to read the cache counters
+     */
+    @Autowired
+    private CacheStatsService cacheStatsService;
+
+    /**
+     * The hits, misses and puts of every region of the second-level cache
+     * <br>Example: <a href="http://localhost:2019/cache/regions">http://localhost:2019/cache/regions</a>
+     *
+     * @return JSON list of the counters of each region, empty when the second-level cache is off
+     * @see CacheStatsService#findRegionStats() CacheStatsService.findRegionStats()
+     */
+    @GetMapping(value = "/regions",
+        produces = {"application/json"})
+    public ResponseEntity<?> listCacheRegions()
+    {
+        List<CacheRegionStats> regions = cacheStatsService.findRegionStats();
+        return new ResponseEntity<>(regions,
+            HttpStatus.OK);
+    }
+}
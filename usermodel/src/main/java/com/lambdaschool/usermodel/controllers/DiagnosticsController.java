@@ -0,0 +1,62 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.lambdaschool.usermodel.models.RequestDiagnostics;
+import com.lambdaschool.usermodel.services.DiagnosticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * The entry point for clients to see what their diagnosed requests cost, see DiagnosticsFilter
+ */
+@RestController
+@RequestMapping("/diagnostics")
+public class DiagnosticsController
+{
+    /**
+     * Using the Diagnostics service to read the diagnostics kept
+     */
+    @Autowired
+    private DiagnosticsService diagnosticsService;
+
+    /**
+     * The diagnostics of the last requests sent with the header Usermodel-Diagnostics: true
+     * <br>Example: <a href="http://localhost:2019/diagnostics/requests">http://localhost:2019/diagnostics/requests</a>
+     *
+     * @return JSON list of the diagnostics, newest first, empty when usermodel.diagnostics.enabled=false
+     * @see DiagnosticsService#findAll() DiagnosticsService.findAll()
+     */
+    @GetMapping(value = "/requests",
+        produces = {"application/json"})
+    public ResponseEntity<?> listRequests()
+    {
+        List<RequestDiagnostics> requests = diagnosticsService.findAll();
+        return new ResponseEntity<>(requests,
+            HttpStatus.OK);
+    }
+
+    /**
+     * The diagnostics of one request
+     * <br>Example: <a href="http://localhost:2019/diagnostics/request/1">http://localhost:2019/diagnostics/request/1</a>
+     *
+     * @param requestId The number of the request, from its Usermodel-Diagnostics-Id header
+     * @return JSON of the diagnostics of the request
+     * @see DiagnosticsService#findById(long) DiagnosticsService.findById(long)
+     */
+    @GetMapping(value = "/request/{requestId}",
+        produces = {"application/json"})
+    public ResponseEntity<?> getRequestById(
+        @PathVariable
+            Long requestId)
+    {
+        RequestDiagnostics diagnostics = diagnosticsService.findById(requestId);
+        return new ResponseEntity<>(diagnostics,
+            HttpStatus.OK);
+    }
+}
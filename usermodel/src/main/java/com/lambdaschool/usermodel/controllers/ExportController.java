@@ -0,0 +1,109 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.lambdaschool.usermodel.services.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The entry point for clients to download all the data at once, for analytics and backups
+ */
+@RestController
+@RequestMapping("/export")
+public class ExportController
+{
+    /**
+     * The size (int) in bytes of the buffer of the gzip compression
+     */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Using the Export service to write out the data
+     */
+    @Autowired
+    private ExportService exportService;
+
+    /**
+     * Streams every user with its useremails and role names, ordered by userid, as newline delimited JSON or CSV.
+     * Users are written as they are read from the database, so memory use does not grow with the number of users.
+     * Compressed with gzip when the client accepts it, for example curl --compressed.
+     * <br>Example: <a href="http://localhost:2019/export/users">http://localhost:2019/export/users</a>
+     * <br>Example: <a href="http://localhost:2019/export/users?format=csv">http://localhost:2019/export/users?format=csv</a>
+     *
+     * @param format         ndjson, the default, or csv
+     * @param acceptEncoding The encodings the client accepts, gzip among them to compress the response
+     * @param response       The response the users are written to
+     * @throws IOException if the response cannot be written to
+     * @see ExportService#exportUsers(ExportService.Format, OutputStream) ExportService.exportUsers(Format, OutputStream)
+     */
+    @GetMapping(value = "/users",
+        produces = {"application/x-ndjson", "text/csv"})
+    public void exportUsers(
+        @RequestParam(defaultValue = "ndjson")
+            String format,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING,
+            required = false)
+            String acceptEncoding,
+        HttpServletResponse response) throws IOException
+    {
+        ExportService.Format exportFormat = parseFormat(format);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase()
+            .contains("gzip");
+
+        response.setContentType(exportFormat == ExportService.Format.CSV ? "text/csv;charset=UTF-8" : "application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"users." + exportFormat.name()
+                .toLowerCase() + "\"");
+        response.setHeader(HttpHeaders.VARY,
+            HttpHeaders.ACCEPT_ENCODING);
+        if (gzip)
+        {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING,
+                "gzip");
+            try (GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(),
+                GZIP_BUFFER_SIZE))
+            {
+                exportService.exportUsers(exportFormat,
+                    out);
+            }
+        } else
+        {
+            OutputStream out = response.getOutputStream();
+            exportService.exportUsers(exportFormat,
+                out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Finds the export format of the format parameter
+     *
+     * @param format The format parameter (String), in any case
+     * @return The export format
+     * @throws ResponseStatusException with status BAD_REQUEST if the format is not known
+     */
+    private static ExportService.Format parseFormat(String format)
+    {
+        for (ExportService.Format exportFormat : ExportService.Format.values())
+        {
+            if (exportFormat.name()
+                .equalsIgnoreCase(format))
+            {
+                return exportFormat;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+            "Unknown format " + format + ", expected ndjson or csv");
+    }
+}
@@ -1,20 +1,32 @@
 package com.lambdaschool.usermodel.controllers;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.config.BinaryFormatsConfig;
+import com.lambdaschool.usermodel.models.CacheStats;
 import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.RoleAssignmentResult;
+import com.lambdaschool.usermodel.services.RoleAssignmentService;
 import com.lambdaschool.usermodel.services.RoleService;
+import com.lambdaschool.usermodel.views.RoleVersion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
 import java.util.List;
 
 /**
  * The entry point for clients to access role data
+ * <p>
+ * Answers in JSON, or in Smile or CBOR for clients asking for them, see BinaryFormatsConfig.
  */
 @RestController
 @RequestMapping("/roles")
@@ -26,6 +38,18 @@ public class RolesController
     @Autowired
     RoleService roleService;
 
+    /**
+     * Using the Role Assignment service to give roles to, and take roles from, many users at once
+     */
+    @Autowired
+    RoleAssignmentService roleAssignmentService;
+
+    /**
+     * The JSON mapper configured by Spring Boot. Used to read user ids one at a time.
+     */
+    @Autowired
+    ObjectMapper objectMapper;
+
     /**
      * List of all roles
      * <br>Example: <a href="http://localhost:2019/roles/roles">http://localhost:2019/roles/roles</a>
@@ -34,7 +58,7 @@ public class RolesController
      * @see RoleService#findAll() RoleService.findAll()
      */
     @GetMapping(value = "/roles",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> listRoles()
     {
         List<Role> allRoles = roleService.findAll();
@@ -46,21 +70,80 @@ public class RolesController
      * The Role referenced by the given primary key
      * <br>Example: <a href="http://localhost:2019/roles/role/3">http://localhost:2019/roles/role/3</a>
      *
-     * @param roleId The primary key (long) of the role you seek
-     * @return JSON object of the role you seek
+     * <p>
+     * The ETag of the response is made of the version of the role and of what its users add up to, see
+     * RoleService.findVersionById, and of the format for Smile and CBOR. A request whose If-None-Match still has it
+     * gets status NOT_MODIFIED, without the role or its users being read.
+     *
+     * @param roleId  The primary key (long) of the role you seek
+     * @param request The request, with the If-None-Match header if the client has the role already
+     * @return JSON object of the role you seek, or no body and status NOT_MODIFIED if the client has it already
      * @see RoleService#findRoleById(long) RoleService.findRoleById(long)
      */
     @GetMapping(value = "/role/{roleId}",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> getRoleById(
         @PathVariable
-            Long roleId)
+            Long roleId,
+        WebRequest request)
     {
+        RoleVersion version = roleService.findVersionById(roleId);
+        String etag = "\"" + version.getVersion() + "-" + version.getMembers() + "-" + version.getMemberversions() + "-" + Long.toHexString(version.getMemberhash()) + BinaryFormatsConfig.etagSuffix(request) + "\"";
+        // also sets the ETag header of the response
+        if (request.checkNotModified(etag))
+        {
+            return null;
+        }
+
         Role r = roleService.findRoleById(roleId);
         return new ResponseEntity<>(r,
             HttpStatus.OK);
     }
 
+    /**
+     * One page of the ids of the users having the role, read from the role membership index without loading the users.
+     * The user id of the last user of a page is the cursor for the next page.
+     * A Link header pointing to the next page is included when the page is not empty.
+     * <br>Example: <a href="http://localhost:2019/roles/role/3/members?after=0&amp;size=100">http://localhost:2019/roles/role/3/members?after=0&amp;size=100</a>
+     *
+     * @param roleId The primary key (long) of the role
+     * @param after  The user id of the last user of the previous page. Defaults to 0, the first page.
+     * @param size   The maximum number of user ids in the page. Defaults to 100, limited to 1000.
+     * @return JSON list of the user ids in the page, ordered by user id, with a status of OK
+     * @see RoleService#findMemberIds(long, long, int) RoleService.findMemberIds(long, long, int)
+     */
+    @GetMapping(value = "/role/{roleId}/members",
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
+    public ResponseEntity<?> listRoleMembers(
+        @PathVariable
+            Long roleId,
+        @RequestParam(defaultValue = "0")
+            long after,
+        @RequestParam(defaultValue = "100")
+            int size)
+    {
+        List<Long> userids = roleService.findMemberIds(roleId,
+            after,
+            size);
+
+        // set the link header to the next page
+        HttpHeaders responseHeaders = new HttpHeaders();
+        if (!userids.isEmpty())
+        {
+            URI nextPageURI = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after",
+                    userids.get(userids.size() - 1))
+                .build()
+                .toUri();
+            responseHeaders.add(HttpHeaders.LINK,
+                "<" + nextPageURI + ">; rel=\"next\"");
+        }
+
+        return new ResponseEntity<>(userids,
+            responseHeaders,
+            HttpStatus.OK);
+    }
+
     /**
      * The Role with the given name
      * <br>Example: <a href="http://localhost:2019/roles/role/name/data">http://localhost:2019/roles/role/name/data</a>
@@ -70,7 +153,7 @@ public class RolesController
      * @see RoleService#findByName(String) RoleService.findByName(String)
      */
     @GetMapping(value = "/role/name/{roleName}",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> getRoleByName(
         @PathVariable
             String roleName)
@@ -89,7 +172,7 @@ public class RolesController
      * @see RoleService#save(Role) RoleService.save(Role)
      */
     @PostMapping(value = "/role",
-        consumes = {"application/json"})
+        consumes = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> addNewRole(
         @Valid
         @RequestBody
@@ -143,7 +226,7 @@ public class RolesController
      * @return Status of OK
      */
     @PutMapping(value = "/role/{roleid}",
-        consumes = {"application/json"})
+        consumes = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> putUpdateRole(
         @PathVariable
             long roleid,
@@ -165,7 +248,7 @@ public class RolesController
      * @return Status of OK
      */
     @PatchMapping(value = "/role/{roleid}",
-        consumes = {"application/json"})
+        consumes = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> patchUpdateRole(
         @PathVariable
             long roleid,
@@ -177,4 +260,82 @@ public class RolesController
             newRole);
         return new ResponseEntity<>(HttpStatus.OK);
     }
+
+    /**
+     * Gives the role to many users at once. The body is either a JSON list of user ids
+     * or newline delimited JSON (NDJSON), one user id per line.
+     * <br>Example: <a href="http://localhost:2019/roles/role/2/users">http://localhost:2019/roles/role/2/users</a>
+     *
+     * @param roleid  The primary key (long) of the role to give
+     * @param request The request the user ids are read from
+     * @return JSON object with the number of combinations inserted, users skipped and user ids missing,
+     * and the duration of each batch, with a status of OK
+     * @throws IOException if the request cannot be read
+     * @see RoleAssignmentService#assignRole(long, java.util.Iterator) RoleAssignmentService.assignRole(long, Iterator)
+     */
+    @PostMapping(value = "/role/{roleid}/users",
+        consumes = {"application/json", "application/x-ndjson"},
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
+    public ResponseEntity<?> assignRoleToUsers(
+        @PathVariable
+            long roleid,
+        HttpServletRequest request) throws IOException
+    {
+        RoleAssignmentResult result;
+        try (MappingIterator<Long> userids = objectMapper.readerFor(Long.class)
+            .readValues(request.getInputStream()))
+        {
+            result = roleAssignmentService.assignRole(roleid,
+                userids);
+        }
+        return new ResponseEntity<>(result,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Takes the role away from many users at once. The body is either a JSON list of user ids
+     * or newline delimited JSON (NDJSON), one user id per line.
+     * <br>Example: <a href="http://localhost:2019/roles/role/2/users">http://localhost:2019/roles/role/2/users</a>
+     *
+     * @param roleid  The primary key (long) of the role to take away
+     * @param request The request the user ids are read from
+     * @return JSON object with the number of combinations deleted, users skipped and user ids missing,
+     * and the duration of each batch, with a status of OK
+     * @throws IOException if the request cannot be read
+     * @see RoleAssignmentService#revokeRole(long, java.util.Iterator) RoleAssignmentService.revokeRole(long, Iterator)
+     */
+    @DeleteMapping(value = "/role/{roleid}/users",
+        consumes = {"application/json", "application/x-ndjson"},
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
+    public ResponseEntity<?> revokeRoleFromUsers(
+        @PathVariable
+            long roleid,
+        HttpServletRequest request) throws IOException
+    {
+        RoleAssignmentResult result;
+        try (MappingIterator<Long> userids = objectMapper.readerFor(Long.class)
+            .readValues(request.getInputStream()))
+        {
+            result = roleAssignmentService.revokeRole(roleid,
+                userids);
+        }
+        return new ResponseEntity<>(result,
+            HttpStatus.OK);
+    }
+
+    /**
+     * The counters of the in-process role cache
+     * <br>Example: <a href="http://localhost:2019/roles/cache/stats">http://localhost:2019/roles/cache/stats</a>
+     *
+     * @return JSON object with the hits, misses, loads, evictions and size of the role cache
+     * @see RoleService#getCacheStats() RoleService.getCacheStats()
+     */
+    @GetMapping(value = "/cache/stats",
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
+    public ResponseEntity<?> getRoleCacheStats()
+    {
+        CacheStats stats = roleService.getCacheStats();
+        return new ResponseEntity<>(stats,
+            HttpStatus.OK);
+    }
 }
@@ -1,63 +1,222 @@
 package com.lambdaschool.usermodel.controllers;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.config.BinaryFormatsConfig;
+import com.lambdaschool.usermodel.models.BulkImportResult;
 import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.services.UserImportService;
 import com.lambdaschool.usermodel.services.UserService;
+import com.lambdaschool.usermodel.views.UserSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 
 /**
  * The entry point for clients to access user data
+ * <p>
+ * Answers in JSON, or in Smile or CBOR for clients asking for them, see BinaryFormatsConfig.
  */
 @RestController
 @RequestMapping("/users")
 public class UserController
 {
+    /**
+     * The view parameter asking for whole users, with their emails and roles
+     */
+    static final String VIEW_FULL = "full";
+
+    /**
+     * The view parameter asking for only the id, username and primary email of users,
+     * read from just those columns of the users table
+     */
+    static final String VIEW_SUMMARY = "summary";
+
     /**
      * Using the User service to process user data
      */
     @Autowired
     private UserService userService;
 
+    /**
+     * Using the User Import service to add users in bulk
+     */
+    @Autowired
+    private UserImportService userImportService;
+
+    /**
+     * The JSON mapper configured by Spring Boot. Used to read and write users one at a time when streaming.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Returns a list of all users
      * <br>Example: <a href="http://localhost:2019/users/users">http://localhost:2019/users/users</a>
+     * <br>Example: <a href="http://localhost:2019/users/users?view=summary">http://localhost:2019/users/users?view=summary</a>
      *
+     * @param view full for the users with their emails and roles, summary for only their id, username and primary email
      * @return JSON list of all users with a status of OK
      * @see UserService#findAll() UserService.findAll()
+     * @see UserService#findAllSummaries() UserService.findAllSummaries()
      */
     @GetMapping(value = "/users",
-        produces = {"application/json"})
-    public ResponseEntity<?> listAllUsers()
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
+    public ResponseEntity<?> listAllUsers(
+        @RequestParam(defaultValue = VIEW_FULL)
+            String view)
+    {
+        List<?> myUsers = isSummaryView(view) ? userService.findAllSummaries() : userService.findAll();
+        return new ResponseEntity<>(myUsers,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Returns one page of users using keyset pagination. The userid of the last user of a page is the cursor for the next page.
+     * A Link header pointing to the next page is included when the page is not empty.
+     * <br>Example: <a href="http://localhost:2019/users/users/page?after=0&amp;size=10">http://localhost:2019/users/users/page?after=0&amp;size=10</a>
+     *
+     * @param after The userid of the last user of the previous page. Defaults to 0, the first page.
+     * @param size  The maximum number of users in the page. Defaults to 50, limited to 1000.
+     * @param view  full for the users with their emails and roles, summary for only their id, username and primary email
+     * @return JSON list of the users in the page with a status of OK
+     * @see UserService#findAllAfter(long, int) UserService.findAllAfter(long, int)
+     * @see UserService#findSummariesAfter(long, int) UserService.findSummariesAfter(long, int)
+     */
+    @GetMapping(value = "/users/page",
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
+    public ResponseEntity<?> listUsersPage(
+        @RequestParam(defaultValue = "0")
+            long after,
+        @RequestParam(defaultValue = "50")
+            int size,
+        @RequestParam(defaultValue = VIEW_FULL)
+            String view)
     {
-        List<User> myUsers = userService.findAll();
+        List<?> myUsers;
+        long lastUserid = 0;
+        if (isSummaryView(view))
+        {
+            List<UserSummary> summaries = userService.findSummariesAfter(after,
+                size);
+            if (!summaries.isEmpty())
+            {
+                lastUserid = summaries.get(summaries.size() - 1)
+                    .getUserid();
+            }
+            myUsers = summaries;
+        } else
+        {
+            List<User> users = userService.findAllAfter(after,
+                size);
+            if (!users.isEmpty())
+            {
+                lastUserid = users.get(users.size() - 1)
+                    .getUserid();
+            }
+            myUsers = users;
+        }
+
+        // set the link header to the next page
+        HttpHeaders responseHeaders = new HttpHeaders();
+        if (!myUsers.isEmpty())
+        {
+            URI nextPageURI = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after",
+                    lastUserid)
+                .build()
+                .toUri();
+            responseHeaders.add(HttpHeaders.LINK,
+                "<" + nextPageURI + ">; rel=\"next\"");
+        }
+
         return new ResponseEntity<>(myUsers,
+            responseHeaders,
             HttpStatus.OK);
     }
 
+    /**
+     * Streams all users as newline delimited JSON (NDJSON), one user per line, ordered by userid.
+     * Users are written to the response as they are read from the database so memory use does not grow with the number of users.
+     * <br>Example: <a href="http://localhost:2019/users/users/stream">http://localhost:2019/users/users/stream</a>
+     *
+     * @param response The response the users are written to
+     * @throws IOException if the response cannot be written to
+     * @see UserService#forEachUser(java.util.function.Consumer) UserService.forEachUser(Consumer)
+     */
+    @GetMapping(value = "/users/stream",
+        produces = {"application/x-ndjson"})
+    public void streamAllUsers(HttpServletResponse response) throws IOException
+    {
+        response.setContentType("application/x-ndjson");
+        ServletOutputStream out = response.getOutputStream();
+
+        userService.forEachUser(u ->
+        {
+            try
+            {
+                out.write(objectMapper.writeValueAsBytes(u));
+                out.write('\n');
+            } catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
     /**
      * Returns a single user based off a user id number
      * <br>Example: <a href="http://localhost:2019/users/user/7">http://localhost:2019/users/user/7</a>
      *
-     * @param userId The primary key of the user you seek
-     * @return JSON object of the user you seek
+     * <br>Example: <a href="http://localhost:2019/users/user/7?view=summary">http://localhost:2019/users/user/7?view=summary</a>
+     *
+     * <p>
+     * The ETag of the response is the version of the user, which changes with every change to the user, its emails or
+     * its roles, followed by the format for Smile and CBOR. A request whose If-None-Match still has it gets status
+     * NOT_MODIFIED, without the user being read.
+     *
+     * @param userId  The primary key of the user you seek
+     * @param view    full for the user with its emails and roles, summary for only its id, username and primary email
+     * @param request The request, with the If-None-Match header if the client has the user already
+     * @return JSON object of the user you seek, or no body and status NOT_MODIFIED if the client has it already
      * @see UserService#findUserById(long) UserService.findUserById(long)
+     * @see UserService#findSummaryById(long) UserService.findSummaryById(long)
      */
     @GetMapping(value = "/user/{userId}",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> getUserById(
         @PathVariable
-            Long userId)
+            Long userId,
+        @RequestParam(defaultValue = VIEW_FULL)
+            String view,
+        WebRequest request)
     {
-        User u = userService.findUserById(userId);
+        boolean summary = isSummaryView(view);
+        // the two views differ, and so do the formats, so they get different tags
+        String etag = "\"" + userService.findVersionById(userId) + (summary ? "-summary" : "") + BinaryFormatsConfig.etagSuffix(request) + "\"";
+        // also sets the ETag header of the response
+        if (request.checkNotModified(etag))
+        {
+            return null;
+        }
+
+        Object u = summary ? userService.findSummaryById(userId) : userService.findUserById(userId);
         return new ResponseEntity<>(u,
             HttpStatus.OK);
     }
@@ -71,7 +230,7 @@ public class UserController
      * @see UserService#findByName(String) UserService.findByName(String)
      */
     @GetMapping(value = "/user/name/{userName}",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> getUserByName(
         @PathVariable
             String userName)
@@ -82,20 +241,25 @@ public class UserController
     }
 
     /**
-     * Returns a list of users whose username contains the given substring
-     * <br>Example: <a href="http://localhost:2019/users/user/name/like/da">http://localhost:2019/users/user/name/like/da</a>
+     * Returns a list of users whose username contains the given substring, best matches first
+     * <br>Example: <a href="http://localhost:2019/users/user/name/like/da?limit=10">http://localhost:2019/users/user/name/like/da?limit=10</a>
      *
      * @param userName Substring of the username for which you seek
+     * @param limit    The most users to return, all matching users if not given
      * @return A JSON list of users you seek
-     * @see UserService#findByNameContaining(String) UserService.findByNameContaining(String)
+     * @see UserService#findByNameContaining(String, int) UserService.findByNameContaining(String, int)
      */
     @GetMapping(value = "/user/name/like/{userName}",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> getUserLikeName(
         @PathVariable
-            String userName)
+            String userName,
+        @RequestParam(required = false)
+            Integer limit)
     {
-        List<User> u = userService.findByNameContaining(userName);
+        List<User> u = userService.findByNameContaining(userName,
+            limit == null ? Integer.MAX_VALUE : Math.max(0,
+                limit));
         return new ResponseEntity<>(u,
             HttpStatus.OK);
     }
@@ -112,7 +276,7 @@ public class UserController
      * @see UserService#save(User) UserService.save(User)
      */
     @PostMapping(value = "/user",
-        consumes = {"application/json"})
+        consumes = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> addNewUser(
         @Valid
         @RequestBody
@@ -134,29 +298,63 @@ public class UserController
             HttpStatus.CREATED);
     }
 
+    /**
+     * Adds many users at once. The body is either a JSON list of users or newline delimited JSON (NDJSON), one user per line,
+     * each user in the same form as when adding a single user. Users are read from the request as they are saved,
+     * in batches, so the whole body is never held in memory.
+     * <br> Example: <a href="http://localhost:2019/users/bulk">http://localhost:2019/users/bulk</a>
+     *
+     * @param request The request the users are read from
+     * @return JSON object with how many users were received, imported and rejected, and why, with a status of OK
+     * @throws IOException if the request cannot be read
+     * @see UserImportService#saveAll(java.util.Iterator) UserImportService.saveAll(Iterator)
+     */
+    @PostMapping(value = "/bulk",
+        consumes = {"application/json", "application/x-ndjson"},
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
+    public ResponseEntity<?> addUsersInBulk(HttpServletRequest request) throws IOException
+    {
+        BulkImportResult result;
+        try (MappingIterator<User> users = objectMapper.readerFor(User.class)
+            .readValues(request.getInputStream()))
+        {
+            result = userImportService.saveAll(users);
+        }
+        return new ResponseEntity<>(result,
+            HttpStatus.OK);
+    }
+
     /**
      * Given a complete User Object
      * Given the user id, primary key, is in the User table,
      * replace the User record , user role combinations and Useremail records.
      * <br> Example: <a href="http://localhost:2019/users/user/15">http://localhost:2019/users/user/15</a>
+     * <p>
+     * With an If-Match header holding the ETag the user was read with, the user is only replaced if nobody changed it
+     * since, otherwise the status is CONFLICT.
      *
      * @param updateUser A complete User including all emails and roles to be used to
      *                   replace the User. Roles must already exist.
      * @param userid     The primary key of the user you wish to replace.
+     * @param ifMatch    The ETag of the user as the client read it, if given
      * @return status of OK
-     * @see UserService#save(User) UserService.save(User)
+     * @see UserService#save(User, Long) UserService.save(User, Long)
      */
     @PutMapping(value = "/user/{userid}",
-        consumes = {"application/json"})
+        consumes = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> updateFullUser(
         @Valid
         @RequestBody
             User updateUser,
         @PathVariable
-            long userid)
+            long userid,
+        @RequestHeader(value = HttpHeaders.IF_MATCH,
+            required = false)
+            String ifMatch)
     {
         updateUser.setUserid(userid);
-        userService.save(updateUser);
+        userService.save(updateUser,
+            versionOf(ifMatch));
 
         return new ResponseEntity<>(HttpStatus.OK);
     }
@@ -165,22 +363,30 @@ public class UserController
      * Updates the user record associated with the given id with the provided data. Only the provided fields are affected.
      * If an email list or user role combination list is given, it replaces the list.
      * <br> Example: <a href="http://localhost:2019/users/user/7">http://localhost:2019/users/user/7</a>
+     * <p>
+     * With an If-Match header holding the ETag the user was read with, the user is only updated if nobody changed it
+     * since, otherwise the status is CONFLICT.
      *
      * @param updateUser An object containing values for just the fields that are being updated. All other fields are left NULL.
      * @param id         The primary key of the user you wish to update.
+     * @param ifMatch    The ETag of the user as the client read it, if given
      * @return A status of OK
-     * @see UserService#update(User, long) UserService.update(User, long)
+     * @see UserService#update(User, long, Long) UserService.update(User, long, Long)
      */
     @PatchMapping(value = "/user/{id}",
-        consumes = {"application/json"})
+        consumes = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> updateUser(
         @RequestBody
             User updateUser,
         @PathVariable
-            long id)
+            long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH,
+            required = false)
+            String ifMatch)
     {
         userService.update(updateUser,
-            id);
+            id,
+            versionOf(ifMatch));
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -213,13 +419,31 @@ public class UserController
      * @return JSON list of all users with the number of emails associated with them.
      */
     @GetMapping(value = "/user/email/count",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> getNumUserEmails()
     {
         return new ResponseEntity<>(userService.getCountUserEmails(),
             HttpStatus.OK);
     }
 
+    /**
+     * Find one user and the number of emails associated with it. Does not include primary email in the count
+     * <br>Example: <a href="http://localhost:2019/users/user/7/email/count">http://localhost:2019/users/user/7/email/count</a>
+     *
+     * @param userId The primary key of the user you seek
+     * @return JSON object of the user with the number of emails associated with it
+     * @see UserService#getCountUserEmails(long) UserService.getCountUserEmails(long)
+     */
+    @GetMapping(value = "/user/{userId}/email/count",
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
+    public ResponseEntity<?> getNumUserEmailsById(
+        @PathVariable
+            long userId)
+    {
+        return new ResponseEntity<>(userService.getCountUserEmails(userId),
+            HttpStatus.OK);
+    }
+
     /**
      * Deletes the given user, user role combination
      * <br>Example: <a href="http://localhost:2019/users/user/7/role/2">http://localhost:2019/users/user/7/role/2</a>
@@ -261,4 +485,59 @@ public class UserController
 
         return new ResponseEntity<>(HttpStatus.CREATED);
     }
-}
\ No newline at end of file
+
+    /**
+     * Reads the version of the user out of an If-Match header. Any ETag of getUserById will do, whichever the view
+     * or format, as they all start with the version. Of a list of tags only the first is used.
+     *
+     * @param ifMatch The If-Match header of the request, null if none
+     * @return The version (Long) the client read, null if it did not send one or sent *
+     * @throws ResponseStatusException with a status of BAD_REQUEST if the header holds no ETag of a user
+     */
+    private static Long versionOf(String ifMatch)
+    {
+        if (ifMatch == null || ifMatch.trim()
+            .equals("*"))
+        {
+            return null;
+        }
+
+        String etag = ifMatch.split(",")[0].trim();
+        if (etag.startsWith("W/"))
+        {
+            etag = etag.substring(2);
+        }
+        int end = etag.indexOf('-');
+        try
+        {
+            return Long.parseLong(etag.substring(1,
+                end < 0 ? etag.length() - 1 : end));
+        } catch (NumberFormatException | IndexOutOfBoundsException e)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "If-Match must hold an ETag of the user, got " + ifMatch);
+        }
+    }
+
+    /**
+     * Tells which view of the users was asked for
+     *
+     * @param view The view parameter of the request
+     * @return true for the summary view, false for the full view
+     * @throws ResponseStatusException with a status of BAD_REQUEST for any other view
+     */
+    private static boolean isSummaryView(String view)
+    {
+        if (VIEW_SUMMARY.equalsIgnoreCase(view))
+        {
+            return true;
+        } else if (VIEW_FULL.equalsIgnoreCase(view))
+        {
+            return false;
+        } else
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Unknown view " + view + ", expected " + VIEW_FULL + " or " + VIEW_SUMMARY);
+        }
+    }
+}
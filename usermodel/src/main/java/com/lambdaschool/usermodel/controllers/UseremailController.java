@@ -15,6 +15,8 @@ import java.util.List;
 
 /**
  * The entry point for client to access user, email combinations
+ * <p>
+ * Answers in JSON, or in Smile or CBOR for clients asking for them, see BinaryFormatsConfig.
  */
 @RestController
 @RequestMapping("/useremails")
@@ -33,7 +35,7 @@ public class UseremailController
      * @return JSON list of all users emails
      */
     @GetMapping(value = "/useremails",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> listAllUseremails()
     {
         List<Useremail> allUserEmails = useremailService.findAll();
@@ -49,7 +51,7 @@ public class UseremailController
      * @return JSON object of the user email combination you seek with a status of OK
      */
     @GetMapping(value = "/useremail/{useremailId}",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> getUserEmailById(
         @PathVariable
             Long useremailId)
@@ -141,7 +143,7 @@ public class UseremailController
      * @return JSON list of the user email combinations associated with the given user
      */
     @GetMapping(value = "/username/{userName}",
-        produces = {"application/json"})
+        produces = {"application/json", "application/x-jackson-smile", "application/cbor"})
     public ResponseEntity<?> findUseremailByUserName(
         @PathVariable
             String userName)
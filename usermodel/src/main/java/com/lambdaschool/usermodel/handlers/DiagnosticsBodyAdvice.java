@@ -0,0 +1,50 @@
+package com.lambdaschool.usermodel.handlers;
+
+import com.lambdaschool.usermodel.config.DiagnosticsFilter;
+import com.lambdaschool.usermodel.controllers.RolesController;
+import com.lambdaschool.usermodel.controllers.UserController;
+import com.lambdaschool.usermodel.controllers.UseremailController;
+import com.lambdaschool.usermodel.models.RequestDiagnostics;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Marks when a controller of the users, roles and useremails hands its result over to be written, so a diagnosed
+ * request tells the time spent serializing, and the statements run by lazy loading while serializing,
+ * apart from the rest. See DiagnosticsFilter.
+ */
+@ControllerAdvice(assignableTypes = {UserController.class, RolesController.class, UseremailController.class})
+public class DiagnosticsBodyAdvice implements ResponseBodyAdvice<Object>
+{
+    @Override
+    public boolean supports(
+        MethodParameter returnType,
+        Class<? extends HttpMessageConverter<?>> converterType)
+    {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(
+        Object body,
+        MethodParameter returnType,
+        MediaType selectedContentType,
+        Class<? extends HttpMessageConverter<?>> selectedConverterType,
+        ServerHttpRequest request,
+        ServerHttpResponse response)
+    {
+        RequestDiagnostics diagnostics = DiagnosticsFilter.current();
+        if (diagnostics != null)
+        {
+            diagnostics.serializationStarted(returnType.getContainingClass()
+                .getSimpleName() + "." + returnType.getExecutable()
+                .getName());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,94 @@
+package com.lambdaschool.usermodel.handlers;
+
+import com.lambdaschool.usermodel.models.ErrorDetail;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import javax.persistence.EntityExistsException;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Maps the exceptions the services throw to HTTP statuses.
+ * Anything not handled here is left to the Spring Boot default error handling.
+ */
+@RestControllerAdvice
+public class RestExceptionHandler
+{
+    /**
+     * A user, role, useremail or user role combination that was asked for does not exist
+     *
+     * @param e       The exception thrown by the service
+     * @param request The request that failed
+     * @return The error detail with a status of NOT_FOUND
+     */
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ResponseEntity<?> handleEntityNotFound(
+        EntityNotFoundException e,
+        HttpServletRequest request)
+    {
+        return errorResponse(HttpStatus.NOT_FOUND,
+            e.getMessage(),
+            request);
+    }
+
+    /**
+     * What was to be added already exists, or what was to be changed cannot be changed that way
+     *
+     * @param e       The exception thrown by the service
+     * @param request The request that failed
+     * @return The error detail with a status of CONFLICT
+     */
+    @ExceptionHandler(EntityExistsException.class)
+    public ResponseEntity<?> handleEntityExists(
+        EntityExistsException e,
+        HttpServletRequest request)
+    {
+        return errorResponse(HttpStatus.CONFLICT,
+            e.getMessage(),
+            request);
+    }
+
+    /**
+     * What was to be changed was changed by someone else after it was read, see User.version.
+     * Spring hands these on as OptimisticLockingFailureException, JPA throws OptimisticLockException itself.
+     *
+     * @param e       The exception thrown while saving the change
+     * @param request The request that failed
+     * @return The error detail with a status of CONFLICT
+     */
+    @ExceptionHandler({OptimisticLockingFailureException.class, OptimisticLockException.class})
+    public ResponseEntity<?> handleOptimisticLockFailure(
+        RuntimeException e,
+        HttpServletRequest request)
+    {
+        return errorResponse(HttpStatus.CONFLICT,
+            "Changed by someone else in the meantime, read it again and retry",
+            request);
+    }
+
+    /**
+     * Builds the response for the given status
+     *
+     * @param status  The status of the response
+     * @param message What went wrong
+     * @param request The request that failed
+     * @return The error detail with the given status
+     */
+    private ResponseEntity<?> errorResponse(
+        HttpStatus status,
+        String message,
+        HttpServletRequest request)
+    {
+        ErrorDetail errorDetail = new ErrorDetail(status.value(),
+            status.getReasonPhrase(),
+            message,
+            request.getRequestURI());
+        return new ResponseEntity<>(errorDetail,
+            status);
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Contains the classes that turn exceptions thrown while handling a request into responses for the client.
+ *
+ * @author John Mitchell (john@lambdaschool.com) with Lambda School unless otherwise noted.
+ */
+package com.lambdaschool.usermodel.handlers;
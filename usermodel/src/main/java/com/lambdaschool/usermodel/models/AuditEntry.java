@@ -0,0 +1,126 @@
+package com.lambdaschool.usermodel.models;
+
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.util.Date;
+
+import static javax.persistence.TemporalType.TIMESTAMP;
+
+/**
+ * The entity allowing interaction with the auditlog table, the change history of the users, roles, useremails and
+ * userroles tables: one row per row inserted, updated or deleted, never changed once written.
+ * <p>
+ * Rows are written in the background in JDBC batches by AuditLog, not through this entity, which is only read.
+ */
+@Entity
+@Immutable
+@Table(name = "auditlog",
+    indexes = {@Index(name = "auditlog_row",
+        columnList = "tablename, rowkey")})
+public class AuditEntry
+{
+    /**
+     * The primary key (long) of the auditlog table, counted up by the database in the order rows are written
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long auditid;
+
+    /**
+     * The table (String) whose row changed: users, roles, useremails or userroles
+     */
+    @Column(nullable = false)
+    private String tablename;
+
+    /**
+     * The primary key (String) of the row that changed. For userroles the userid and roleid, as userid:roleid.
+     */
+    @Column(nullable = false)
+    private String rowkey;
+
+    /**
+     * What happened (String) to the row: INSERT, UPDATE or DELETE
+     */
+    @Column(nullable = false)
+    private String action;
+
+    /**
+     * Who (String) changed the row, see UserAuditing
+     */
+    private String changedby;
+
+    /**
+     * When the change was committed
+     */
+    @Column(nullable = false)
+    @Temporal(TIMESTAMP)
+    private Date changeddate;
+
+    /**
+     * The default constructor is required by JPA
+     */
+    public AuditEntry()
+    {
+    }
+
+    /**
+     * Getter for auditid
+     *
+     * @return the primary key (long) of the audit entry
+     */
+    public long getAuditid()
+    {
+        return auditid;
+    }
+
+    /**
+     * Getter for tablename
+     *
+     * @return the table (String) whose row changed
+     */
+    public String getTablename()
+    {
+        return tablename;
+    }
+
+    /**
+     * Getter for rowkey
+     *
+     * @return the primary key (String) of the row that changed
+     */
+    public String getRowkey()
+    {
+        return rowkey;
+    }
+
+    /**
+     * Getter for action
+     *
+     * @return what happened (String) to the row: INSERT, UPDATE or DELETE
+     */
+    public String getAction()
+    {
+        return action;
+    }
+
+    /**
+     * Getter for changedby
+     *
+     * @return who (String) changed the row
+     */
+    public String getChangedby()
+    {
+        return changedby;
+    }
+
+    /**
+     * Getter for changeddate
+     *
+     * @return when the change was committed
+     */
+    public Date getChangeddate()
+    {
+        return changeddate;
+    }
+}
@@ -1,5 +1,6 @@
 package com.lambdaschool.usermodel.models;
 
+import com.lambdaschool.usermodel.services.AuditLogListener;
 import org.springframework.data.annotation.CreatedBy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedBy;
@@ -23,9 +24,11 @@ import static javax.persistence.TemporalType.TIMESTAMP;
  * Thus this annotiation is "listening" for when an entity is accessed and then performs its argument.
  * AuditingEntityListener.class - The class that captures the data for and updates the annotations used in auditing -
  * CreatedBy, CreatedDate, ModifiedBy, ModifiedDate
+ * AuditLogListener.class - Passes every insert, update and delete on to the audit log, which keeps the full history
+ * of changes in the auditlog table, see AuditLog
  */
 @MappedSuperclass
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, AuditLogListener.class})
 abstract class Auditable
 {
     /**
@@ -0,0 +1,107 @@
+package com.lambdaschool.usermodel.models;
+
+/**
+ * A record of the bulk user import that could not be imported, and why.
+ * Not saved to the database.
+ */
+public class BulkImportError
+{
+    /**
+     * The position (long) of the record in the import, starting at 0
+     */
+    private long index;
+
+    /**
+     * The username (String) of the record, if it had one
+     */
+    private String username;
+
+    /**
+     * Why the record could not be imported
+     */
+    private String message;
+
+    /**
+     * Default constructor
+     */
+    public BulkImportError()
+    {
+    }
+
+    /**
+     * Given the params, create a new bulk import error
+     *
+     * @param index    The position (long) of the record in the import, starting at 0
+     * @param username The username (String) of the record, can be null
+     * @param message  Why the record could not be imported
+     */
+    public BulkImportError(
+        long index,
+        String username,
+        String message)
+    {
+        this.index = index;
+        this.username = username;
+        this.message = message;
+    }
+
+    /**
+     * Getter for index
+     *
+     * @return the position (long) of the record in the import, starting at 0
+     */
+    public long getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Setter for index
+     *
+     * @param index the new position (long) of the record in the import
+     */
+    public void setIndex(long index)
+    {
+        this.index = index;
+    }
+
+    /**
+     * Getter for username
+     *
+     * @return the username (String) of the record, null if it did not have one
+     */
+    public String getUsername()
+    {
+        return username;
+    }
+
+    /**
+     * Setter for username
+     *
+     * @param username the new username (String) of the record
+     */
+    public void setUsername(String username)
+    {
+        this.username = username;
+    }
+
+    /**
+     * Getter for message
+     *
+     * @return why the record could not be imported
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Setter for message
+     *
+     * @param message the new reason the record could not be imported
+     */
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+}
@@ -0,0 +1,137 @@
+package com.lambdaschool.usermodel.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The report of a bulk user import: how many records were received, imported and rejected.
+ * Not saved to the database.
+ */
+public class BulkImportResult
+{
+    /**
+     * Only this many errors are listed. Failed still counts all of them.
+     */
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * The number of records (long) read from the import
+     */
+    private long received;
+
+    /**
+     * The number of users (long) saved to the database
+     */
+    private long imported;
+
+    /**
+     * The number of records (long) that could not be imported
+     */
+    private long failed;
+
+    /**
+     * The first MAX_REPORTED_ERRORS records that could not be imported
+     */
+    private List<BulkImportError> errors = new ArrayList<>();
+
+    /**
+     * Default constructor
+     */
+    public BulkImportResult()
+    {
+    }
+
+    /**
+     * Getter for received
+     *
+     * @return the number of records (long) read from the import
+     */
+    public long getReceived()
+    {
+        return received;
+    }
+
+    /**
+     * Setter for received
+     *
+     * @param received the new number of records (long) read from the import
+     */
+    public void setReceived(long received)
+    {
+        this.received = received;
+    }
+
+    /**
+     * Getter for imported
+     *
+     * @return the number of users (long) saved to the database
+     */
+    public long getImported()
+    {
+        return imported;
+    }
+
+    /**
+     * Setter for imported
+     *
+     * @param imported the new number of users (long) saved to the database
+     */
+    public void setImported(long imported)
+    {
+        this.imported = imported;
+    }
+
+    /**
+     * Getter for failed
+     *
+     * @return the number of records (long) that could not be imported
+     */
+    public long getFailed()
+    {
+        return failed;
+    }
+
+    /**
+     * Setter for failed
+     *
+     * @param failed the new number of records (long) that could not be imported
+     */
+    public void setFailed(long failed)
+    {
+        this.failed = failed;
+    }
+
+    /**
+     * Getter for errors
+     *
+     * @return the first MAX_REPORTED_ERRORS records that could not be imported
+     */
+    public List<BulkImportError> getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Setter for errors
+     *
+     * @param errors the new list of records that could not be imported
+     */
+    public void setErrors(List<BulkImportError> errors)
+    {
+        this.errors = errors;
+    }
+
+    /**
+     * Records a record that could not be imported
+     *
+     * @param error the record and the reason it could not be imported
+     */
+    public void addError(BulkImportError error)
+    {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS)
+        {
+            errors.add(error);
+        }
+    }
+}
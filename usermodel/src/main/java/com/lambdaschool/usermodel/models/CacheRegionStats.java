@@ -0,0 +1,135 @@
+package com.lambdaschool.usermodel.models;
+
+/**
+ * The counters Hibernate keeps for one region of the second-level cache.
+ * Not saved to the database.
+ */
+public class CacheRegionStats
+{
+    /**
+     * The name (String) of the region
+     */
+    private String region;
+
+    /**
+     * The number of lookups (long) found in the region
+     */
+    private long hits;
+
+    /**
+     * The number of lookups (long) not found in the region, so read from the database
+     */
+    private long misses;
+
+    /**
+     * The number of entries (long) put in the region
+     */
+    private long puts;
+
+    /**
+     * Default constructor
+     */
+    public CacheRegionStats()
+    {
+    }
+
+    /**
+     * Given the params, create a new cache region stats snapshot
+     *
+     * @param region The name (String) of the region
+     * @param hits   The number of lookups (long) found in the region
+     * @param misses The number of lookups (long) not found in the region
+     * @param puts   The number of entries (long) put in the region
+     */
+    public CacheRegionStats(
+        String region,
+        long hits,
+        long misses,
+        long puts)
+    {
+        this.region = region;
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+    }
+
+    /**
+     * Getter for region
+     *
+     * @return the name (String) of the region
+     */
+    public String getRegion()
+    {
+        return region;
+    }
+
+    /**
+     * Setter for region
+     *
+     * @param region the new name (String) of the region
+     */
+    public void setRegion(String region)
+    {
+        this.region = region;
+    }
+
+    /**
+     * Getter for hits
+     *
+     * @return the number of lookups (long) found in the region
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Setter for hits
+     *
+     * @param hits the new number of hits (long)
+     */
+    public void setHits(long hits)
+    {
+        this.hits = hits;
+    }
+
+    /**
+     * Getter for misses
+     *
+     * @return the number of lookups (long) not found in the region
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Setter for misses
+     *
+     * @param misses the new number of misses (long)
+     */
+    public void setMisses(long misses)
+    {
+        this.misses = misses;
+    }
+
+    /**
+     * Getter for puts
+     *
+     * @return the number of entries (long) put in the region
+     */
+    public long getPuts()
+    {
+        return puts;
+    }
+
+    /**
+     * Setter for puts
+     *
+     * @param puts the new number of puts (long)
+     */
+    public void setPuts(long puts)
+    {
+        this.puts = puts;
+    }
+}
@@ -0,0 +1,191 @@
+package com.lambdaschool.usermodel.models;
+
+/**
+ * A snapshot of the counters of an in-process cache.
+ * Not saved to the database.
+ */
+public class CacheStats
+{
+    /**
+     * The name (String) of the cache
+     */
+    private String name;
+
+    /**
+     * The number of entries (long) currently in the cache
+     */
+    private long size;
+
+    /**
+     * The number of lookups (long) answered by the cache
+     */
+    private long hits;
+
+    /**
+     * The number of lookups (long) that had to go to the database
+     */
+    private long misses;
+
+    /**
+     * The number of times (long) the cache was filled from the database
+     */
+    private long loads;
+
+    /**
+     * The number of times (long) the cache was emptied because the data behind it changed
+     */
+    private long evictions;
+
+    /**
+     * Default constructor
+     */
+    public CacheStats()
+    {
+    }
+
+    /**
+     * Given the params, create a new cache stats snapshot
+     *
+     * @param name      The name (String) of the cache
+     * @param size      The number of entries (long) currently in the cache
+     * @param hits      The number of lookups (long) answered by the cache
+     * @param misses    The number of lookups (long) that had to go to the database
+     * @param loads     The number of times (long) the cache was filled from the database
+     * @param evictions The number of times (long) the cache was emptied
+     */
+    public CacheStats(
+        String name,
+        long size,
+        long hits,
+        long misses,
+        long loads,
+        long evictions)
+    {
+        this.name = name;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.loads = loads;
+        this.evictions = evictions;
+    }
+
+    /**
+     * Getter for name
+     *
+     * @return the name (String) of the cache
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Setter for name
+     *
+     * @param name the new name (String) of the cache
+     */
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Getter for size
+     *
+     * @return the number of entries (long) currently in the cache
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Setter for size
+     *
+     * @param size the new number of entries (long)
+     */
+    public void setSize(long size)
+    {
+        this.size = size;
+    }
+
+    /**
+     * Getter for hits
+     *
+     * @return the number of lookups (long) answered by the cache
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Setter for hits
+     *
+     * @param hits the new number of hits (long)
+     */
+    public void setHits(long hits)
+    {
+        this.hits = hits;
+    }
+
+    /**
+     * Getter for misses
+     *
+     * @return the number of lookups (long) that had to go to the database
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Setter for misses
+     *
+     * @param misses the new number of misses (long)
+     */
+    public void setMisses(long misses)
+    {
+        this.misses = misses;
+    }
+
+    /**
+     * Getter for loads
+     *
+     * @return the number of times (long) the cache was filled from the database
+     */
+    public long getLoads()
+    {
+        return loads;
+    }
+
+    /**
+     * Setter for loads
+     *
+     * @param loads the new number of loads (long)
+     */
+    public void setLoads(long loads)
+    {
+        this.loads = loads;
+    }
+
+    /**
+     * Getter for evictions
+     *
+     * @return the number of times (long) the cache was emptied because the data behind it changed
+     */
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Setter for evictions
+     *
+     * @param evictions the new number of evictions (long)
+     */
+    public void setEvictions(long evictions)
+    {
+        this.evictions = evictions;
+    }
+}
@@ -0,0 +1,163 @@
+package com.lambdaschool.usermodel.models;
+
+import java.util.Date;
+
+/**
+ * The body sent to the client when a request fails.
+ * Has the same fields as the Spring Boot default error body so clients see one shape for every error.
+ * Not saved to the database.
+ */
+public class ErrorDetail
+{
+    /**
+     * When (Date) the error happened
+     */
+    private Date timestamp = new Date();
+
+    /**
+     * The HTTP status code (int) of the response
+     */
+    private int status;
+
+    /**
+     * The reason phrase (String) of the HTTP status
+     */
+    private String error;
+
+    /**
+     * What went wrong (String)
+     */
+    private String message;
+
+    /**
+     * The path (String) of the request that failed
+     */
+    private String path;
+
+    /**
+     * Default constructor
+     */
+    public ErrorDetail()
+    {
+    }
+
+    /**
+     * Given the params, create a new error detail timestamped now
+     *
+     * @param status  The HTTP status code (int) of the response
+     * @param error   The reason phrase (String) of the HTTP status
+     * @param message What went wrong (String)
+     * @param path    The path (String) of the request that failed
+     */
+    public ErrorDetail(
+        int status,
+        String error,
+        String message,
+        String path)
+    {
+        this.status = status;
+        this.error = error;
+        this.message = message;
+        this.path = path;
+    }
+
+    /**
+     * Getter for timestamp
+     *
+     * @return when (Date) the error happened
+     */
+    public Date getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Setter for timestamp
+     *
+     * @param timestamp the new time (Date) of the error
+     */
+    public void setTimestamp(Date timestamp)
+    {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Getter for status
+     *
+     * @return the HTTP status code (int) of the response
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * Setter for status
+     *
+     * @param status the new HTTP status code (int)
+     */
+    public void setStatus(int status)
+    {
+        this.status = status;
+    }
+
+    /**
+     * Getter for error
+     *
+     * @return the reason phrase (String) of the HTTP status
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * Setter for error
+     *
+     * @param error the new reason phrase (String)
+     */
+    public void setError(String error)
+    {
+        this.error = error;
+    }
+
+    /**
+     * Getter for message
+     *
+     * @return what went wrong (String)
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Setter for message
+     *
+     * @param message the new message (String)
+     */
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+
+    /**
+     * Getter for path
+     *
+     * @return the path (String) of the request that failed
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Setter for path
+     *
+     * @param path the new path (String)
+     */
+    public void setPath(String path)
+    {
+        this.path = path;
+    }
+}
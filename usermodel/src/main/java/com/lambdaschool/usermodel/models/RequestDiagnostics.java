@@ -0,0 +1,373 @@
+package com.lambdaschool.usermodel.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Date;
+
+/**
+ * What one request cost: its SQL statements and JDBC time, the entities and collections Hibernate loaded,
+ * the time and bytes spent writing the response, and the memory and CPU time of its thread.
+ * Recorded for requests asking for it, see DiagnosticsFilter. Not saved to the database.
+ * <p>
+ * Filled in by the thread serving the request, then only read.
+ */
+public class RequestDiagnostics
+{
+    /**
+     * The number (long) of the request, also sent back in the Usermodel-Diagnostics-Id header
+     */
+    private final long id;
+
+    /**
+     * When the request started
+     */
+    private final Date timestamp = new Date();
+
+    /**
+     * The HTTP method (String) of the request
+     */
+    private final String method;
+
+    /**
+     * The path (String) and query of the request
+     */
+    private final String path;
+
+    /**
+     * The controller method (String) that served the request, null if none did
+     */
+    private String handler;
+
+    /**
+     * The status (int) of the response
+     */
+    private int status;
+
+    /**
+     * The time (long) in nanoseconds the request took, from the filter seeing it to the response being written
+     */
+    private long totalNanos;
+
+    /**
+     * The number of SQL statements (int) Hibernate prepared
+     */
+    private int statements;
+
+    /**
+     * The number of those statements (int) prepared while the response was written, by lazy loading
+     */
+    private int statementsDuringSerialization;
+
+    /**
+     * The time (long) in nanoseconds spent preparing and executing statements and batches
+     */
+    private long jdbcNanos;
+
+    /**
+     * The number of entities (long) Hibernate read from result sets or the second-level cache
+     */
+    private long entitiesLoaded;
+
+    /**
+     * The number of collections (long) Hibernate initialized on first use, see DiagnosticsConfig.LoadCounter
+     */
+    private long collectionsLoaded;
+
+    /**
+     * When (long, System.nanoTime) the controller handed its result over to be written, 0 if it never did
+     */
+    private long serializationStartNanos;
+
+    /**
+     * The time (long) in nanoseconds from the controller handing its result over to the response being written
+     */
+    private long serializationNanos;
+
+    /**
+     * The number of bytes (long) of the response body
+     */
+    private long bytesWritten;
+
+    /**
+     * The bytes (long) the thread allocated, -1 if the JVM cannot tell
+     */
+    private long allocatedBytes = -1;
+
+    /**
+     * The CPU time (long) in nanoseconds of the thread, -1 if the JVM cannot tell
+     */
+    private long cpuNanos = -1;
+
+    /**
+     * Given the params, create the diagnostics of a request that just started
+     *
+     * @param id     The number (long) of the request
+     * @param method The HTTP method (String) of the request
+     * @param path   The path (String) and query of the request
+     */
+    public RequestDiagnostics(
+        long id,
+        String method,
+        String path)
+    {
+        this.id = id;
+        this.method = method;
+        this.path = path;
+    }
+
+    /**
+     * Counts a statement prepared
+     */
+    public void statementPrepared()
+    {
+        statements++;
+        if (serializationStartNanos != 0)
+        {
+            statementsDuringSerialization++;
+        }
+    }
+
+    /**
+     * Adds to the JDBC time
+     *
+     * @param nanos The time (long) in nanoseconds a statement or batch took
+     */
+    public void addJdbcNanos(long nanos)
+    {
+        jdbcNanos += nanos;
+    }
+
+    /**
+     * Counts an entity loaded
+     */
+    public void entityLoaded()
+    {
+        entitiesLoaded++;
+    }
+
+    /**
+     * Counts a collection loaded
+     */
+    public void collectionLoaded()
+    {
+        collectionsLoaded++;
+    }
+
+    /**
+     * Marks the controller handing its result over to be written. Only the first call counts.
+     *
+     * @param handler The controller method (String) whose result is written
+     */
+    public void serializationStarted(String handler)
+    {
+        if (serializationStartNanos == 0)
+        {
+            serializationStartNanos = System.nanoTime();
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * Records the end of the request
+     *
+     * @param handler        The controller method (String) that served the request, null if none did
+     * @param status         The status (int) of the response
+     * @param totalNanos     The time (long) in nanoseconds the request took
+     * @param bytesWritten   The number of bytes (long) of the response body
+     * @param allocatedBytes The bytes (long) the thread allocated, -1 if unknown
+     * @param cpuNanos       The CPU time (long) in nanoseconds of the thread, -1 if unknown
+     */
+    public void finished(
+        String handler,
+        int status,
+        long totalNanos,
+        long bytesWritten,
+        long allocatedBytes,
+        long cpuNanos)
+    {
+        if (this.handler == null)
+        {
+            this.handler = handler;
+        }
+        this.status = status;
+        this.totalNanos = totalNanos;
+        this.bytesWritten = bytesWritten;
+        this.allocatedBytes = allocatedBytes;
+        this.cpuNanos = cpuNanos;
+        if (serializationStartNanos != 0)
+        {
+            serializationNanos = System.nanoTime() - serializationStartNanos;
+        }
+    }
+
+    /**
+     * Getter for id
+     *
+     * @return the number (long) of the request
+     */
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+     * Getter for timestamp
+     *
+     * @return when the request started
+     */
+    public Date getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Getter for method
+     *
+     * @return the HTTP method (String) of the request
+     */
+    public String getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * Getter for path
+     *
+     * @return the path (String) and query of the request
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Getter for handler
+     *
+     * @return the controller method (String) that served the request, null if none did
+     */
+    public String getHandler()
+    {
+        return handler;
+    }
+
+    /**
+     * Getter for status
+     *
+     * @return the status (int) of the response
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * Getter for the total time
+     *
+     * @return the time (double) in milliseconds the request took
+     */
+    public double getTotalMillis()
+    {
+        return totalNanos / 1e6;
+    }
+
+    /**
+     * Getter for statements
+     *
+     * @return the number of SQL statements (int) prepared
+     */
+    public int getStatements()
+    {
+        return statements;
+    }
+
+    /**
+     * Getter for statementsDuringSerialization
+     *
+     * @return the number of SQL statements (int) prepared while the response was written
+     */
+    public int getStatementsDuringSerialization()
+    {
+        return statementsDuringSerialization;
+    }
+
+    /**
+     * Getter for the JDBC time
+     *
+     * @return the time (double) in milliseconds spent preparing and executing statements
+     */
+    public double getJdbcMillis()
+    {
+        return jdbcNanos / 1e6;
+    }
+
+    /**
+     * Getter for entitiesLoaded
+     *
+     * @return the number of entities (long) read from result sets or the second-level cache
+     */
+    public long getEntitiesLoaded()
+    {
+        return entitiesLoaded;
+    }
+
+    /**
+     * Getter for collectionsLoaded
+     *
+     * @return the number of collections (long) initialized on first use
+     */
+    public long getCollectionsLoaded()
+    {
+        return collectionsLoaded;
+    }
+
+    /**
+     * Getter for the serialization time
+     *
+     * @return the time (double) in milliseconds from the controller handing its result over to the response being written
+     */
+    public double getSerializationMillis()
+    {
+        return serializationNanos / 1e6;
+    }
+
+    /**
+     * Getter for bytesWritten
+     *
+     * @return the number of bytes (long) of the response body
+     */
+    public long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    /**
+     * Getter for allocatedBytes
+     *
+     * @return the bytes (long) the thread allocated, -1 if the JVM cannot tell
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * Getter for the CPU time
+     *
+     * @return the CPU time (double) in milliseconds of the thread, -1 if the JVM cannot tell
+     */
+    public double getCpuMillis()
+    {
+        return cpuNanos < 0 ? -1 : cpuNanos / 1e6;
+    }
+
+    /**
+     * Getter for the start of serialization, only used while the request runs
+     *
+     * @return when (long, System.nanoTime) the controller handed its result over, 0 if not yet
+     */
+    @JsonIgnore
+    public long getSerializationStartNanos()
+    {
+        return serializationStartNanos;
+    }
+}
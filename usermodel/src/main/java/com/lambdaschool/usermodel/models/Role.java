@@ -1,6 +1,9 @@
 package com.lambdaschool.usermodel.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -8,16 +11,26 @@ import java.util.List;
 
 /**
  * The entity allowing interaction with the roles table.
+ * <p>
+ * Roles are often handed out as references from the role cache. The proxy fields of a reference are left out of the JSON.
  */
 @Entity
 @Table(name = "roles")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+    region = "role")
+@JsonIgnoreProperties(value = {"hibernateLazyInitializer", "handler"})
 public class Role extends Auditable
 {
     /**
      * The primary key (long) of the roles table.
+     * Ids are handed out in blocks of 50 by a pooled optimizer, see User.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+        generator = "rolesequence")
+    @SequenceGenerator(name = "rolesequence",
+        sequenceName = "hibernate_sequence",
+        allocationSize = 50)
     private long roleid;
 
     /**
@@ -32,12 +45,22 @@ public class Role extends Auditable
      * Part of the join relationship between user and role
      * connects roles to the user role combination
      */
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+        region = "role.users")
     @OneToMany(mappedBy = "role",
         cascade = CascadeType.ALL)
     @JsonIgnoreProperties(value = "role",
         allowSetters = true)
     private List<UserRoles> users = new ArrayList<>();
 
+    /**
+     * The version (long) of the role, counted up with every change to its name.
+     * Users given or losing the role are counted in the versions of the users instead, see User.
+     */
+    @Version
+    @JsonIgnore
+    private long version;
+
     /**
      * Default Constructor used primarily by the JPA.
      */
@@ -130,4 +153,14 @@ public class Role extends Auditable
     //    {
     //        return lastModifiedBy;
     //    }
+
+    /**
+     * Getter for version
+     *
+     * @return the version (long) of the role, 0 when first saved
+     */
+    public long getVersion()
+    {
+        return version;
+    }
 }
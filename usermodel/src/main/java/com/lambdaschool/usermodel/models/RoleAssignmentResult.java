@@ -0,0 +1,271 @@
+package com.lambdaschool.usermodel.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of assigning a role to, or revoking a role from, many users at once.
+ * Not saved to the database.
+ */
+public class RoleAssignmentResult
+{
+    /**
+     * Only the durations of this many batches are listed
+     */
+    public static final int MAX_REPORTED_BATCHES = 1000;
+
+    /**
+     * The primary key (long) of the role assigned or revoked
+     */
+    private long roleid;
+
+    /**
+     * The number of user ids (long) read from the request
+     */
+    private long received;
+
+    /**
+     * The number of user role combinations (long) added
+     */
+    private long inserted;
+
+    /**
+     * The number of user role combinations (long) removed
+     */
+    private long deleted;
+
+    /**
+     * The number of user ids (long) of existing users left as they were, because they already had the role when assigning or did not have it when revoking
+     */
+    private long skipped;
+
+    /**
+     * The number of user ids (long) not matching any user
+     */
+    private long missing;
+
+    /**
+     * How long (milliseconds) each batch took, in order, for the first MAX_REPORTED_BATCHES batches
+     */
+    private List<Long> batchMillis = new ArrayList<>();
+
+    /**
+     * How long (milliseconds) the whole request took
+     */
+    private long totalMillis;
+
+    /**
+     * Why the request stopped early (String), null if every user id was read
+     */
+    private String error;
+
+    /**
+     * Default constructor
+     */
+    public RoleAssignmentResult()
+    {
+    }
+
+    /**
+     * Given the role id, create a new empty result
+     *
+     * @param roleid The primary key (long) of the role assigned or revoked
+     */
+    public RoleAssignmentResult(long roleid)
+    {
+        this.roleid = roleid;
+    }
+
+    /**
+     * Getter for roleid
+     *
+     * @return the primary key (long) of the role assigned or revoked
+     */
+    public long getRoleid()
+    {
+        return roleid;
+    }
+
+    /**
+     * Setter for roleid
+     *
+     * @param roleid the role id (long)
+     */
+    public void setRoleid(long roleid)
+    {
+        this.roleid = roleid;
+    }
+
+    /**
+     * Getter for received
+     *
+     * @return the number of user ids (long) read from the request
+     */
+    public long getReceived()
+    {
+        return received;
+    }
+
+    /**
+     * Setter for received
+     *
+     * @param received the number of user ids (long) received
+     */
+    public void setReceived(long received)
+    {
+        this.received = received;
+    }
+
+    /**
+     * Getter for inserted
+     *
+     * @return the number of user role combinations (long) added
+     */
+    public long getInserted()
+    {
+        return inserted;
+    }
+
+    /**
+     * Setter for inserted
+     *
+     * @param inserted the number of combinations (long) added
+     */
+    public void setInserted(long inserted)
+    {
+        this.inserted = inserted;
+    }
+
+    /**
+     * Getter for deleted
+     *
+     * @return the number of user role combinations (long) removed
+     */
+    public long getDeleted()
+    {
+        return deleted;
+    }
+
+    /**
+     * Setter for deleted
+     *
+     * @param deleted the number of combinations (long) removed
+     */
+    public void setDeleted(long deleted)
+    {
+        this.deleted = deleted;
+    }
+
+    /**
+     * Getter for skipped
+     *
+     * @return the number of user ids (long) of existing users left as they were, because they already had the role when assigning or did not have it when revoking
+     */
+    public long getSkipped()
+    {
+        return skipped;
+    }
+
+    /**
+     * Setter for skipped
+     *
+     * @param skipped the number of user ids (long) skipped
+     */
+    public void setSkipped(long skipped)
+    {
+        this.skipped = skipped;
+    }
+
+    /**
+     * Getter for missing
+     *
+     * @return the number of user ids (long) not matching any user
+     */
+    public long getMissing()
+    {
+        return missing;
+    }
+
+    /**
+     * Setter for missing
+     *
+     * @param missing the number of user ids (long) not found
+     */
+    public void setMissing(long missing)
+    {
+        this.missing = missing;
+    }
+
+    /**
+     * Getter for batchMillis
+     *
+     * @return how long (milliseconds) each batch took, in order, for the first MAX_REPORTED_BATCHES batches
+     */
+    public List<Long> getBatchMillis()
+    {
+        return batchMillis;
+    }
+
+    /**
+     * Setter for batchMillis
+     *
+     * @param batchMillis the list of batch durations (milliseconds)
+     */
+    public void setBatchMillis(List<Long> batchMillis)
+    {
+        this.batchMillis = batchMillis;
+    }
+
+    /**
+     * Getter for totalMillis
+     *
+     * @return how long (milliseconds) the whole request took
+     */
+    public long getTotalMillis()
+    {
+        return totalMillis;
+    }
+
+    /**
+     * Setter for totalMillis
+     *
+     * @param totalMillis the total duration (milliseconds)
+     */
+    public void setTotalMillis(long totalMillis)
+    {
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * Getter for error
+     *
+     * @return why the request stopped early (String), null if every user id was read
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * Setter for error
+     *
+     * @param error the reason (String) the request stopped early
+     */
+    public void setError(String error)
+    {
+        this.error = error;
+    }
+
+    /**
+     * Records how long a batch took. Only the first MAX_REPORTED_BATCHES batches are kept.
+     *
+     * @param millis How long (milliseconds) the batch took
+     */
+    public void addBatchMillis(long millis)
+    {
+        if (batchMillis.size() < MAX_REPORTED_BATCHES)
+        {
+            batchMillis.add(millis);
+        }
+    }
+}
@@ -1,32 +1,53 @@
 package com.lambdaschool.usermodel.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.lambdaschool.usermodel.services.EmailCountListener;
+import com.lambdaschool.usermodel.services.UsernameIndexListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.Email;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * The entity allowing interaction with the users table
+ * <p>
+ * Changes to users are passed on to the username search index and the email counts,
+ * see UsernameIndexListener and EmailCountListener.
  */
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+    region = "user")
+@EntityListeners({UsernameIndexListener.class, EmailCountListener.class})
 public class User extends Auditable
 {
     /**
      * The primary key (long) of the users table.
+     * <p>
+     * Ids are handed out by a pooled optimizer: one trip to the sequence reserves a block of 50 ids
+     * so inserts can be batched instead of each insert first calling the sequence.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+        generator = "usersequence")
+    @SequenceGenerator(name = "usersequence",
+        sequenceName = "hibernate_sequence",
+        allocationSize = 50)
     private long userid;
 
     /**
@@ -54,6 +75,8 @@ public class User extends Auditable
     /**
      * A list of emails for this user
      */
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+        region = "user.useremails")
     @OneToMany(mappedBy = "user",
         cascade = CascadeType.ALL,
         orphanRemoval = true)
@@ -63,14 +86,28 @@ public class User extends Auditable
 
     /**
      * Part of the join relationship between user and role
-     * connects users to the user role combination
+     * connects users to the user role combination.
+     * Removing a combination from this list deletes it.
      */
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+        region = "user.roles")
     @OneToMany(mappedBy = "user",
-        cascade = CascadeType.ALL)
+        cascade = CascadeType.ALL,
+        orphanRemoval = true)
     @JsonIgnoreProperties(value = "user",
         allowSetters = true)
     private List<UserRoles> roles = new ArrayList<>();
 
+    /**
+     * The version (long) of the user. Counted up with every change to what the user looks like as JSON:
+     * its fields, its useremails, its roles and the names of its roles. Saving a user read at an older version fails
+     * with a conflict, and GET /users/user/{id} uses the version as the ETag of the user, which PUT and PATCH take
+     * back in If-Match.
+     */
+    @Version
+    @JsonIgnore
+    private long version;
+
     /**
      * Default constructor used primarily by the JPA.
      */
@@ -247,4 +284,13 @@ public class User extends Auditable
             role));
     }
 
+    /**
+     * Getter for version
+     *
+     * @return the version (long) of the user, 0 when first saved
+     */
+    public long getVersion()
+    {
+        return version;
+    }
 }
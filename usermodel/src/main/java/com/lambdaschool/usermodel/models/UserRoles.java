@@ -1,6 +1,10 @@
 package com.lambdaschool.usermodel.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.lambdaschool.usermodel.services.RoleMembershipListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -11,7 +15,13 @@ import java.util.Objects;
  * The join table between users and roles.
  * <p>
  * Table enforces a unique constraint of the combination of userid and roleid.
- * These two together form the primary key.
+ * These two together form the primary key, see UserRolesId.
+ * <p>
+ * The key is an embedded id filled in from user and role through @MapsId. This lets Hibernate resolve
+ * user and role like any other association, from a join or the persistence context, instead of
+ * running a separate select for each of them when the user role combination is loaded.
+ * <p>
+ * Added and deleted combinations are passed on to the role membership index, see RoleMembershipListener.
  * <p>
  * When you have a compound primary key, you must implement Serializable for Hibernate
  * When you implement Serializable you must implement equals and hash code
@@ -19,14 +29,24 @@ import java.util.Objects;
 @Entity
 @Table(name = "userroles",
     uniqueConstraints = {@UniqueConstraint(columnNames = {"userid", "roleid"})})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+    region = "userroles")
+@EntityListeners(RoleMembershipListener.class)
 public class UserRoles extends Auditable implements Serializable
 {
+    /**
+     * The primary key for userroles, the combination of userid and roleid
+     */
+    @EmbeddedId
+    @JsonIgnore
+    private UserRolesId id = new UserRolesId();
+
     /**
      * 1/2 of the primary key (long) for userroles.
      * Also is a foreign key into the users table
      */
-    @Id
     @ManyToOne
+    @MapsId("user")
     @JoinColumn(name = "userid")
     @JsonIgnoreProperties(value = "roles",
         allowSetters = true)
@@ -36,8 +56,8 @@ public class UserRoles extends Auditable implements Serializable
      * 1/2 of the primary key (long) for userroles.
      * Also is a foreign key into the roles table
      */
-    @Id
     @ManyToOne
+    @MapsId("role")
     @JoinColumn(name = "roleid")
     @JsonIgnoreProperties(value = "users",
         allowSetters = true)
@@ -0,0 +1,96 @@
+package com.lambdaschool.usermodel.models;
+
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The primary key of the userroles table, the combination of userid and roleid.
+ * <p>
+ * The values are filled in from the user and role of the UserRoles entity through @MapsId.
+ * When you have a compound primary key, you must implement Serializable for Hibernate
+ * When you implement Serializable you must implement equals and hash code
+ */
+@Embeddable
+public class UserRolesId implements Serializable
+{
+    /**
+     * 1/2 of the primary key (long) for userroles. The userid of the user.
+     */
+    private long user;
+
+    /**
+     * 1/2 of the primary key (long) for userroles. The roleid of the role.
+     */
+    private long role;
+
+    /**
+     * Default constructor used primarily by the JPA.
+     */
+    public UserRolesId()
+    {
+    }
+
+    /**
+     * Getter for the userid part of the key
+     *
+     * @return the userid (long) of this user role combination
+     */
+    public long getUser()
+    {
+        return user;
+    }
+
+    /**
+     * Setter for the userid part of the key
+     *
+     * @param user the new userid (long) of this user role combination
+     */
+    public void setUser(long user)
+    {
+        this.user = user;
+    }
+
+    /**
+     * Getter for the roleid part of the key
+     *
+     * @return the roleid (long) of this user role combination
+     */
+    public long getRole()
+    {
+        return role;
+    }
+
+    /**
+     * Setter for the roleid part of the key
+     *
+     * @param role the new roleid (long) of this user role combination
+     */
+    public void setRole(long role)
+    {
+        this.role = role;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        UserRolesId that = (UserRolesId) o;
+        return user == that.user &&
+            role == that.role;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(user,
+            role);
+    }
+}
@@ -1,6 +1,10 @@
 package com.lambdaschool.usermodel.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.lambdaschool.usermodel.services.EmailCountListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.Email;
@@ -9,16 +13,26 @@ import javax.validation.constraints.Email;
  * The entity allowing interaction with the useremails table
  * <p>
  * requires each combination of user and useremail to be unique. The same email cannot be assigned to the same user more than once.
+ * <p>
+ * Added and deleted useremails are passed on to the email counts, see EmailCountListener.
  */
 @Entity
 @Table(name = "useremails")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+    region = "useremail")
+@EntityListeners(EmailCountListener.class)
 public class Useremail extends Auditable
 {
     /**
      * The primary key (long) of the useremails table
+     * Ids are handed out in blocks of 50 by a pooled optimizer, see User.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+        generator = "useremailsequence")
+    @SequenceGenerator(name = "useremailsequence",
+        sequenceName = "hibernate_sequence",
+        allocationSize = 50)
     private long useremailid;
 
     /**
@@ -43,6 +57,14 @@ public class Useremail extends Auditable
         allowSetters = true)
     private User user;
 
+    /**
+     * The version (long) of the useremail, counted up with every change to it.
+     * Changes also count up the version of its user, see UseremailServiceImpl.
+     */
+    @Version
+    @JsonIgnore
+    private long version;
+
     /**
      * The default controller is required by JPA
      */
@@ -130,4 +152,14 @@ public class Useremail extends Auditable
     {
         this.user = user;
     }
+
+    /**
+     * Getter for version
+     *
+     * @return the version (long) of the useremail, 0 when first saved
+     */
+    public long getVersion()
+    {
+        return version;
+    }
 }
@@ -0,0 +1,10 @@
+package com.lambdaschool.usermodel.reactive;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+/**
+ * The reactive Repository reading the roles table for the reactive stack
+ */
+public interface ReactiveRoleRepository extends ReactiveCrudRepository<RoleRow, Long>
+{
+}
@@ -0,0 +1,34 @@
+package com.lambdaschool.usermodel.reactive;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reactive Repository reading the users table for the reactive stack
+ */
+public interface ReactiveUserRepository extends ReactiveCrudRepository<UserRow, Long>
+{
+    /**
+     * Find the user with this username
+     *
+     * @param username The username (String), in lowercase
+     * @return The user, empty if not found
+     */
+    @Query("SELECT userid, username, primaryemail FROM users WHERE username = :username")
+    Mono<UserRow> findByUsername(String username);
+
+    /**
+     * Reads one page of users ordered by userid, the users after the last one of the previous page.
+     * Each page is a short query on the primary key, so no query stays open while the users are written out.
+     *
+     * @param after The userid (long) of the last user of the previous page, 0 for the first page
+     * @param limit The most users (int) in the page
+     * @return The users of the page, ordered by userid
+     */
+    @Query("SELECT userid, username, primaryemail FROM users WHERE userid > :after ORDER BY userid LIMIT :limit")
+    Flux<UserRow> findPageAfter(
+        long after,
+        int limit);
+}
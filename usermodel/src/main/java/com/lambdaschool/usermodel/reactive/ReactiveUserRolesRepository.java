@@ -0,0 +1,23 @@
+package com.lambdaschool.usermodel.reactive;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * The reactive Repository reading the userroles table for the reactive stack.
+ * Only a Repository, not a ReactiveCrudRepository, as the table's key is the pair of userid and roleid.
+ */
+public interface ReactiveUserRolesRepository extends Repository<UserRolesRow, Long>
+{
+    /**
+     * Find the user role combinations of these users, in one query
+     *
+     * @param userids The ids of the users
+     * @return The user role combinations of the users, ordered by userid and roleid
+     */
+    @Query("SELECT userid, roleid FROM userroles WHERE userid IN (:userids) ORDER BY userid, roleid")
+    Flux<UserRolesRow> findAllByUseridIn(Collection<Long> userids);
+}
@@ -0,0 +1,22 @@
+package com.lambdaschool.usermodel.reactive;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * The reactive Repository reading the useremails table for the reactive stack
+ */
+public interface ReactiveUseremailRepository extends ReactiveCrudRepository<UseremailRow, Long>
+{
+    /**
+     * Find the useremails of these users, in one query
+     *
+     * @param userids The ids of the users
+     * @return The useremails of the users, ordered by userid and useremailid
+     */
+    @Query("SELECT useremailid, useremail, userid FROM useremails WHERE userid IN (:userids) ORDER BY userid, useremailid")
+    Flux<UseremailRow> findAllByUseridIn(Collection<Long> userids);
+}
@@ -0,0 +1,62 @@
+package com.lambdaschool.usermodel.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A row of the roles table as read by the reactive stack, written out like the Role model
+ */
+@Table("roles")
+public class RoleRow
+{
+    /**
+     * The primary key (long) of the roles table
+     */
+    @Id
+    private long roleid;
+
+    /**
+     * The name (String) of the role, in uppercase
+     */
+    private String name;
+
+    /**
+     * Getter for roleid
+     *
+     * @return the primary key (long) of this role
+     */
+    public long getRoleid()
+    {
+        return roleid;
+    }
+
+    /**
+     * Setter for roleid
+     *
+     * @param roleid the new primary key (long) of this role
+     */
+    public void setRoleid(long roleid)
+    {
+        this.roleid = roleid;
+    }
+
+    /**
+     * Getter for name
+     *
+     * @return the name (String) of this role
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Setter for name
+     *
+     * @param name the new name (String) of this role
+     */
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+}
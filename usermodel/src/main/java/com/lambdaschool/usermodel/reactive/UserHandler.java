@@ -0,0 +1,279 @@
+package com.lambdaschool.usermodel.reactive;
+
+import com.lambdaschool.usermodel.models.ErrorDetail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the user read endpoints of the reactive stack, answering like the matching endpoints of UserController.
+ * No request holds a thread while it waits for a connection: each request is a chain of queries run as they get one.
+ * <p>
+ * Users are read first and their useremails and roles then in one query each for all of them, like
+ * hibernate.default_batch_fetch_size does for the JPA models.
+ */
+public class UserHandler
+{
+    /**
+     * The number of users (int) read per page while listing all users
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * How long (Duration) the roles are kept before being read again. Roles rarely change, and a role not yet known
+     * is read at once, so only a renamed role shows its old name for this long.
+     */
+    private static final Duration ROLES_TIME_TO_LIVE = Duration.ofSeconds(10);
+
+    /**
+     * Connects this handler to the users table
+     */
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    /**
+     * Connects this handler to the useremails table
+     */
+    @Autowired
+    private ReactiveUseremailRepository useremailRepository;
+
+    /**
+     * Connects this handler to the roles table
+     */
+    @Autowired
+    private ReactiveRoleRepository roleRepository;
+
+    /**
+     * Connects this handler to the userroles table
+     */
+    @Autowired
+    private ReactiveUserRolesRepository userRolesRepository;
+
+    /**
+     * Every role keyed by role id, read once and shared by all requests until it expires
+     */
+    private volatile Mono<Map<Long, RoleRow>> roles;
+
+    /**
+     * Sets up reading the roles, which happens on first use
+     */
+    @PostConstruct
+    public void init()
+    {
+        roles = readRoles();
+    }
+
+    /**
+     * Returns the user with the given primary key, with its useremails and roles
+     * <br>Example: <a href="http://localhost:2020/users/user/7">http://localhost:2020/users/user/7</a>
+     *
+     * @param request The request, with the primary key of the user as userId
+     * @return The user as JSON, or status NOT_FOUND if there is no such user
+     */
+    public Mono<ServerResponse> getUserById(ServerRequest request)
+    {
+        long userid;
+        try
+        {
+            userid = Long.parseLong(request.pathVariable("userId"));
+        } catch (NumberFormatException e)
+        {
+            return error(request,
+                HttpStatus.BAD_REQUEST,
+                "User id " + request.pathVariable("userId") + " is not a number");
+        }
+
+        return released(userRepository.findById(userid))
+            .flatMap(this::withUseremailsAndRoles)
+            .flatMap(users -> ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(users.get(0)))
+            .switchIfEmpty(Mono.defer(() -> error(request,
+                HttpStatus.NOT_FOUND,
+                "User id " + userid + " not found!")));
+    }
+
+    /**
+     * Returns the user with the given username, with its useremails and roles
+     * <br>Example: <a href="http://localhost:2020/users/user/name/cinnamon">http://localhost:2020/users/user/name/cinnamon</a>
+     *
+     * @param request The request, with the username as userName
+     * @return The user as JSON, or status NOT_FOUND if there is no such user
+     */
+    public Mono<ServerResponse> getUserByName(ServerRequest request)
+    {
+        String name = request.pathVariable("userName");
+        return released(userRepository.findByUsername(name.toLowerCase()))
+            .flatMap(this::withUseremailsAndRoles)
+            .flatMap(users -> ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(users.get(0)))
+            .switchIfEmpty(Mono.defer(() -> error(request,
+                HttpStatus.NOT_FOUND,
+                "User name " + name + " not found!")));
+    }
+
+    /**
+     * Streams every user with its useremails and roles, ordered by userid, one JSON object per line.
+     * <br>Example: <a href="http://localhost:2020/users/users">http://localhost:2020/users/users</a>
+     * <p>
+     * Users are read a page at a time, and the next page is only read once the client has taken most of the last one,
+     * so a slow client holds back the reading instead of the users piling up in memory. Streamed as
+     * application/stream+json, as this version of Spring collects a whole Flux into a list to write it as a JSON array.
+     *
+     * @param request The request
+     * @return The users, written out as they are read
+     */
+    public Mono<ServerResponse> listAllUsers(ServerRequest request)
+    {
+        Flux<UserRow> users = readPage(0)
+            .expand(page -> page.size() < PAGE_SIZE ? Mono.empty() : readPage(page.get(page.size() - 1)
+                .getUserid()))
+            .concatMapIterable(page -> page,
+                1);
+        return ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_STREAM_JSON)
+            .body(users,
+                UserRow.class);
+    }
+
+    /**
+     * Waits for the query reading a user to finish before handing out the user, so its connection is back in the pool
+     * before the useremails and roles are read. Otherwise every request would hold one connection while waiting for more,
+     * and once the pool ran out none could go on.
+     *
+     * @param user The query reading a user
+     * @return The user in a list, empty if not found
+     */
+    private static Mono<List<UserRow>> released(Mono<UserRow> user)
+    {
+        return user.flux()
+            .collectList()
+            .filter(users -> !users.isEmpty());
+    }
+
+    /**
+     * Reads one page of users with their useremails and roles, each query finishing before the next starts
+     *
+     * @param after The userid (long) of the last user of the previous page, 0 for the first page
+     * @return The users of the page, ordered by userid
+     */
+    private Mono<List<UserRow>> readPage(long after)
+    {
+        return userRepository.findPageAfter(after,
+            PAGE_SIZE)
+            .collectList()
+            .flatMap(this::withUseremailsAndRoles);
+    }
+
+    /**
+     * Reads the useremails and then the roles of these users, one query each, and adds them to the users
+     *
+     * @param users The users
+     * @return The same users, once their useremails and roles are added
+     */
+    private Mono<List<UserRow>> withUseremailsAndRoles(List<UserRow> users)
+    {
+        if (users.isEmpty())
+        {
+            return Mono.just(users);
+        }
+
+        Map<Long, UserRow> usersById = new HashMap<>();
+        for (UserRow user : users)
+        {
+            usersById.put(user.getUserid(),
+                user);
+        }
+
+        Mono<Void> useremails = useremailRepository.findAllByUseridIn(usersById.keySet())
+            .doOnNext(useremail -> usersById.get(useremail.getUserid())
+                .getUseremails()
+                .add(useremail))
+            .then();
+        // the roles are looked up once all user roles are read, after their connection is back in the pool
+        Mono<Void> userRoles = userRolesRepository.findAllByUseridIn(usersById.keySet())
+            .collectList()
+            .flatMap(rows -> findRoles(rows).doOnNext(rolesById ->
+            {
+                for (UserRolesRow row : rows)
+                {
+                    row.setRole(rolesById.get(row.getRoleid()));
+                    usersById.get(row.getUserid())
+                        .getRoles()
+                        .add(row);
+                }
+            }))
+            .then();
+        // one after the other, so a request never holds more than one connection while waiting for another
+        return useremails.then(userRoles)
+            .thenReturn(users);
+    }
+
+    /**
+     * Gives every role keyed by role id, reading the roles again if one of these user roles is not known yet
+     *
+     * @param userRoles The user role combinations whose roles are needed
+     * @return Every role keyed by role id
+     */
+    private Mono<Map<Long, RoleRow>> findRoles(List<UserRolesRow> userRoles)
+    {
+        return roles.flatMap(rolesById ->
+        {
+            for (UserRolesRow row : userRoles)
+            {
+                if (!rolesById.containsKey(row.getRoleid()))
+                {
+                    roles = readRoles();
+                    return roles;
+                }
+            }
+            return Mono.just(rolesById);
+        });
+    }
+
+    /**
+     * Reads every role keyed by role id, kept for ROLES_TIME_TO_LIVE once read. Failures are not kept.
+     *
+     * @return Every role keyed by role id
+     */
+    private Mono<Map<Long, RoleRow>> readRoles()
+    {
+        return roleRepository.findAll()
+            .collectMap(RoleRow::getRoleid)
+            .cache(rolesById -> ROLES_TIME_TO_LIVE,
+                e -> Duration.ZERO,
+                () -> Duration.ZERO);
+    }
+
+    /**
+     * Answers with an error, in the same form as RestExceptionHandler does
+     *
+     * @param request The request that failed
+     * @param status  The status of the response
+     * @param message What went wrong
+     * @return The response
+     */
+    private static Mono<ServerResponse> error(
+        ServerRequest request,
+        HttpStatus status,
+        String message)
+    {
+        return ServerResponse.status(status)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new ErrorDetail(status.value(),
+                status.getReasonPhrase(),
+                message,
+                request.path()));
+    }
+}
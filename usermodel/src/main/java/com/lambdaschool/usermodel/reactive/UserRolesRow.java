@@ -0,0 +1,91 @@
+package com.lambdaschool.usermodel.reactive;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A row of the userroles table as read by the reactive stack, written out like the UserRoles model: only its role.
+ * The table has no key of its own, so rows are only read through the queries of ReactiveUserRolesRepository.
+ */
+@Table("userroles")
+public class UserRolesRow
+{
+    /**
+     * The id (long) of the user, used to attach the role to its user but not written out
+     */
+    @JsonIgnore
+    private long userid;
+
+    /**
+     * The id (long) of the role
+     */
+    @JsonIgnore
+    private long roleid;
+
+    /**
+     * The role, attached after the row is read
+     */
+    @Transient
+    private RoleRow role;
+
+    /**
+     * Getter for userid
+     *
+     * @return the id (long) of the user
+     */
+    public long getUserid()
+    {
+        return userid;
+    }
+
+    /**
+     * Setter for userid
+     *
+     * @param userid the new id (long) of the user
+     */
+    public void setUserid(long userid)
+    {
+        this.userid = userid;
+    }
+
+    /**
+     * Getter for roleid
+     *
+     * @return the id (long) of the role
+     */
+    public long getRoleid()
+    {
+        return roleid;
+    }
+
+    /**
+     * Setter for roleid
+     *
+     * @param roleid the new id (long) of the role
+     */
+    public void setRoleid(long roleid)
+    {
+        this.roleid = roleid;
+    }
+
+    /**
+     * Getter for role
+     *
+     * @return the role of this row
+     */
+    public RoleRow getRole()
+    {
+        return role;
+    }
+
+    /**
+     * Setter for role
+     *
+     * @param role the role of this row
+     */
+    public void setRole(RoleRow role)
+    {
+        this.role = role;
+    }
+}
@@ -0,0 +1,123 @@
+package com.lambdaschool.usermodel.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A row of the users table as read by the reactive stack, written out like the User model
+ */
+@Table("users")
+public class UserRow
+{
+    /**
+     * The primary key (long) of the users table
+     */
+    @Id
+    private long userid;
+
+    /**
+     * The username (String) of the user, in lowercase
+     */
+    private String username;
+
+    /**
+     * The primary email (String) of the user
+     */
+    private String primaryemail;
+
+    /**
+     * The useremails of the user, attached after the user is read
+     */
+    @Transient
+    private List<UseremailRow> useremails = new ArrayList<>();
+
+    /**
+     * The roles of the user, attached after the user is read
+     */
+    @Transient
+    private List<UserRolesRow> roles = new ArrayList<>();
+
+    /**
+     * Getter for userid
+     *
+     * @return the userid (long) of the user
+     */
+    public long getUserid()
+    {
+        return userid;
+    }
+
+    /**
+     * Setter for userid
+     *
+     * @param userid the new userid (long) of the user
+     */
+    public void setUserid(long userid)
+    {
+        this.userid = userid;
+    }
+
+    /**
+     * Getter for username
+     *
+     * @return the username (String) of the user
+     */
+    public String getUsername()
+    {
+        return username;
+    }
+
+    /**
+     * Setter for username
+     *
+     * @param username the new username (String) of the user
+     */
+    public void setUsername(String username)
+    {
+        this.username = username;
+    }
+
+    /**
+     * Getter for primary email
+     *
+     * @return the primary email (String) of the user
+     */
+    public String getPrimaryemail()
+    {
+        return primaryemail;
+    }
+
+    /**
+     * Setter for primary email
+     *
+     * @param primaryemail the new primary email (String) of the user
+     */
+    public void setPrimaryemail(String primaryemail)
+    {
+        this.primaryemail = primaryemail;
+    }
+
+    /**
+     * Getter for useremails
+     *
+     * @return A list of the useremails of the user
+     */
+    public List<UseremailRow> getUseremails()
+    {
+        return useremails;
+    }
+
+    /**
+     * Getter for roles
+     *
+     * @return A list of the roles of the user
+     */
+    public List<UserRolesRow> getRoles()
+    {
+        return roles;
+    }
+}
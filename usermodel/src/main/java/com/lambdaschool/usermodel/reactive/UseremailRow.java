@@ -0,0 +1,89 @@
+package com.lambdaschool.usermodel.reactive;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A row of the useremails table as read by the reactive stack, written out like the Useremail model
+ */
+@Table("useremails")
+public class UseremailRow
+{
+    /**
+     * The primary key (long) of the useremails table
+     */
+    @Id
+    private long useremailid;
+
+    /**
+     * The email (String)
+     */
+    private String useremail;
+
+    /**
+     * The id (long) of the user this email belongs to, used to attach the email to its user but not written out
+     */
+    @JsonIgnore
+    private long userid;
+
+    /**
+     * Getter for useremailid
+     *
+     * @return the primary key (long) of this useremail
+     */
+    public long getUseremailid()
+    {
+        return useremailid;
+    }
+
+    /**
+     * Setter for useremailid
+     *
+     * @param useremailid the new primary key (long) of this useremail
+     */
+    public void setUseremailid(long useremailid)
+    {
+        this.useremailid = useremailid;
+    }
+
+    /**
+     * Getter for useremail
+     *
+     * @return the email (String)
+     */
+    public String getUseremail()
+    {
+        return useremail;
+    }
+
+    /**
+     * Setter for useremail
+     *
+     * @param useremail the new email (String)
+     */
+    public void setUseremail(String useremail)
+    {
+        this.useremail = useremail;
+    }
+
+    /**
+     * Getter for userid
+     *
+     * @return the id (long) of the user this email belongs to
+     */
+    public long getUserid()
+    {
+        return userid;
+    }
+
+    /**
+     * Setter for userid
+     *
+     * @param userid the new id (long) of the user this email belongs to
+     */
+    public void setUserid(long userid)
+    {
+        this.userid = userid;
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * Contains the reactive read stack, an opt-in alternative to the controllers for reading users.
+ * Served by its own Netty server on usermodel.reactive.port and reading through R2DBC, see ReactiveConfig.
+ * <p>
+ * The classes here are plain rows of the tables, not the JPA models: R2DBC has no relationships or lazy loading,
+ * so the useremails and roles of users are read with queries of their own and attached by UserHandler.
+ *
+ * @author John Mitchell (john@lambdaschool.com) with Lambda School unless otherwise noted.
+ */
+package com.lambdaschool.usermodel.reactive;
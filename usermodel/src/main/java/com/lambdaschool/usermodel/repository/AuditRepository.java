@@ -0,0 +1,24 @@
+package com.lambdaschool.usermodel.repository;
+
+import com.lambdaschool.usermodel.models.AuditEntry;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+
+/**
+ * The CRUD Repository connecting AuditEntry to the rest of the application. Only reads: the audit log is written
+ * by AuditLog.
+ */
+public interface AuditRepository extends CrudRepository<AuditEntry, Long>
+{
+    /**
+     * The change history of one row, oldest first
+     *
+     * @param tablename The table (String) of the row: users, roles, useremails or userroles
+     * @param rowkey    The primary key (String) of the row, userid:roleid for userroles
+     * @return List of the changes to the row in the order they were written
+     */
+    List<AuditEntry> findByTablenameAndRowkeyOrderByAuditid(
+        String tablename,
+        String rowkey);
+}
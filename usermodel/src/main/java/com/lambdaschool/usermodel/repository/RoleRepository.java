@@ -1,11 +1,14 @@
 package com.lambdaschool.usermodel.repository;
 
 import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.views.RoleVersion;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Optional;
+
 /**
  * The CRUD Repository connecting Role to the rest of the application
  */
@@ -26,7 +29,23 @@ public interface RoleRepository extends CrudRepository<Role, Long>
      */
 
     /**
-     * Updates the name of the role based on the given role id.
+     * Finds the version of one role and what its users add up to, without reading the users: their number,
+     * the sum of their versions and the sum of a hash of each id and version.
+     * Giving the role to a user or taking it away counts up the version of the user, so these change with every user
+     * given, taken away or changed, unless changes to different users happen to cancel out in all three sums.
+     *
+     * @param roleid The primary key (long) of the role
+     * @return The version of the role and its users, empty if there is no such role
+     */
+    @Query(value = "SELECT r.version AS version, COUNT(u.userid) AS members, COALESCE(SUM(u.version), 0) AS memberversions, " +
+        "COALESCE(SUM(ORA_HASH(CONCAT(u.userid, ':', u.version))), 0) AS memberhash " +
+        "FROM roles r LEFT JOIN userroles ur ON ur.roleid = r.roleid LEFT JOIN users u ON u.userid = ur.userid " +
+        "WHERE r.roleid = :roleid GROUP BY r.version",
+        nativeQuery = true)
+    Optional<RoleVersion> findVersionByRoleid(long roleid);
+
+    /**
+     * Updates the name of the role based on the given role id, counting up its version.
      *
      * @param uname  The username making this change
      * @param roleid The primary key (long) of the role to change
@@ -34,7 +53,7 @@ public interface RoleRepository extends CrudRepository<Role, Long>
      */
     @Transactional
     @Modifying
-    @Query(value = "UPDATE roles SET name = :name, last_modified_by = :uname, last_modified_date = CURRENT_TIMESTAMP WHERE roleid = :roleid",
+    @Query(value = "UPDATE roles SET name = :name, version = version + 1, last_modified_by = :uname, last_modified_date = CURRENT_TIMESTAMP WHERE roleid = :roleid",
         nativeQuery = true)
     void updateRoleName(
         String uname,
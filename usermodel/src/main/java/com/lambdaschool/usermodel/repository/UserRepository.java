@@ -2,25 +2,63 @@ package com.lambdaschool.usermodel.repository;
 
 import com.lambdaschool.usermodel.models.User;
 import com.lambdaschool.usermodel.views.JustTheCount;
+import com.lambdaschool.usermodel.views.UserEmailCount;
+import com.lambdaschool.usermodel.views.UserIdName;
+import com.lambdaschool.usermodel.views.UserIdRole;
 import com.lambdaschool.usermodel.views.UserNameCountEmails;
+import com.lambdaschool.usermodel.views.UserSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
 
 /**
  * The CRUD repository connecting User to the rest of the application
+ * <p>
+ * Fetch plans: queries returning a complete list of users use an entity graph that fetches the user role combinations
+ * and their roles in the same query. Useremails, and the roles of paged or streamed queries, are loaded through
+ * batch fetching, see hibernate.default_batch_fetch_size in application.properties.
+ * This way a list of users takes a small, fixed number of queries instead of 2 extra queries per user.
+ * <p>
+ * findByUsername results are kept in the query cache when the second-level cache is turned on, see SecondLevelCacheConfig.
  */
 public interface UserRepository extends CrudRepository<User, Long>
 {
+    /**
+     * Find all users, fetching their user role combinations and roles in the same query
+     *
+     * @return All the users
+     */
+    @Override
+    @EntityGraph(attributePaths = {"roles", "roles.role"})
+    @QueryHints(value = @QueryHint(name = HINT_PASS_DISTINCT_THROUGH,
+        value = "false"))
+    @Query(value = "SELECT DISTINCT u FROM User u")
+    Iterable<User> findAll();
+
     /**
      * Find a user based off over username
      *
      * @param username the name (String) of user you seek
      * @return the first user object with the name you seek
      */
+    @QueryHints(value = {@QueryHint(name = HINT_CACHEABLE,
+        value = "true"), @QueryHint(name = HINT_CACHE_REGION,
+        value = "user.byname")})
     User findByUsername(String username);
 
     /**
@@ -29,8 +67,80 @@ public interface UserRepository extends CrudRepository<User, Long>
      * @param name the substring of the names (String) you seek
      * @return List of users whose name contain the given substring ignoring case
      */
+    @EntityGraph(attributePaths = {"roles", "roles.role"})
+    @QueryHints(value = @QueryHint(name = HINT_PASS_DISTINCT_THROUGH,
+        value = "false"))
+    @Query(value = "SELECT DISTINCT u FROM User u WHERE LOWER(u.username) LIKE LOWER(CONCAT('%', :name, '%'))")
     List<User> findByUsernameContainingIgnoreCase(String name);
 
+    /**
+     * Find the next page of users using keyset pagination. The userid of the last user of the previous page is the cursor.
+     * Only the rows of the requested page are read no matter how large the users table gets.
+     *
+     * @param userid   The userid (long) of the last user of the previous page. Use 0 to get the first page.
+     * @param pageable The size of the page. Only the page size is used, the page number must always be 0.
+     * @return List of at most page size users whose userid is greater than the given userid ordered by userid
+     */
+    List<User> findByUseridGreaterThanOrderByUseridAsc(
+        long userid,
+        Pageable pageable);
+
+    /**
+     * Find the id, username and primary email of every user, ordered by userid. Only those columns are read.
+     *
+     * @return List of the summaries of all users ordered by userid
+     */
+    List<UserSummary> findSummariesByOrderByUseridAsc();
+
+    /**
+     * Find the next page of user summaries using keyset pagination, like findByUseridGreaterThanOrderByUseridAsc
+     *
+     * @param userid   The userid (long) of the last user of the previous page. Use 0 to get the first page.
+     * @param pageable The size of the page. Only the page size is used, the page number must always be 0.
+     * @return List of the summaries of at most page size users whose userid is greater than the given userid ordered by userid
+     */
+    List<UserSummary> findSummariesByUseridGreaterThanOrderByUseridAsc(
+        long userid,
+        Pageable pageable);
+
+    /**
+     * Find the id, username and primary email of one user. Only those columns are read.
+     *
+     * @param userid The primary key (long) of the user
+     * @return The summary of the user, empty if there is no such user
+     */
+    Optional<UserSummary> findSummaryByUserid(long userid);
+
+    /**
+     * Streams all the users ordered by userid.
+     * The users are read from a forward-only JDBC cursor as the stream is consumed instead of being loaded into a list.
+     * Must be called inside of a transaction and the stream must be closed when done.
+     *
+     * @return Stream of all users ordered by userid
+     */
+    @QueryHints(value = @QueryHint(name = HINT_FETCH_SIZE,
+        value = "500"))
+    @Query(value = "SELECT u FROM User u ORDER BY u.userid")
+    Stream<User> streamAllByOrderByUserid();
+
+    /**
+     * Of the given usernames, returns the ones that are already taken
+     *
+     * @param usernames The usernames (String) to check, in lowercase
+     * @return List of the given usernames that already belong to a user
+     */
+    @Query(value = "SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findExistingUsernames(Collection<String> usernames);
+
+    /**
+     * Of the given primary emails, returns the ones that are already taken
+     *
+     * @param primaryemails The primary emails (String) to check, in lowercase
+     * @return List of the given primary emails that already belong to a user
+     */
+    @Query(value = "SELECT u.primaryemail FROM User u WHERE u.primaryemail IN :primaryemails")
+    List<String> findExistingPrimaryemails(Collection<String> primaryemails);
+
     /*
      *
      * The following are new from initial
@@ -42,13 +152,44 @@ public interface UserRepository extends CrudRepository<User, Long>
      * nativeQuery is set to true. This means the query will be using the actual database names of these. A preference of mine.
      * native queries are using faster
      * can lose portability to other databases if care is not taken in naming conventions
+     * <p>
+     * Users without emails are included with a count of 0.
      *
-     * @return List (element type is the interface UserNameCountEmails) containing usernames and the number of emails they have - not counting the primary email
+     * @return List (element type is the interface UserNameCountEmails) containing usernames and the number of emails they have - not counting the primary email, ordered by username
      */
-    @Query(value = "SELECT u.username as usernamerpt, count(ue.useremailid) as countemails FROM users u JOIN useremails ue ON u.userid = ue.userid GROUP BY u.username",
+    @Query(value = "SELECT u.username as usernamerpt, count(ue.useremailid) as countemails FROM users u LEFT JOIN useremails ue ON u.userid = ue.userid GROUP BY u.userid, u.username ORDER BY u.username",
         nativeQuery = true)
     List<UserNameCountEmails> getCountUserEmails();
 
+    /**
+     * Streams the id, username and number of useremails of every user, used to fill and reconcile the email counts.
+     * Must be called inside of a transaction and the stream must be closed when done.
+     *
+     * @return Stream of every user with the count of its useremails, 0 if none, ordered by user id
+     */
+    @QueryHints(value = @QueryHint(name = HINT_FETCH_SIZE,
+        value = "1000"))
+    @Query(value = "SELECT u.userid as userid, u.username as username, COUNT(ue.useremailid) as countemails FROM User u LEFT JOIN u.useremails ue GROUP BY u.userid, u.username ORDER BY u.userid")
+    Stream<UserEmailCount> streamEmailCounts();
+
+    /**
+     * Finds the id, username and number of useremails of one user
+     *
+     * @param userid The primary key (long) of the user
+     * @return The user with the count of its useremails, empty if there is no such user
+     */
+    @Query(value = "SELECT u.userid as userid, u.username as username, COUNT(ue.useremailid) as countemails FROM User u LEFT JOIN u.useremails ue WHERE u.userid = :userid GROUP BY u.userid, u.username")
+    Optional<UserEmailCount> findEmailCountByUserid(long userid);
+
+    /**
+     * Finds the version of one user, without reading the rest of the user
+     *
+     * @param userid The primary key (long) of the user
+     * @return The version (long) of the user, empty if there is no such user
+     */
+    @Query(value = "SELECT u.version FROM User u WHERE u.userid = :userid")
+    Optional<Long> findVersionByUserid(long userid);
+
     /**
      * Counts the number of user role combinations for the given userid and roleid. Answer should be only 0 or 1.
      *
@@ -67,27 +208,174 @@ public interface UserRepository extends CrudRepository<User, Long>
      *
      * @param userid The user id of the user of this user role combination
      * @param roleid The role id of the role of this user role combination
+     * @return The number of user role combinations deleted, 0 if the combination did not exist
      */
     @Transactional
     @Modifying
-    @Query(value = "DELETE FROM UserRoles WHERE userid = :userid AND roleid = :roleid")
-    void deleteUserRoles(
+    @Query(value = "DELETE FROM UserRoles ur WHERE ur.id.user = :userid AND ur.id.role = :roleid")
+    int deleteUserRoles(
         long userid,
         long roleid);
 
     /**
-     * Inserts the new user role combination
+     * Inserts the new user role combination if the user and the role exist and the combination does not.
+     * Checking and inserting is one statement, so there is no window between the check and the insert.
      *
      * @param uname  The username (String) of the user adding the record
      * @param userid The user id of the user of this user role combination
      * @param roleid The role id of the role of this user role combination
+     * @return The number of user role combinations inserted, 0 if the user or role is missing or the combination already exists
      */
     @Transactional
     @Modifying
-    @Query(value = "INSERT INTO userroles(userid, roleid, created_by, created_date, last_modified_by, last_modified_date) VALUES (:userid, :roleid, :uname, CURRENT_TIMESTAMP, :uname, CURRENT_TIMESTAMP)",
+    @Query(value = "INSERT INTO userroles(userid, roleid, created_by, created_date, last_modified_by, last_modified_date) " +
+        "SELECT u.userid, r.roleid, :uname, CURRENT_TIMESTAMP, :uname, CURRENT_TIMESTAMP FROM users u JOIN roles r ON r.roleid = :roleid " +
+        "WHERE u.userid = :userid AND NOT EXISTS (SELECT 1 FROM userroles ur WHERE ur.userid = :userid AND ur.roleid = :roleid)",
         nativeQuery = true)
-    void insertUserRoles(
+    int insertUserRoles(
         String uname,
         long userid,
         long roleid);
+
+    /**
+     * Streams the id and username of every user, used to build the username search index.
+     * Must be read inside of a transaction and closed when done.
+     *
+     * @return Stream of the id and username of every user
+     */
+    @QueryHints(value = @QueryHint(name = HINT_FETCH_SIZE,
+        value = "1000"))
+    @Query(value = "SELECT u.userid AS userid, u.username AS username FROM User u")
+    Stream<UserIdName> streamAllUsernames();
+
+    /**
+     * Streams the id of every role of every user, ordered by userid, so they can be read alongside streamAllByOrderByUserid.
+     * Reads only the userroles table, in the order of its userid index, so the database does not sort it in memory.
+     * Must be read inside of a transaction and closed when done.
+     *
+     * @return Stream of user id and role id pairs ordered by userid
+     */
+    @QueryHints(value = @QueryHint(name = HINT_FETCH_SIZE,
+        value = "1000"))
+    @Query(value = "SELECT ur.id.user AS userid, ur.id.role AS roleid FROM UserRoles ur ORDER BY ur.id.user")
+    Stream<UserIdRole> streamAllRoleIdsByOrderByUserid();
+
+    /**
+     * Counts how many of the given user ids belong to a user
+     *
+     * @param userids The user ids (long) to check
+     * @return The number of the given user ids that belong to a user
+     */
+    long countByUseridIn(Collection<Long> userids);
+
+    /**
+     * Gives the role to every given user that exists and does not have it yet, in one statement
+     *
+     * @param uname   The username (String) of the user adding the records
+     * @param roleid  The role id of the role to give
+     * @param userids The user ids of the users to give the role to
+     * @return The number of user role combinations inserted
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO userroles(userid, roleid, created_by, created_date, last_modified_by, last_modified_date) " +
+        "SELECT u.userid, :roleid, :uname, CURRENT_TIMESTAMP, :uname, CURRENT_TIMESTAMP FROM users u " +
+        "WHERE u.userid IN :userids AND NOT EXISTS (SELECT 1 FROM userroles ur WHERE ur.userid = u.userid AND ur.roleid = :roleid)",
+        nativeQuery = true)
+    int insertUserRolesForUsers(
+        String uname,
+        long roleid,
+        Collection<Long> userids);
+
+    /**
+     * Takes the role away from every given user, in one statement
+     *
+     * @param roleid  The role id of the role to take away
+     * @param userids The user ids of the users to take the role away from
+     * @return The number of user role combinations deleted
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM UserRoles ur WHERE ur.id.role = :roleid AND ur.id.user IN :userids")
+    int deleteUserRolesForUsers(
+        long roleid,
+        Collection<Long> userids);
+
+    /**
+     * Finds which of the given users have the role
+     *
+     * @param roleid  The role id of the role
+     * @param userids The user ids of the users to check
+     * @return The user ids of the given users having the role
+     */
+    @Query(value = "SELECT ur.id.user FROM UserRoles ur WHERE ur.id.role = :roleid AND ur.id.user IN :userids")
+    List<Long> findUseridsWithRole(
+        long roleid,
+        Collection<Long> userids);
+
+    /**
+     * Finds one page of the users having the role, read from the primary key of userroles, which starts with roleid
+     *
+     * @param roleid   The role id of the role
+     * @param userid   The user id (long) after which the page starts
+     * @param pageable Only the page size is used: the page always starts after the given user id
+     * @return The user ids of at most page size users having the role, ordered by userid
+     */
+    @Query(value = "SELECT ur.id.user FROM UserRoles ur WHERE ur.id.role = :roleid AND ur.id.user > :userid ORDER BY ur.id.user")
+    List<Long> findUseridsWithRoleAfter(
+        long roleid,
+        long userid,
+        Pageable pageable);
+
+    /**
+     * Counts up the version of the user, for a change to it made without loading it, such as to its roles
+     *
+     * @param userid The primary key (long) of the user
+     * @return The number of users changed, 0 if there is no such user
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE User u SET u.version = u.version + 1 WHERE u.userid = :userid")
+    int incrementVersion(long userid);
+
+    /**
+     * Counts up the version of every user having the role, before the role is renamed or deleted
+     *
+     * @param roleid The role id of the role
+     * @return The number of users changed
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE User u SET u.version = u.version + 1 WHERE u.userid IN (SELECT ur.id.user FROM UserRoles ur WHERE ur.id.role = :roleid)")
+    int incrementVersionsWithRole(long roleid);
+
+    /**
+     * Counts up the version of every given user having the role, before the role is taken away from them
+     *
+     * @param roleid  The role id of the role
+     * @param userids The user ids of the users
+     * @return The number of users changed
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE User u SET u.version = u.version + 1 WHERE u.userid IN :userids " +
+        "AND EXISTS (SELECT ur FROM UserRoles ur WHERE ur.id.user = u.userid AND ur.id.role = :roleid)")
+    int incrementVersionsWithRole(
+        long roleid,
+        Collection<Long> userids);
+
+    /**
+     * Counts up the version of every given user not having the role yet, before the role is given to them
+     *
+     * @param roleid  The role id of the role
+     * @param userids The user ids of the users
+     * @return The number of users changed
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE User u SET u.version = u.version + 1 WHERE u.userid IN :userids " +
+        "AND NOT EXISTS (SELECT ur FROM UserRoles ur WHERE ur.id.user = u.userid AND ur.id.role = :roleid)")
+    int incrementVersionsWithoutRole(
+        long roleid,
+        Collection<Long> userids);
 }
@@ -1,9 +1,16 @@
 package com.lambdaschool.usermodel.repository;
 
 import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.views.UserIdEmail;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * The CRUD Repository connecting Useremail to the rest of the application
@@ -23,4 +30,16 @@ public interface UseremailRepository extends CrudRepository<Useremail, Long>
      * @return A list of user email combinations based on the given username
      */
     List<Useremail> findAllByUser_Username(String name);
+
+    /**
+     * Streams every useremail with the id of its user, ordered by userid, so they can be read alongside
+     * UserRepository.streamAllByOrderByUserid. Ordered by userid alone so the database reads the userid index in order
+     * instead of sorting the whole table in memory. Must be read inside of a transaction and closed when done.
+     *
+     * @return Stream of user id, useremail id and useremail rows ordered by userid
+     */
+    @QueryHints(value = @QueryHint(name = HINT_FETCH_SIZE,
+        value = "1000"))
+    @Query(value = "SELECT ue.user.userid AS userid, ue.useremailid AS useremailid, ue.useremail AS useremail FROM Useremail ue ORDER BY ue.user.userid")
+    Stream<UserIdEmail> streamAllByOrderByUserid();
 }
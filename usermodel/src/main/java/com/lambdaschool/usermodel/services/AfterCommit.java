@@ -0,0 +1,45 @@
+package com.lambdaschool.usermodel.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers changes to what is kept in memory, the username index, the email counts, the role membership index and the
+ * audit queue, until the transaction making them commits, so a rolled back change never shows up.
+ * <p>
+ * Most of these changes come from the entity listeners, which inject what they keep current with @Lazy: Hibernate asks
+ * Spring for the listeners while the entity manager factory is still being built, and the indexes and the audit log
+ * need that factory, directly or through the repositories. The lazy proxy is only resolved on the first change.
+ */
+final class AfterCommit
+{
+    /**
+     * Only static methods
+     */
+    private AfterCommit()
+    {
+    }
+
+    /**
+     * Runs the change once the current transaction commits, or right away if there is no transaction
+     *
+     * @param change The change to make
+     */
+    static void run(Runnable change)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    change.run();
+                }
+            });
+        } else
+        {
+            change.run();
+        }
+    }
+}
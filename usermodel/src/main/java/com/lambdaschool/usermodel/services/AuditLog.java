@@ -0,0 +1,482 @@
+package com.lambdaschool.usermodel.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the change history of the users, roles, useremails and userroles tables to the auditlog table, see AuditEntry.
+ * <p>
+ * Changes are recorded once their transaction commits, by AuditLogListener for the changes Hibernate makes
+ * and by the services for the rows they change with SQL. Recording only puts the change in a queue of
+ * usermodel.audit.queue-size; a background thread writes what is queued in JDBC batches of up to
+ * usermodel.audit.batch-size, so writes wait on no audit statement of their own.
+ * <p>
+ * When the queue is full, recording waits for room for up to usermodel.audit.max-wait, slowing writers down to what
+ * the audit log can take. The wait is for all the changes recorded at once, so a bulk change of many rows waits no
+ * longer than a single one. What still finds no room is logged at WARN and dropped: the waiting transaction
+ * holds its connection, and waiting for ever could take every connection away from the writer.
+ * A batch that fails is tried again every second. What is still queued on shutdown is written before closing.
+ * <p>
+ * Published as the usermodel.audit.* meters: queue size, time spent waiting for room, entries written and dropped,
+ * and the lag of each batch, from its oldest change being recorded to the batch being written.
+ * Set usermodel.audit.enabled=false to keep no history.
+ */
+@Component
+public class AuditLog
+{
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    /**
+     * Inserts one audit entry
+     */
+    private static final String INSERT = "INSERT INTO auditlog(tablename, rowkey, action, changedby, changeddate) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * How long (long) in milliseconds to wait before trying a failed batch again
+     */
+    private static final long RETRY_MILLIS = 1000;
+
+    /**
+     * Whether (boolean) to keep the history at all
+     */
+    @Value("${usermodel.audit.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * The number of changes (int) the queue holds
+     */
+    @Value("${usermodel.audit.queue-size:10000}")
+    private int queueSize;
+
+    /**
+     * The most changes (int) written per batch
+     */
+    @Value("${usermodel.audit.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * How long (Duration) recording a change waits for room in a full queue before dropping it
+     */
+    @Value("${usermodel.audit.max-wait:PT5S}")
+    private Duration maxWait;
+
+    /**
+     * Writes the batches, outside of any transaction so they go to the primary database
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Gives the name of who made the changes
+     */
+    @Autowired
+    private UserAuditing userAuditing;
+
+    /**
+     * Where the meters are registered
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The changes recorded and not yet written
+     */
+    private BlockingQueue<Change> queue;
+
+    /**
+     * The thread writing the batches
+     */
+    private Thread writer;
+
+    /**
+     * False (boolean) once the application shuts down, after which the writer empties the queue and stops
+     */
+    private volatile boolean running = true;
+
+    /**
+     * The time spent waiting for room in a full queue
+     */
+    private Timer backpressure;
+
+    /**
+     * From the oldest change of a batch being recorded to the batch being written
+     */
+    private Timer lag;
+
+    /**
+     * The changes written
+     */
+    private Counter written;
+
+    /**
+     * The changes dropped for want of room
+     */
+    private Counter dropped;
+
+    /**
+     * The batches that failed to be written and were tried again
+     */
+    private Counter failures;
+
+    /**
+     * Creates the queue, registers the meters and starts the writer
+     */
+    @PostConstruct
+    public void init()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueSize);
+
+        Gauge.builder("usermodel.audit.queue.size",
+            queue,
+            BlockingQueue::size)
+            .description("Changes recorded and not yet written to the audit log")
+            .register(meterRegistry);
+        backpressure = Timer.builder("usermodel.audit.backpressure")
+            .description("Time writes waited for room in the full audit queue")
+            .register(meterRegistry);
+        lag = Timer.builder("usermodel.audit.lag")
+            .description("Time from the oldest change of a batch being recorded to the batch being written")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        written = Counter.builder("usermodel.audit.written")
+            .description("Changes written to the audit log")
+            .register(meterRegistry);
+        dropped = Counter.builder("usermodel.audit.dropped")
+            .description("Changes dropped as the audit queue stayed full")
+            .register(meterRegistry);
+        failures = Counter.builder("usermodel.audit.failures")
+            .description("Audit batches that failed to be written and were tried again")
+            .register(meterRegistry);
+
+        writer = new Thread(this::write,
+            "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops taking changes and waits for the writer to write what is still queued
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @PreDestroy
+    public void close() throws
+                        InterruptedException
+    {
+        if (writer != null)
+        {
+            running = false;
+            writer.join(maxWait.toMillis() + RETRY_MILLIS);
+        }
+    }
+
+    /**
+     * Checks if the history is kept, so writers can skip reading which rows they change when it is not
+     *
+     * @return true unless usermodel.audit.enabled=false
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Records a change to a row once the current transaction commits, or right away if there is no transaction
+     *
+     * @param tablename The table (String) of the row: users, roles, useremails or userroles
+     * @param rowkey    The primary key (String) of the row, userid:roleid for userroles
+     * @param action    What happened (String) to the row: INSERT, UPDATE or DELETE
+     */
+    public void recorded(
+        String tablename,
+        String rowkey,
+        String action)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        String changedby = userAuditing.getCurrentAuditor()
+            .orElse(null);
+        AfterCommit.run(() -> enqueue(Collections.singletonList(new Change(tablename,
+            rowkey,
+            action,
+            changedby))));
+    }
+
+    /**
+     * Records the same change to many rows once the current transaction commits, or right away if there is no transaction
+     *
+     * @param tablename The table (String) of the rows
+     * @param rowkeys   The primary keys of the rows
+     * @param action    What happened (String) to the rows: INSERT, UPDATE or DELETE
+     */
+    public void recordedAll(
+        String tablename,
+        Collection<String> rowkeys,
+        String action)
+    {
+        if (!enabled || rowkeys.isEmpty())
+        {
+            return;
+        }
+        String changedby = userAuditing.getCurrentAuditor()
+            .orElse(null);
+        List<Change> changes = new ArrayList<>(rowkeys.size());
+        for (String rowkey : rowkeys)
+        {
+            changes.add(new Change(tablename,
+                rowkey,
+                action,
+                changedby));
+        }
+        AfterCommit.run(() -> enqueue(changes));
+    }
+
+    /**
+     * Puts changes in the queue. When it is full, waits for room until maxWait has passed since it was first found
+     * full, after which the changes that find no room right away are dropped.
+     *
+     * @param changes The changes recorded together
+     */
+    private void enqueue(List<Change> changes)
+    {
+        boolean full = false;
+        long deadline = 0;
+        long waited = 0;
+        int lost = 0;
+        Change firstLost = null;
+        for (Change change : changes)
+        {
+            if (queue.offer(change))
+            {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            if (!full)
+            {
+                full = true;
+                deadline = start + maxWait.toNanos();
+            }
+            boolean queued = false;
+            if (running && deadline - start > 0)
+            {
+                try
+                {
+                    queued = queue.offer(change,
+                        deadline - start,
+                        TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread()
+                        .interrupt();
+                    deadline = start;
+                }
+                waited += System.nanoTime() - start;
+            }
+            if (!queued)
+            {
+                lost++;
+                if (firstLost == null)
+                {
+                    firstLost = change;
+                }
+            }
+        }
+
+        if (full)
+        {
+            backpressure.record(waited,
+                TimeUnit.NANOSECONDS);
+        }
+        if (lost > 0)
+        {
+            dropped.increment(lost);
+            logger.warn("Audit queue full, dropped {} of {} changes, the first {} {} {} by {}",
+                lost,
+                changes.size(),
+                firstLost.action,
+                firstLost.tablename,
+                firstLost.rowkey,
+                firstLost.changedby);
+        }
+    }
+
+    /**
+     * Writes what is queued in batches until shut down and the queue is empty
+     */
+    private void write()
+    {
+        List<Change> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty())
+        {
+            try
+            {
+                Change first = queue.poll(100,
+                    TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch,
+                    batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                    .interrupt();
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes one batch, trying again every second until it is written. On shutdown it is tried once more, then dropped.
+     *
+     * @param batch The changes to write, oldest first
+     * @throws InterruptedException if interrupted while waiting to try again
+     */
+    private void writeBatch(List<Change> batch) throws
+                                                InterruptedException
+    {
+        while (true)
+        {
+            try
+            {
+                jdbcTemplate.batchUpdate(INSERT,
+                    new BatchPreparedStatementSetter()
+                    {
+                        @Override
+                        public void setValues(
+                            PreparedStatement ps,
+                            int i) throws
+                                   SQLException
+                        {
+                            Change change = batch.get(i);
+                            ps.setString(1,
+                                change.tablename);
+                            ps.setString(2,
+                                change.rowkey);
+                            ps.setString(3,
+                                change.action);
+                            ps.setString(4,
+                                change.changedby);
+                            ps.setTimestamp(5,
+                                new Timestamp(change.changeddate));
+                        }
+
+                        @Override
+                        public int getBatchSize()
+                        {
+                            return batch.size();
+                        }
+                    });
+                lag.record(System.nanoTime() - batch.get(0).recordedNanos,
+                    TimeUnit.NANOSECONDS);
+                written.increment(batch.size());
+                return;
+            } catch (RuntimeException e)
+            {
+                failures.increment();
+                if (!running)
+                {
+                    dropped.increment(batch.size());
+                    logger.error("Dropped {} audit entries on shutdown, could not write them",
+                        batch.size(),
+                        e);
+                    return;
+                }
+                logger.warn("Could not write {} audit entries, trying again",
+                    batch.size(),
+                    e);
+                Thread.sleep(RETRY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * A change to a row, waiting to be written
+     */
+    private static class Change
+    {
+        /**
+         * The table (String) of the row
+         */
+        final String tablename;
+
+        /**
+         * The primary key (String) of the row
+         */
+        final String rowkey;
+
+        /**
+         * What happened (String) to the row
+         */
+        final String action;
+
+        /**
+         * Who (String) changed the row
+         */
+        final String changedby;
+
+        /**
+         * When (long, epoch milliseconds) the change was recorded
+         */
+        final long changeddate = System.currentTimeMillis();
+
+        /**
+         * When (long, System.nanoTime) the change was recorded, to measure the lag
+         */
+        final long recordedNanos = System.nanoTime();
+
+        /**
+         * Given the params, create the change
+         *
+         * @param tablename The table (String) of the row
+         * @param rowkey    The primary key (String) of the row
+         * @param action    What happened (String) to the row
+         * @param changedby Who (String) changed the row
+         */
+        Change(
+            String tablename,
+            String rowkey,
+            String action,
+            String changedby)
+        {
+            this.tablename = tablename;
+            this.rowkey = rowkey;
+            this.action = action;
+            this.changedby = changedby;
+        }
+    }
+}
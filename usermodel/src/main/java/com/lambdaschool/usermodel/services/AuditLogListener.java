@@ -0,0 +1,117 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserRoles;
+import com.lambdaschool.usermodel.models.Useremail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Passes every user, role, useremail and user role combination Hibernate inserts, updates or deletes on to the
+ * audit log, which records it once the transaction commits. Registered on Auditable, so it covers every audited entity.
+ * <p>
+ * Rows written with SQL that does not go through the entities are not seen, their writers pass them on.
+ */
+@Component
+public class AuditLogListener
+{
+    /**
+     * The audit log, lazy as explained in AfterCommit
+     */
+    @Lazy
+    @Autowired
+    private AuditLog auditLog;
+
+    /**
+     * Records the entity inserted
+     *
+     * @param entity The user, role, useremail or user role combination inserted
+     */
+    @PostPersist
+    public void saved(Object entity)
+    {
+        record(entity,
+            "INSERT");
+    }
+
+    /**
+     * Records the entity updated
+     *
+     * @param entity The user, role, useremail or user role combination updated
+     */
+    @PostUpdate
+    public void updated(Object entity)
+    {
+        record(entity,
+            "UPDATE");
+    }
+
+    /**
+     * Records the entity deleted
+     *
+     * @param entity The user, role, useremail or user role combination deleted
+     */
+    @PostRemove
+    public void removed(Object entity)
+    {
+        record(entity,
+            "DELETE");
+    }
+
+    /**
+     * Records the change under the table and primary key of the entity
+     *
+     * @param entity The entity changed
+     * @param action What happened (String) to it
+     */
+    private void record(
+        Object entity,
+        String action)
+    {
+        if (entity instanceof User)
+        {
+            auditLog.recorded("users",
+                Long.toString(((User) entity).getUserid()),
+                action);
+        } else if (entity instanceof Role)
+        {
+            auditLog.recorded("roles",
+                Long.toString(((Role) entity).getRoleid()),
+                action);
+        } else if (entity instanceof Useremail)
+        {
+            auditLog.recorded("useremails",
+                Long.toString(((Useremail) entity).getUseremailid()),
+                action);
+        } else if (entity instanceof UserRoles)
+        {
+            UserRoles userRoles = (UserRoles) entity;
+            auditLog.recorded("userroles",
+                userRolesKey(userRoles.getUser()
+                        .getUserid(),
+                    userRoles.getRole()
+                        .getRoleid()),
+                action);
+        }
+    }
+
+    /**
+     * The key of a user role combination in the audit log
+     *
+     * @param userid The primary key (long) of the user
+     * @param roleid The primary key (long) of the role
+     * @return userid:roleid
+     */
+    public static String userRolesKey(
+        long userid,
+        long roleid)
+    {
+        return userid + ":" + roleid;
+    }
+}
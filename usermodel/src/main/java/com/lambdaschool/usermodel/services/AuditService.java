@@ -0,0 +1,23 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.AuditEntry;
+
+import java.util.List;
+
+/**
+ * The service that reads the change history kept by AuditLog
+ */
+public interface AuditService
+{
+    /**
+     * Returns the changes to one row, oldest first. Changes are written in the background,
+     * so the latest ones may take a moment to show up.
+     *
+     * @param tablename The table (String) of the row: users, roles, useremails or userroles
+     * @param rowkey    The primary key (String) of the row, userid:roleid for userroles
+     * @return List of the changes to the row, empty if there are none
+     */
+    List<AuditEntry> findHistory(
+        String tablename,
+        String rowkey);
+}
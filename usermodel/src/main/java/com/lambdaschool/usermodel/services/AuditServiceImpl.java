@@ -0,0 +1,32 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.AuditEntry;
+import com.lambdaschool.usermodel.repository.AuditRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Implements the AuditService Interface
+ */
+@Transactional(readOnly = true)
+@Service(value = "auditService")
+public class AuditServiceImpl implements AuditService
+{
+    /**
+     * Connects this service to the auditlog table
+     */
+    @Autowired
+    private AuditRepository auditrepos;
+
+    @Override
+    public List<AuditEntry> findHistory(
+        String tablename,
+        String rowkey)
+    {
+        return auditrepos.findByTablenameAndRowkeyOrderByAuditid(tablename,
+            rowkey);
+    }
+}
@@ -0,0 +1,19 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.CacheRegionStats;
+
+import java.util.List;
+
+/**
+ * The service that reports on the Hibernate second-level cache
+ */
+public interface CacheStatsService
+{
+    /**
+     * Returns the counters of every region of the second-level cache.
+     * The list is empty unless usermodel.cache.enabled=true, and the counters stay at 0 unless usermodel.cache.statistics=true.
+     *
+     * @return List of the hits, misses and puts of each region
+     */
+    List<CacheRegionStats> findRegionStats();
+}
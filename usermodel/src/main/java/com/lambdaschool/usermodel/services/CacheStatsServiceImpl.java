@@ -0,0 +1,50 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.CacheRegionStats;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implements the CacheStatsService Interface
+ */
+@Service(value = "cacheStatsService")
+public class CacheStatsServiceImpl implements CacheStatsService
+{
+    /**
+     * The entity manager factory, unwrapped to the Hibernate session factory holding the statistics
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public List<CacheRegionStats> findRegionStats()
+    {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class)
+            .getStatistics();
+
+        String[] regions = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regions);
+
+        List<CacheRegionStats> list = new ArrayList<>();
+        for (String region : regions)
+        {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics != null)
+            {
+                list.add(new CacheRegionStats(region,
+                    regionStatistics.getHitCount(),
+                    regionStatistics.getMissCount(),
+                    regionStatistics.getPutCount()));
+            }
+        }
+        return list;
+    }
+}
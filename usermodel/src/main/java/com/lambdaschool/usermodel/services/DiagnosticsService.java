@@ -0,0 +1,34 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.RequestDiagnostics;
+
+import java.util.List;
+
+/**
+ * The service that keeps the diagnostics of the last requests that asked for them, see DiagnosticsFilter
+ */
+public interface DiagnosticsService
+{
+    /**
+     * Keeps the diagnostics of a finished request, dropping the oldest once usermodel.diagnostics.buffer-size are kept
+     *
+     * @param diagnostics The diagnostics of the request
+     */
+    void save(RequestDiagnostics diagnostics);
+
+    /**
+     * Returns the diagnostics kept, newest first
+     *
+     * @return List of the diagnostics of the last requests
+     */
+    List<RequestDiagnostics> findAll();
+
+    /**
+     * Returns the diagnostics of one request, if still kept
+     *
+     * @param id The number (long) of the request, from its Usermodel-Diagnostics-Id header
+     * @return The diagnostics of the request
+     * @throws javax.persistence.EntityNotFoundException if the request was not diagnosed or has been dropped
+     */
+    RequestDiagnostics findById(long id);
+}
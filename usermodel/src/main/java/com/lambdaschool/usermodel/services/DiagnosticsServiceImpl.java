@@ -0,0 +1,86 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.RequestDiagnostics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Implements the DiagnosticsService Interface with a ring buffer: saving never waits or allocates beyond the
+ * diagnostics themselves, and the oldest are simply overwritten
+ */
+@Service(value = "diagnosticsService")
+public class DiagnosticsServiceImpl implements DiagnosticsService
+{
+    /**
+     * The number of diagnostics (int) kept
+     */
+    @Value("${usermodel.diagnostics.buffer-size:100}")
+    private int bufferSize;
+
+    /**
+     * The diagnostics kept, the one saved n-th at n modulo the buffer size
+     */
+    private AtomicReferenceArray<RequestDiagnostics> buffer;
+
+    /**
+     * The number of diagnostics (long) saved so far
+     */
+    private final AtomicLong saved = new AtomicLong();
+
+    /**
+     * Creates the ring buffer
+     */
+    @PostConstruct
+    public void init()
+    {
+        buffer = new AtomicReferenceArray<>(Math.max(1,
+            bufferSize));
+    }
+
+    @Override
+    public void save(RequestDiagnostics diagnostics)
+    {
+        long slot = saved.getAndIncrement();
+        buffer.set((int) (slot % buffer.length()),
+            diagnostics);
+    }
+
+    @Override
+    public List<RequestDiagnostics> findAll()
+    {
+        long end = saved.get();
+        long start = Math.max(0,
+            end - buffer.length());
+
+        List<RequestDiagnostics> list = new ArrayList<>();
+        for (long slot = end - 1; slot >= start; slot--)
+        {
+            RequestDiagnostics diagnostics = buffer.get((int) (slot % buffer.length()));
+            if (diagnostics != null)
+            {
+                list.add(diagnostics);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public RequestDiagnostics findById(long id)
+    {
+        for (RequestDiagnostics diagnostics : findAll())
+        {
+            if (diagnostics.getId() == id)
+            {
+                return diagnostics;
+            }
+        }
+        throw new EntityNotFoundException("Diagnostics of request " + id + " not found!");
+    }
+}
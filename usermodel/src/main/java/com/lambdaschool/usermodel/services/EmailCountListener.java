@@ -0,0 +1,94 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.Useremail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Passes inserted, changed and deleted users and useremails on to the email counts once their transaction commits.
+ * Registered on User and Useremail through @EntityListeners. Hibernate creates it through Spring, so it can be autowired.
+ */
+@Component
+public class EmailCountListener
+{
+    /**
+     * The counts to keep current, lazy as explained in AfterCommit
+     */
+    @Lazy
+    @Autowired
+    private EmailCounts emailCounts;
+
+    /**
+     * Counts the new user, or the new useremail of its user
+     *
+     * @param entity The user or useremail inserted
+     */
+    @PostPersist
+    public void saved(Object entity)
+    {
+        if (entity instanceof User)
+        {
+            userSaved((User) entity);
+        } else if (entity instanceof Useremail)
+        {
+            long userid = ((Useremail) entity).getUser()
+                .getUserid();
+            AfterCommit.run(() -> emailCounts.addEmails(userid,
+                1));
+        }
+    }
+
+    /**
+     * Passes on a changed username. Changed useremails keep their user, so their count stays the same.
+     *
+     * @param entity The user or useremail updated
+     */
+    @PostUpdate
+    public void updated(Object entity)
+    {
+        if (entity instanceof User)
+        {
+            userSaved((User) entity);
+        }
+    }
+
+    /**
+     * Takes the deleted user out of the counts, or a deleted useremail off the count of its user
+     *
+     * @param entity The user or useremail deleted
+     */
+    @PostRemove
+    public void removed(Object entity)
+    {
+        if (entity instanceof User)
+        {
+            long userid = ((User) entity).getUserid();
+            AfterCommit.run(() -> emailCounts.removeUser(userid));
+        } else if (entity instanceof Useremail)
+        {
+            long userid = ((Useremail) entity).getUser()
+                .getUserid();
+            AfterCommit.run(() -> emailCounts.addEmails(userid,
+                -1));
+        }
+    }
+
+    /**
+     * Puts the user in the counts with its current username
+     *
+     * @param user The user inserted or updated
+     */
+    private void userSaved(User user)
+    {
+        long userid = user.getUserid();
+        String username = user.getUsername();
+        AfterCommit.run(() -> emailCounts.putUser(userid,
+            username));
+    }
+}
@@ -0,0 +1,554 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.repository.UserRepository;
+import com.lambdaschool.usermodel.views.UserEmailCount;
+import com.lambdaschool.usermodel.views.UserNameCountEmails;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * The number of useremails of every user, kept in memory so the email count report needs no join.
+ * Users without emails are included with a count of 0.
+ * <p>
+ * The counts are read from the database in the background once the application is up, then kept current by
+ * EmailCountListener, which passes on every committed insert and delete of a user or useremail.
+ * Until then the report is read from the database.
+ * <p>
+ * Rows changed behind Hibernate's back, for example with plain JDBC, are not seen by the listener. With
+ * usermodel.emailcounts.reconcile=true the counts are reconciled with the database every
+ * usermodel.emailcounts.reconcile-interval; off by default, as each reconciliation reads the whole users and
+ * useremails join. Differences are logged, counted in the usermodel.emailcounts.mismatches meter and corrected.
+ * Set usermodel.emailcounts.enabled=false to always read the report from the database.
+ */
+@Component
+public class EmailCounts
+{
+    /**
+     * The most times (int) a scan re-reads the users changed while it ran before leaving them to the next reconciliation
+     */
+    private static final int MAX_REREADS = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailCounts.class);
+
+    /**
+     * The username and number of useremails of each user, keyed by user id
+     */
+    private final Map<Long, Count> counts = new ConcurrentHashMap<>();
+
+    /**
+     * The same counts ordered by username, then user id, kept in step with counts so the report needs no sort.
+     * A user whose count changes is briefly missing from it while the old count is swapped for the new one.
+     */
+    private final NavigableSet<Count> report = new ConcurrentSkipListSet<>(Comparator.comparing((Count count) -> count.username)
+        .thenComparingLong(count -> count.userid));
+
+    /**
+     * Changes hold the read lock while they check whether a scan is running and update the counts.
+     * A scan takes the write lock to start tracking changes, so every change either lands before the scan reads
+     * the database or is tracked and read again after it.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Only one scan runs at a time
+     */
+    private final ReentrantLock scanLock = new ReentrantLock();
+
+    /**
+     * The user ids changed while a scan is running, so the scan does not put back what it read before the change.
+     * Null when no scan is running.
+     */
+    private volatile Set<Long> changedDuringScan;
+
+    /**
+     * True (boolean) once the counts hold every user
+     */
+    private volatile boolean ready = false;
+
+    /**
+     * Whether (boolean) to keep the counts at all
+     */
+    @Value("${usermodel.emailcounts.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Whether (boolean) to compare the counts with the database every reconcile-interval
+     */
+    @Value("${usermodel.emailcounts.reconcile:false}")
+    private boolean reconcile;
+
+    /**
+     * Connects the counts to the User table
+     */
+    @Autowired
+    private UserRepository userrepos;
+
+    /**
+     * Used to read the counts in one read-only transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Runs the first scan in the background
+     */
+    @Autowired
+    private TaskExecutor taskExecutor;
+
+    /**
+     * Counts the users whose count did not match the database when reconciled
+     */
+    private final Counter mismatches;
+
+    /**
+     * Registers the mismatch counter
+     *
+     * @param meterRegistry Where the counter is registered
+     */
+    public EmailCounts(MeterRegistry meterRegistry)
+    {
+        mismatches = Counter.builder("usermodel.emailcounts.mismatches")
+            .description("Users whose in-memory email count differed from the database when reconciled")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts reading the counts once the application, including the seed data, is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground()
+    {
+        if (enabled)
+        {
+            taskExecutor.execute(this::scan);
+        }
+    }
+
+    /**
+     * Compares the counts with the database and corrects them, when usermodel.emailcounts.reconcile=true
+     */
+    @Scheduled(fixedDelayString = "${usermodel.emailcounts.reconcile-interval:PT10M}",
+        initialDelayString = "${usermodel.emailcounts.reconcile-interval:PT10M}")
+    public void reconcile()
+    {
+        if (enabled && reconcile && ready)
+        {
+            scan();
+        }
+    }
+
+    /**
+     * Checks if the counts hold every user and can answer the report
+     *
+     * @return true once the counts have been read from the database
+     */
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * The username and number of useremails of every user, ordered by username like the report read from the database
+     *
+     * @return List of every user with its email count
+     */
+    public List<UserNameCountEmails> findAll()
+    {
+        return new ArrayList<>(report);
+    }
+
+    /**
+     * The username and number of useremails of one user
+     *
+     * @param userid The primary key (long) of the user
+     * @return The user with its email count, empty if there is no such user
+     */
+    public Optional<UserNameCountEmails> find(long userid)
+    {
+        return Optional.ofNullable(counts.get(userid));
+    }
+
+    /**
+     * Adds the user with no emails, or changes its username if it is already counted
+     *
+     * @param userid   The primary key (long) of the user
+     * @param username The username (String) of the user
+     */
+    public void putUser(
+        long userid,
+        String username)
+    {
+        change(userid,
+            () -> update(userid,
+                old -> new Count(userid,
+                    username,
+                    old == null ? 0 : old.emails)));
+    }
+
+    /**
+     * Takes the user out of the counts
+     *
+     * @param userid The primary key (long) of the user
+     */
+    public void removeUser(long userid)
+    {
+        change(userid,
+            () -> update(userid,
+                old -> null));
+    }
+
+    /**
+     * Adds to the number of useremails of the user. Users not counted yet are left alone, the next scan reads them.
+     *
+     * @param userid The primary key (long) of the user
+     * @param delta  The number of useremails (int) added, negative when removed
+     */
+    public void addEmails(
+        long userid,
+        int delta)
+    {
+        change(userid,
+            () -> update(userid,
+                old -> old == null ? null : new Count(userid,
+                    old.username,
+                    Math.max(0,
+                        old.emails + delta))));
+    }
+
+    /**
+     * Applies a change to the counts, tracking the user if a scan is running
+     *
+     * @param userid The primary key (long) of the user changed
+     * @param change The change to the counts
+     */
+    private void change(
+        long userid,
+        Runnable change)
+    {
+        lock.readLock()
+            .lock();
+        try
+        {
+            Set<Long> changed = changedDuringScan;
+            if (changed != null)
+            {
+                changed.add(userid);
+            }
+            change.run();
+        } finally
+        {
+            lock.readLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Reads every count from the database and puts it in place of the one in memory as it is read, counting the
+     * differences once the counts are ready. Only the user ids read are kept aside, to find the users gone from the
+     * database. Users changed while the database is read are read again one by one.
+     */
+    public void scan()
+    {
+        if (!scanLock.tryLock())
+        {
+            return;
+        }
+        try
+        {
+            Set<Long> changedWhileReading = startTracking();
+            Scanned scanned = new Scanned();
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            transactionTemplate.executeWithoutResult(status ->
+            {
+                try (Stream<UserEmailCount> rows = userrepos.streamEmailCounts())
+                {
+                    rows.forEach(row ->
+                    {
+                        long userid = row.getUserid();
+                        scanned.add(userid);
+                        if (!changedWhileReading.contains(userid))
+                        {
+                            Count count = new Count(userid,
+                                row.getUsername(),
+                                (int) row.getCountemails());
+                            if (!count.equals(update(userid,
+                                old -> count)))
+                            {
+                                scanned.differences++;
+                            }
+                        }
+                    });
+                }
+            });
+
+            int differences = scanned.differences;
+            for (Long userid : counts.keySet())
+            {
+                if (!scanned.contains(userid) && !changedWhileReading.contains(userid) && update(userid,
+                    old -> null) != null)
+                {
+                    differences++;
+                }
+            }
+
+            Set<Long> changed = changedWhileReading;
+            // users changed while reading, read again until none change in between
+            for (int i = 0; i < MAX_REREADS && !changed.isEmpty(); i++)
+            {
+                Set<Long> reread = changed;
+                changed = startTracking();
+                for (Long userid : reread)
+                {
+                    Optional<UserEmailCount> row = transactionTemplate.execute(status -> userrepos.findEmailCountByUserid(userid));
+                    if (!changed.contains(userid))
+                    {
+                        update(userid,
+                            old -> row.map(r -> new Count(userid,
+                                r.getUsername(),
+                                (int) r.getCountemails()))
+                                .orElse(null));
+                    }
+                }
+            }
+
+            if (ready)
+            {
+                if (differences > 0)
+                {
+                    logger.warn("Email counts of {} users did not match the database and were corrected",
+                        differences);
+                    mismatches.increment(differences);
+                }
+            } else
+            {
+                ready = true;
+                logger.info("Email counts read for {} users",
+                    counts.size());
+            }
+        } catch (RuntimeException e)
+        {
+            logger.error("Email counts could not be read, the email count report stays on the database",
+                e);
+        } finally
+        {
+            lock.writeLock()
+                .lock();
+            try
+            {
+                changedDuringScan = null;
+            } finally
+            {
+                lock.writeLock()
+                    .unlock();
+            }
+            scanLock.unlock();
+        }
+    }
+
+    /**
+     * Changes the count of one user in counts and in the report together, one change per user at a time
+     *
+     * @param userid The primary key (long) of the user
+     * @param change Gives the new count from the current one, either may be null when the user is not counted
+     * @return The count before the change, null if the user was not counted
+     */
+    private Count update(
+        long userid,
+        UnaryOperator<Count> change)
+    {
+        Count[] before = new Count[1];
+        counts.compute(userid,
+            (id, old) ->
+            {
+                before[0] = old;
+                Count count = change.apply(old);
+                if (Objects.equals(old,
+                    count))
+                {
+                    return old;
+                }
+                if (old != null)
+                {
+                    report.remove(old);
+                }
+                if (count != null)
+                {
+                    report.add(count);
+                }
+                return count;
+            });
+        return before[0];
+    }
+
+    /**
+     * Starts a new set of users changed from now on
+     *
+     * @return The set changes are recorded in
+     */
+    private Set<Long> startTracking()
+    {
+        lock.writeLock()
+            .lock();
+        try
+        {
+            changedDuringScan = ConcurrentHashMap.newKeySet();
+            return changedDuringScan;
+        } finally
+        {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * The user ids read by a scan, in the order read, which is by user id, and the number of counts it changed
+     */
+    private static class Scanned
+    {
+        /**
+         * The user ids (long) read, sorted
+         */
+        private long[] userids = new long[1024];
+
+        /**
+         * The number of user ids (int) read
+         */
+        private int size;
+
+        /**
+         * The number of counts (int) that differed from what was read
+         */
+        private int differences;
+
+        /**
+         * Adds a user id, greater than the ones added before
+         *
+         * @param userid The user id (long) read
+         */
+        void add(long userid)
+        {
+            if (size == userids.length)
+            {
+                userids = Arrays.copyOf(userids,
+                    size * 2);
+            }
+            userids[size++] = userid;
+        }
+
+        /**
+         * Checks if a user id was read
+         *
+         * @param userid The user id (long)
+         * @return true if the scan read the user
+         */
+        boolean contains(long userid)
+        {
+            return Arrays.binarySearch(userids,
+                0,
+                size,
+                userid) >= 0;
+        }
+    }
+
+    /**
+     * The username and number of useremails of one user. Never changed, a change puts a new one in place.
+     */
+    private static class Count implements UserNameCountEmails
+    {
+        /**
+         * The primary key (long) of the user
+         */
+        private final long userid;
+
+        /**
+         * The username (String) of the user
+         */
+        private final String username;
+
+        /**
+         * The number of useremails (int) of the user
+         */
+        private final int emails;
+
+        /**
+         * Given the params, create a new count
+         *
+         * @param userid   The primary key (long) of the user
+         * @param username The username (String) of the user
+         * @param emails   The number of useremails (int) of the user
+         */
+        Count(
+            long userid,
+            String username,
+            int emails)
+        {
+            this.userid = userid;
+            this.username = username;
+            this.emails = emails;
+        }
+
+        @Override
+        public String getUsernamerpt()
+        {
+            return username;
+        }
+
+        @Override
+        public int getCountemails()
+        {
+            return emails;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Count))
+            {
+                return false;
+            }
+            Count that = (Count) o;
+            return userid == that.userid && emails == that.emails && Objects.equals(username,
+                that.username);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(userid,
+                username,
+                emails);
+        }
+    }
+}
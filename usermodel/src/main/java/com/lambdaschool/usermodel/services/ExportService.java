@@ -0,0 +1,43 @@
+package com.lambdaschool.usermodel.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The Service that writes out all the data at once, for analytics and backups
+ */
+public interface ExportService
+{
+    /**
+     * The formats users can be exported in
+     */
+    enum Format
+    {
+        /**
+         * Newline delimited JSON, one object per user with its useremails and role names as arrays
+         */
+        NDJSON,
+
+        /**
+         * Comma separated values with a header line, one line per user with its useremails and role names
+         * each joined by semicolons
+         */
+        CSV
+    }
+
+    /**
+     * Writes every user with its useremails and role names, ordered by userid.
+     * <p>
+     * Users, useremails and roles are read from three forward-only cursors ordered by userid and merged as they are read,
+     * so memory use does not grow with the number of users. Writing blocks while the output stream cannot take more,
+     * which holds back the reading too.
+     *
+     * @param format The format to write in
+     * @param out    Where the users are written to. Flushed but not closed.
+     * @return The number of users (long) written
+     * @throws IOException if the output stream cannot be written to
+     */
+    long exportUsers(
+        Format format,
+        OutputStream out) throws IOException;
+}
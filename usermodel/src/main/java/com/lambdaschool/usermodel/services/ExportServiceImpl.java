@@ -0,0 +1,272 @@
+package com.lambdaschool.usermodel.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.repository.UserRepository;
+import com.lambdaschool.usermodel.repository.UseremailRepository;
+import com.lambdaschool.usermodel.views.UserIdEmail;
+import com.lambdaschool.usermodel.views.UserIdRole;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Implements the ExportService Interface
+ */
+@Service(value = "exportService")
+public class ExportServiceImpl implements ExportService
+{
+    /**
+     * The size (int) in characters of the buffer in front of the output stream
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Connects this service to the User table
+     */
+    @Autowired
+    private UserRepository userrepos;
+
+    /**
+     * Connects this service to the Useremail table
+     */
+    @Autowired
+    private UseremailRepository useremailrepos;
+
+    /**
+     * Gives the names of the roles, a handful of them looked up once per export
+     */
+    @Autowired
+    private RoleService roleService;
+
+    /**
+     * Writes the NDJSON lines, with the settings of the rest of the application
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The entity manager of the current transaction. Users are detached from it once written.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    @Override
+    public long exportUsers(
+        Format format,
+        OutputStream out) throws IOException
+    {
+        // the few roles are looked up here so the userroles stream needs no join, which the database would sort in memory
+        Map<Long, String> roleNames = new HashMap<>();
+        for (Role role : roleService.findAll())
+        {
+            roleNames.put(role.getRoleid(),
+                role.getName());
+        }
+
+        long written = 0;
+        LazyQueryExecution.set(entityManager,
+            true);
+        try (Stream<User> users = userrepos.streamAllByOrderByUserid();
+             Stream<UserIdEmail> useremails = useremailrepos.streamAllByOrderByUserid();
+             Stream<UserIdRole> roles = userrepos.streamAllRoleIdsByOrderByUserid();
+             UserWriter writer = format == Format.CSV ? new CsvUserWriter(out) : new NdjsonUserWriter(objectMapper,
+                 out))
+        {
+            UseridCursor<UserIdEmail> emailCursor = new UseridCursor<>(useremails.iterator(),
+                UserIdEmail::getUserid);
+            UseridCursor<UserIdRole> roleCursor = new UseridCursor<>(roles.iterator(),
+                UserIdRole::getUserid);
+
+            Iterator<User> userIterator = users.iterator();
+            while (userIterator.hasNext())
+            {
+                User user = userIterator.next();
+                writer.write(user,
+                    emailCursor.takeAll(user.getUserid(),
+                        UserIdEmail::getUseremail),
+                    roleCursor.takeAll(user.getUserid(),
+                        role -> roleNames.get(role.getRoleid())));
+                entityManager.detach(user);
+                written++;
+            }
+        } finally
+        {
+            LazyQueryExecution.set(entityManager,
+                false);
+        }
+        return written;
+    }
+
+    /**
+     * Writes users in one format
+     */
+    private interface UserWriter extends Closeable
+    {
+        /**
+         * Writes one user
+         *
+         * @param user       The user
+         * @param useremails The useremails of the user
+         * @param roles      The role names of the user
+         * @throws IOException if the output stream cannot be written to
+         */
+        void write(
+            User user,
+            List<String> useremails,
+            List<String> roles) throws IOException;
+    }
+
+    /**
+     * Writes users as newline delimited JSON
+     */
+    private static class NdjsonUserWriter implements UserWriter
+    {
+        /**
+         * Writes the JSON, leaving the output stream open when closed
+         */
+        private final JsonGenerator generator;
+
+        /**
+         * Given the params, create a writer
+         *
+         * @param objectMapper Makes the generator
+         * @param out          Where the JSON is written to
+         * @throws IOException if the generator cannot be made
+         */
+        NdjsonUserWriter(
+            ObjectMapper objectMapper,
+            OutputStream out) throws IOException
+        {
+            generator = objectMapper.getFactory()
+                .createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // each object ends with its own newline instead
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(
+            User user,
+            List<String> useremails,
+            List<String> roles) throws IOException
+        {
+            generator.writeStartObject();
+            generator.writeNumberField("userid",
+                user.getUserid());
+            generator.writeStringField("username",
+                user.getUsername());
+            generator.writeStringField("primaryemail",
+                user.getPrimaryemail());
+            generator.writeArrayFieldStart("useremails");
+            for (String useremail : useremails)
+            {
+                generator.writeString(useremail);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("roles");
+            for (String role : roles)
+            {
+                generator.writeString(role);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            generator.close();
+        }
+    }
+
+    /**
+     * Writes users as comma separated values, quoting values where needed as in RFC 4180
+     */
+    private static class CsvUserWriter implements UserWriter
+    {
+        /**
+         * Buffers the lines, flushed but not closed at the end so the output stream stays open
+         */
+        private final Writer writer;
+
+        /**
+         * Given the params, create a writer and write the header line
+         *
+         * @param out Where the lines are written to, in UTF-8
+         * @throws IOException if the output stream cannot be written to
+         */
+        CsvUserWriter(OutputStream out) throws IOException
+        {
+            writer = new BufferedWriter(new OutputStreamWriter(out,
+                StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+            writer.write("userid,username,primaryemail,useremails,roles\r\n");
+        }
+
+        @Override
+        public void write(
+            User user,
+            List<String> useremails,
+            List<String> roles) throws IOException
+        {
+            writer.write(Long.toString(user.getUserid()));
+            writer.write(',');
+            writeValue(user.getUsername());
+            writer.write(',');
+            writeValue(user.getPrimaryemail());
+            writer.write(',');
+            writeValue(String.join(";",
+                useremails));
+            writer.write(',');
+            writeValue(String.join(";",
+                roles));
+            writer.write("\r\n");
+        }
+
+        /**
+         * Writes one value, in double quotes if it holds a comma, quote or line break
+         *
+         * @param value The value (String) to write
+         * @throws IOException if the output stream cannot be written to
+         */
+        private void writeValue(String value) throws IOException
+        {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            {
+                writer.write(value);
+            } else
+            {
+                writer.write('"');
+                writer.write(value.replace("\"",
+                    "\"\""));
+                writer.write('"');
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            writer.flush();
+        }
+    }
+}
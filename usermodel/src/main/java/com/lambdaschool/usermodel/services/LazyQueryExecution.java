@@ -0,0 +1,43 @@
+package com.lambdaschool.usermodel.services;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import java.sql.Statement;
+
+/**
+ * Turns H2's lazy query execution on and off for the connection of the current transaction, for the services
+ * streaming whole tables. H2 otherwise runs each query to the end before handing out the first row, keeping the rows
+ * on the heap and then in a temporary file, while lazily it reads the next rows from the index as they are fetched.
+ * <p>
+ * Must be turned off again, in a finally block, before the connection goes back to the pool.
+ */
+final class LazyQueryExecution
+{
+    /**
+     * Only static methods
+     */
+    private LazyQueryExecution()
+    {
+    }
+
+    /**
+     * Turns lazy query execution on or off for the connection of the current transaction
+     *
+     * @param entityManager The entity manager of the current transaction
+     * @param lazy          Whether (boolean) queries hand out their rows as they are read
+     */
+    static void set(
+        EntityManager entityManager,
+        boolean lazy)
+    {
+        entityManager.unwrap(Session.class)
+            .doWork(connection ->
+            {
+                try (Statement statement = connection.createStatement())
+                {
+                    statement.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+                }
+            });
+    }
+}
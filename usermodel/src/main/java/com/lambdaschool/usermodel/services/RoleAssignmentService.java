@@ -0,0 +1,37 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.RoleAssignmentResult;
+
+import java.util.Iterator;
+
+/**
+ * The Service that gives a role to, or takes a role from, many users at once
+ */
+public interface RoleAssignmentService
+{
+    /**
+     * Gives the role to every given user that does not have it yet.
+     * User ids are read and written in batches, one statement and one transaction per batch.
+     *
+     * @param roleid  The primary key (long) of the role to give
+     * @param userids The user ids of the users to give the role to. If the next id cannot be read, the request stops there.
+     * @return How many combinations were inserted, how many users already had the role and how many user ids were not found
+     * @throws javax.persistence.EntityNotFoundException if the role does not exist
+     */
+    RoleAssignmentResult assignRole(
+        long roleid,
+        Iterator<Long> userids);
+
+    /**
+     * Takes the role away from every given user that has it.
+     * User ids are read and written in batches, one statement and one transaction per batch.
+     *
+     * @param roleid  The primary key (long) of the role to take away
+     * @param userids The user ids of the users to take the role away from. If the next id cannot be read, the request stops there.
+     * @return How many combinations were deleted, how many users did not have the role and how many user ids were not found
+     * @throws javax.persistence.EntityNotFoundException if the role does not exist
+     */
+    RoleAssignmentResult revokeRole(
+        long roleid,
+        Iterator<Long> userids);
+}
@@ -0,0 +1,230 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.RoleAssignmentResult;
+import com.lambdaschool.usermodel.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Implements the RoleAssignmentService Interface
+ * <p>
+ * Like the user import, this class is not @Transactional. Each batch of user ids commits in its own transaction
+ * so a nightly sync of many users never holds one huge transaction, and its locks, open.
+ */
+@Service(value = "roleAssignmentService")
+public class RoleAssignmentServiceImpl implements RoleAssignmentService
+{
+    /**
+     * The number of user ids (int) per statement
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    /**
+     * Connects this service to the User and UserRoles tables
+     */
+    @Autowired
+    private UserRepository userrepos;
+
+    /**
+     * Connects this service to the Role table
+     */
+    @Autowired
+    private RoleService roleService;
+
+    /**
+     * Connects this service to the auditing service in order to get current user name
+     */
+    @Autowired
+    private UserAuditing userAuditing;
+
+    /**
+     * Which users have which roles, kept current with the user role combinations written here
+     */
+    @Autowired
+    private RoleMembership roleMembership;
+
+    /**
+     * The change history, given the user role combinations written here
+     */
+    @Autowired
+    private AuditLog auditLog;
+
+    /**
+     * Used to run each batch in its own transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    public RoleAssignmentResult assignRole(
+        long roleid,
+        Iterator<Long> userids)
+    {
+        String uname = userAuditing.getCurrentAuditor()
+            .get();
+
+        return forEachBatch(roleid,
+            userids,
+            (batch, result) ->
+            {
+                long found = userrepos.countByUseridIn(batch);
+                // the users already having the role, so only the combinations inserted are audited
+                List<Long> before = auditLog.isEnabled() ? userrepos.findUseridsWithRole(roleid,
+                    batch) : Collections.emptyList();
+                // the roles are part of the users, see User.version
+                userrepos.incrementVersionsWithoutRole(roleid,
+                    batch);
+                int inserted = userrepos.insertUserRolesForUsers(uname,
+                    roleid,
+                    batch);
+                if (inserted > 0)
+                {
+                    List<Long> members = userrepos.findUseridsWithRole(roleid,
+                        batch);
+                    roleMembership.addedAll(roleid,
+                        members);
+                    Set<Long> added = new HashSet<>(members);
+                    added.removeAll(before);
+                    auditLog.recordedAll("userroles",
+                        userRolesKeys(added,
+                            roleid),
+                        "INSERT");
+                }
+
+                result.setInserted(result.getInserted() + inserted);
+                result.setSkipped(result.getSkipped() + found - inserted);
+                result.setMissing(result.getMissing() + batch.size() - found);
+            });
+    }
+
+    @Override
+    public RoleAssignmentResult revokeRole(
+        long roleid,
+        Iterator<Long> userids)
+    {
+        return forEachBatch(roleid,
+            userids,
+            (batch, result) ->
+            {
+                long found = userrepos.countByUseridIn(batch);
+                // the users having the role are the combinations deleted, to be audited
+                List<Long> members = auditLog.isEnabled() ? userrepos.findUseridsWithRole(roleid,
+                    batch) : Collections.emptyList();
+                userrepos.incrementVersionsWithRole(roleid,
+                    batch);
+                int deleted = userrepos.deleteUserRolesForUsers(roleid,
+                    batch);
+                if (deleted > 0)
+                {
+                    roleMembership.removedAll(roleid,
+                        batch);
+                    auditLog.recordedAll("userroles",
+                        userRolesKeys(members,
+                            roleid),
+                        "DELETE");
+                }
+
+                result.setDeleted(result.getDeleted() + deleted);
+                result.setSkipped(result.getSkipped() + found - deleted);
+                result.setMissing(result.getMissing() + batch.size() - found);
+            });
+    }
+
+    /**
+     * Reads the user ids in batches of BATCH_SIZE and runs the given work on each batch in its own transaction,
+     * timing each batch. Ids repeated within a batch are only counted once; a null id counts as missing.
+     *
+     * @param roleid  The primary key (long) of the role, checked before anything is read
+     * @param userids The user ids to read
+     * @param work    The statements to run for one batch, adding their counts to the result
+     * @return The counts and batch durations of the whole request
+     */
+    private RoleAssignmentResult forEachBatch(
+        long roleid,
+        Iterator<Long> userids,
+        BiConsumer<Set<Long>, RoleAssignmentResult> work)
+    {
+        roleService.findRoleById(roleid);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        RoleAssignmentResult result = new RoleAssignmentResult(roleid);
+        long start = System.nanoTime();
+
+        boolean more = true;
+        while (more)
+        {
+            Set<Long> batch = new LinkedHashSet<>();
+            int read = 0;
+            int nulls = 0;
+            try
+            {
+                while (read < BATCH_SIZE && userids.hasNext())
+                {
+                    Long userid = userids.next();
+                    read++;
+                    if (userid != null)
+                    {
+                        batch.add(userid);
+                    } else
+                    {
+                        nulls++;
+                    }
+                }
+                more = read == BATCH_SIZE;
+            } catch (RuntimeException e)
+            {
+                result.setError("User id at position " + (result.getReceived() + read) + " could not be read, stopped: " + NestedExceptionUtils.getMostSpecificCause(e)
+                    .getMessage());
+                more = false;
+            }
+            result.setReceived(result.getReceived() + read);
+            result.setMissing(result.getMissing() + nulls);
+            // an id repeated within the batch is only changed once, the repeats are skipped
+            result.setSkipped(result.getSkipped() + read - nulls - batch.size());
+
+            if (!batch.isEmpty())
+            {
+                long batchStart = System.nanoTime();
+                transactionTemplate.executeWithoutResult(status -> work.accept(batch,
+                    result));
+                result.addBatchMillis((System.nanoTime() - batchStart) / 1_000_000);
+            }
+        }
+
+        result.setTotalMillis((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * The audit log keys of the user role combinations of these users with the role
+     *
+     * @param userids The primary keys of the users
+     * @param roleid  The primary key (long) of the role
+     * @return List of userid:roleid keys
+     */
+    private static List<String> userRolesKeys(
+        Collection<Long> userids,
+        long roleid)
+    {
+        List<String> keys = new ArrayList<>(userids.size());
+        for (long userid : userids)
+        {
+            keys.add(AuditLogListener.userRolesKey(userid,
+                roleid));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,217 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.CacheStats;
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.repository.RoleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the id and name of every role in memory so role lookups do not go to the database.
+ * Roles are a small table that rarely changes, so the whole table is cached and read back in one query
+ * the first time a lookup finds the cache empty.
+ * <p>
+ * Anything changing the roles table must call {@link #invalidate()}.
+ */
+@Component
+public class RoleCache
+{
+    /**
+     * The role names of the cache keyed by role id, along with the role ids keyed by upper-cased name.
+     * Null when the cache is empty. Never changed once built, a new one is built instead.
+     */
+    private volatile Entries entries;
+
+    /**
+     * Incremented on every invalidation. A load only keeps its result if no invalidation happened while it ran,
+     * otherwise the load may have read the roles from before the change.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The number of lookups (long) answered by the cache
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The number of lookups (long) that found the cache empty
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The number of times (long) the cache was filled from the database
+     */
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * The number of times (long) the cache was emptied
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Connects the cache to the Role table
+     */
+    @Autowired
+    private RoleRepository rolerepos;
+
+    /**
+     * Fills the cache once the application, including the seed data, is up
+     * so the first requests do not pay for it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload()
+    {
+        entries();
+    }
+
+    /**
+     * Checks if a role with the given id exists
+     *
+     * @param roleid The primary key (long) of the role
+     * @return true if the role exists
+     */
+    public boolean containsId(long roleid)
+    {
+        return entries().namesById.containsKey(roleid);
+    }
+
+    /**
+     * Finds the id of the role with the given name, ignoring case
+     *
+     * @param name The name (String) of the role
+     * @return The primary key of the role, null if no role has that name
+     */
+    public Long findIdByName(String name)
+    {
+        return entries().idsByName.get(name.toUpperCase());
+    }
+
+    /**
+     * Empties the cache. The next lookup reads the roles again.
+     * <p>
+     * When called inside of a transaction, the cache is emptied again once the transaction completes
+     * since a lookup made before the commit may have refilled it with the old roles.
+     */
+    public void invalidate()
+    {
+        evict();
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    evict();
+                }
+            });
+        }
+    }
+
+    /**
+     * The current counters of the cache
+     *
+     * @return The hits, misses, loads, evictions and size of the cache
+     */
+    public CacheStats getStats()
+    {
+        Entries current = entries;
+        return new CacheStats("roles",
+            current == null ? 0 : current.namesById.size(),
+            hits.get(),
+            misses.get(),
+            loads.get(),
+            evictions.get());
+    }
+
+    /**
+     * Empties the cache and makes any load running now throw away its result
+     */
+    private void evict()
+    {
+        synchronized (this)
+        {
+            generation.incrementAndGet();
+            entries = null;
+        }
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * Returns the entries of the cache, reading them from the database if the cache is empty
+     *
+     * @return The entries of the cache
+     */
+    private Entries entries()
+    {
+        Entries current = entries;
+        if (current != null)
+        {
+            hits.incrementAndGet();
+            return current;
+        }
+
+        misses.incrementAndGet();
+        long loadGeneration = generation.get();
+        Map<Long, String> namesById = new HashMap<>();
+        Map<String, Long> idsByName = new HashMap<>();
+        for (Role r : rolerepos.findAll())
+        {
+            namesById.put(r.getRoleid(),
+                r.getName());
+            idsByName.put(r.getName(),
+                r.getRoleid());
+        }
+        Entries loaded = new Entries(namesById,
+            idsByName);
+        loads.incrementAndGet();
+
+        synchronized (this)
+        {
+            if (generation.get() == loadGeneration)
+            {
+                entries = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * The contents of the cache, both maps built from the same read of the roles table
+     */
+    private static class Entries
+    {
+        /**
+         * Role names keyed by role id
+         */
+        private final Map<Long, String> namesById;
+
+        /**
+         * Role ids keyed by upper-cased role name
+         */
+        private final Map<String, Long> idsByName;
+
+        /**
+         * Given the maps, create the entries of the cache
+         *
+         * @param namesById Role names keyed by role id
+         * @param idsByName Role ids keyed by upper-cased role name
+         */
+        private Entries(
+            Map<Long, String> namesById,
+            Map<String, Long> idsByName)
+        {
+            this.namesById = Collections.unmodifiableMap(namesById);
+            this.idsByName = Collections.unmodifiableMap(idsByName);
+        }
+    }
+}
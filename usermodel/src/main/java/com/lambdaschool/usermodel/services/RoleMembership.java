@@ -0,0 +1,661 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.repository.UserRepository;
+import com.lambdaschool.usermodel.views.UserIdRole;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+/**
+ * Which users have which roles, kept in memory so authorization checks and role member lists need no query.
+ * <p>
+ * The users of each role are kept as a roaring bitmap of user ids, which keeps the ids in order for paging.
+ * The roles of each user are kept as a mask of bits in a map of primitive longs, one bit for each of the first 64 roles
+ * that have users, so checking a user for one of them is a hash lookup and a bit test without any allocation.
+ * Checks for the roles after those, which no deployment has, are answered from the bitmap of the role.
+ * <p>
+ * The index is read from userroles in the background once the application is up. Changes through the entities are
+ * passed on by RoleMembershipListener; UserServiceImpl and RoleAssignmentServiceImpl pass on the ones they make with
+ * plain queries. Changes are applied once their transaction commits. Until the index is read, callers go to
+ * the database. Set usermodel.membership.enabled=false to never read it.
+ */
+@Component
+public class RoleMembership
+{
+    /**
+     * The number of roles (int) that get a bit in the role masks of the users
+     */
+    private static final int MAX_ROLE_BITS = 64;
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleMembership.class);
+
+    /**
+     * Changes are made under the write lock. Membership checks read without locking and only take the read lock
+     * when a change happened while they read; member lists take the read lock.
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * The user ids of the users of each role, keyed by role id
+     */
+    private Map<Long, Roaring64NavigableMap> usersByRole = new HashMap<>();
+
+    /**
+     * The role id (long) at each bit of the role masks. Never changed, a new role puts a longer copy in place.
+     */
+    private long[] roleBits = new long[0];
+
+    /**
+     * The role mask of each user with roles, keyed by user id
+     */
+    private RoleMasks rolesByUser = new RoleMasks();
+
+    /**
+     * The changes committed while the index is read, applied again once it is read.
+     * Null when the index is not being read.
+     */
+    private List<Change> changesDuringBuild;
+
+    /**
+     * True (boolean) once the index holds every user role combination
+     */
+    private volatile boolean ready = false;
+
+    /**
+     * Whether (boolean) to keep the index at all
+     */
+    @Value("${usermodel.membership.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Connects the index to the UserRoles table
+     */
+    @Autowired
+    private UserRepository userrepos;
+
+    /**
+     * Used to read the index in one read-only transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Reads the index in the background
+     */
+    @Autowired
+    private TaskExecutor taskExecutor;
+
+    /**
+     * Starts reading the index once the application, including the seed data, is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground()
+    {
+        if (enabled)
+        {
+            taskExecutor.execute(this::build);
+        }
+    }
+
+    /**
+     * Checks if the index holds every user role combination and can answer
+     *
+     * @return true once the index has been read from the database
+     */
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * Checks if the user has the role
+     *
+     * @param userid The primary key (long) of the user
+     * @param roleid The primary key (long) of the role
+     * @return true if the user has the role, false if not or if either does not exist
+     */
+    public boolean hasRole(
+        long userid,
+        long roleid)
+    {
+        long stamp = lock.tryOptimisticRead();
+        int bit = bitOf(roleBits,
+            roleid);
+        long mask = rolesByUser.get(userid);
+        if (bit >= 0 && lock.validate(stamp))
+        {
+            return (mask & 1L << bit) != 0;
+        }
+
+        // changed while reading, or a role without a bit
+        stamp = lock.readLock();
+        try
+        {
+            bit = bitOf(roleBits,
+                roleid);
+            if (bit >= 0)
+            {
+                return (rolesByUser.get(userid) & 1L << bit) != 0;
+            }
+            Roaring64NavigableMap users = usersByRole.get(roleid);
+            return users != null && users.contains(userid);
+        } finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * One page of the users of the role, ordered by user id
+     *
+     * @param roleid The primary key (long) of the role
+     * @param after  The user id (long) of the last user of the previous page, 0 for the first page
+     * @param size   The most user ids (int) in the page
+     * @return The user ids (long) of the page, empty if there are no more or the role does not exist
+     */
+    public long[] findMembers(
+        long roleid,
+        long after,
+        int size)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            Roaring64NavigableMap users = usersByRole.get(roleid);
+            if (users == null)
+            {
+                return new long[0];
+            }
+            // the number of users up to and including after is the position of the first one after it
+            long first = users.rankLong(after);
+            long end = Math.min(users.getLongCardinality(),
+                first + size);
+            long[] page = new long[(int) Math.max(0,
+                end - first)];
+            for (int i = 0; i < page.length; i++)
+            {
+                page[i] = users.select(first + i);
+            }
+            return page;
+        } finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds the user role combination once the current transaction commits
+     *
+     * @param userid The primary key (long) of the user
+     * @param roleid The primary key (long) of the role
+     */
+    public void added(
+        long userid,
+        long roleid)
+    {
+        afterCommit(() -> change(new Change(userid,
+            roleid,
+            true)));
+    }
+
+    /**
+     * Removes the user role combination once the current transaction commits
+     *
+     * @param userid The primary key (long) of the user
+     * @param roleid The primary key (long) of the role
+     */
+    public void removed(
+        long userid,
+        long roleid)
+    {
+        afterCommit(() -> change(new Change(userid,
+            roleid,
+            false)));
+    }
+
+    /**
+     * Gives the role to all the users once the current transaction commits
+     *
+     * @param roleid  The primary key (long) of the role
+     * @param userids The primary keys of the users, which must exist
+     */
+    public void addedAll(
+        long roleid,
+        Collection<Long> userids)
+    {
+        List<Long> copy = new ArrayList<>(userids);
+        afterCommit(() ->
+        {
+            for (long userid : copy)
+            {
+                change(new Change(userid,
+                    roleid,
+                    true));
+            }
+        });
+    }
+
+    /**
+     * Takes the role away from all the users once the current transaction commits
+     *
+     * @param roleid  The primary key (long) of the role
+     * @param userids The primary keys of the users, users without the role are skipped
+     */
+    public void removedAll(
+        long roleid,
+        Collection<Long> userids)
+    {
+        List<Long> copy = new ArrayList<>(userids);
+        afterCommit(() ->
+        {
+            for (long userid : copy)
+            {
+                change(new Change(userid,
+                    roleid,
+                    false));
+            }
+        });
+    }
+
+    /**
+     * Reads every user role combination into a new index and puts it in place of the current one.
+     * Changes committed while reading are applied again on top, as the read may or may not have seen them.
+     */
+    public void build()
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            if (changesDuringBuild != null)
+            {
+                return;
+            }
+            changesDuringBuild = new ArrayList<>();
+        } finally
+        {
+            lock.unlockWrite(stamp);
+        }
+
+        Map<Long, Roaring64NavigableMap> builtUsersByRole = new HashMap<>();
+        long[][] builtRoleBits = {new long[0]};
+        RoleMasks builtRolesByUser = new RoleMasks();
+        try
+        {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            transactionTemplate.executeWithoutResult(status ->
+            {
+                try (Stream<UserIdRole> rows = userrepos.streamAllRoleIdsByOrderByUserid())
+                {
+                    rows.forEach(row -> builtRoleBits[0] = apply(builtUsersByRole,
+                        builtRoleBits[0],
+                        builtRolesByUser,
+                        new Change(row.getUserid(),
+                            row.getRoleid(),
+                            true)));
+                }
+            });
+            for (Roaring64NavigableMap users : builtUsersByRole.values())
+            {
+                users.runOptimize();
+            }
+        } catch (RuntimeException e)
+        {
+            logger.error("Role membership could not be read, membership is checked in the database",
+                e);
+            stamp = lock.writeLock();
+            changesDuringBuild = null;
+            lock.unlockWrite(stamp);
+            return;
+        }
+
+        stamp = lock.writeLock();
+        try
+        {
+            usersByRole = builtUsersByRole;
+            roleBits = builtRoleBits[0];
+            rolesByUser = builtRolesByUser;
+            for (Change change : changesDuringBuild)
+            {
+                roleBits = apply(usersByRole,
+                    roleBits,
+                    rolesByUser,
+                    change);
+            }
+            changesDuringBuild = null;
+            ready = true;
+            logger.info("Role membership read for {} users",
+                rolesByUser.size());
+        } finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Applies a committed change, keeping it to apply again if the index is being read
+     *
+     * @param change The user role combination added or removed
+     */
+    private void change(Change change)
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            if (changesDuringBuild != null)
+            {
+                changesDuringBuild.add(change);
+            }
+            roleBits = apply(usersByRole,
+                roleBits,
+                rolesByUser,
+                change);
+        } finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Applies a change to the given parts of an index
+     *
+     * @param usersByRole The user ids of the users of each role
+     * @param roleBits    The role id at each bit of the role masks
+     * @param rolesByUser The role mask of each user
+     * @param change      The user role combination added or removed
+     * @return The role ids of the bits, longer than the given ones if the role just got a bit
+     */
+    private static long[] apply(
+        Map<Long, Roaring64NavigableMap> usersByRole,
+        long[] roleBits,
+        RoleMasks rolesByUser,
+        Change change)
+    {
+        int bit = bitOf(roleBits,
+            change.roleid);
+        if (change.add)
+        {
+            usersByRole.computeIfAbsent(change.roleid,
+                roleid -> new Roaring64NavigableMap())
+                .addLong(change.userid);
+            if (bit < 0 && roleBits.length < MAX_ROLE_BITS)
+            {
+                bit = roleBits.length;
+                roleBits = Arrays.copyOf(roleBits,
+                    bit + 1);
+                roleBits[bit] = change.roleid;
+            }
+            if (bit >= 0)
+            {
+                rolesByUser.put(change.userid,
+                    rolesByUser.get(change.userid) | 1L << bit);
+            }
+        } else
+        {
+            Roaring64NavigableMap users = usersByRole.get(change.roleid);
+            if (users != null)
+            {
+                users.removeLong(change.userid);
+            }
+            if (bit >= 0)
+            {
+                rolesByUser.put(change.userid,
+                    rolesByUser.get(change.userid) & ~(1L << bit));
+            }
+        }
+        return roleBits;
+    }
+
+    /**
+     * Finds the bit of the role in the role masks
+     *
+     * @param roleBits The role id at each bit
+     * @param roleid   The primary key (long) of the role
+     * @return The bit (int) of the role, -1 if it has none
+     */
+    private static int bitOf(
+        long[] roleBits,
+        long roleid)
+    {
+        for (int i = 0; i < roleBits.length; i++)
+        {
+            if (roleBits[i] == roleid)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the change once the current transaction commits, see AfterCommit, unless the index is turned off
+     *
+     * @param change The change to the index
+     */
+    private void afterCommit(Runnable change)
+    {
+        if (enabled)
+        {
+            AfterCommit.run(change);
+        }
+    }
+
+    /**
+     * A user role combination added or removed
+     */
+    private static class Change
+    {
+        /**
+         * The primary key (long) of the user
+         */
+        private final long userid;
+
+        /**
+         * The primary key (long) of the role
+         */
+        private final long roleid;
+
+        /**
+         * True (boolean) if the combination was added, false if removed
+         */
+        private final boolean add;
+
+        /**
+         * Given the params, create a new change
+         *
+         * @param userid The primary key (long) of the user
+         * @param roleid The primary key (long) of the role
+         * @param add    True (boolean) if the combination was added, false if removed
+         */
+        Change(
+            long userid,
+            long roleid,
+            boolean add)
+        {
+            this.userid = userid;
+            this.roleid = roleid;
+            this.add = add;
+        }
+    }
+
+    /**
+     * The role mask (long) of each user, keyed by user id (long), without boxing either.
+     * <p>
+     * Keys and masks sit next to each other in one array, probed linearly from the hash of the key, and the array is
+     * at most half full. Users without roles are not kept: a mask of 0 removes the user. Key 0 marks a free slot,
+     * no user has id 0.
+     * <p>
+     * Reads never fail or loop while a change is made, they may only give a wrong answer, which RoleMembership
+     * then throws away: the array is read once and its length bounds every index.
+     */
+    static class RoleMasks
+    {
+        /**
+         * The key (long) of each slot at its even index and the mask (long) at the odd index after it
+         */
+        private long[] slots = new long[2 * 1024];
+
+        /**
+         * The number of users (int) kept
+         */
+        private int size = 0;
+
+        /**
+         * The role mask of the user
+         *
+         * @param userid The primary key (long) of the user
+         * @return The role mask (long) of the user, 0 if it has no roles
+         */
+        long get(long userid)
+        {
+            long[] table = slots;
+            int capacity = table.length / 2;
+            int slot = slotOf(userid,
+                capacity);
+            for (int probes = 0; probes < capacity; probes++)
+            {
+                long key = table[2 * slot];
+                if (key == userid)
+                {
+                    return table[2 * slot + 1];
+                }
+                if (key == 0)
+                {
+                    return 0;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            return 0;
+        }
+
+        /**
+         * Sets the role mask of the user, removing the user if the mask is 0
+         *
+         * @param userid The primary key (long) of the user
+         * @param mask   The role mask (long) of the user
+         */
+        void put(
+            long userid,
+            long mask)
+        {
+            int capacity = slots.length / 2;
+            int slot = slotOf(userid,
+                capacity);
+            while (slots[2 * slot] != 0 && slots[2 * slot] != userid)
+            {
+                slot = (slot + 1) & (capacity - 1);
+            }
+
+            if (slots[2 * slot] == userid)
+            {
+                if (mask != 0)
+                {
+                    slots[2 * slot + 1] = mask;
+                } else
+                {
+                    remove(slot);
+                }
+            } else if (mask != 0)
+            {
+                if (2 * (size + 1) > capacity)
+                {
+                    grow();
+                    put(userid,
+                        mask);
+                    return;
+                }
+                slots[2 * slot + 1] = mask;
+                slots[2 * slot] = userid;
+                size++;
+            }
+        }
+
+        /**
+         * The number of users kept
+         *
+         * @return The number of users (int) with at least one role
+         */
+        int size()
+        {
+            return size;
+        }
+
+        /**
+         * Empties the slot and moves the keys probed past it back, so none is cut off from its hash
+         *
+         * @param slot The slot (int) to empty
+         */
+        private void remove(int slot)
+        {
+            int capacity = slots.length / 2;
+            int free = slot;
+            int next = (free + 1) & (capacity - 1);
+            while (slots[2 * next] != 0)
+            {
+                int home = slotOf(slots[2 * next],
+                    capacity);
+                // moves the key back unless its home lies after the free slot, going round from the free slot
+                if (((next - home) & (capacity - 1)) >= ((next - free) & (capacity - 1)))
+                {
+                    slots[2 * free] = slots[2 * next];
+                    slots[2 * free + 1] = slots[2 * next + 1];
+                    free = next;
+                }
+                next = (next + 1) & (capacity - 1);
+            }
+            slots[2 * free] = 0;
+            slots[2 * free + 1] = 0;
+            size--;
+        }
+
+        /**
+         * Doubles the number of slots, putting every user in its new slot
+         */
+        private void grow()
+        {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            size = 0;
+            for (int i = 0; i < old.length; i += 2)
+            {
+                if (old[i] != 0)
+                {
+                    put(old[i],
+                        old[i + 1]);
+                }
+            }
+        }
+
+        /**
+         * The slot a key is probed from first
+         *
+         * @param userid   The key (long)
+         * @param capacity The number of slots (int), a power of 2
+         * @return The slot (int)
+         */
+        private static int slotOf(
+            long userid,
+            int capacity)
+        {
+            long hash = userid * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ hash >>> 32) & (capacity - 1);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.UserRoles;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+
+/**
+ * Keeps the role membership index current. Hibernate calls this listener for every user role combination it inserts
+ * or deletes, including the ones saved or deleted along with their user or role; the index is changed once
+ * the transaction commits.
+ * <p>
+ * Rows written with SQL that does not go through the UserRoles entity are not seen, their writers pass them on.
+ */
+@Component
+public class RoleMembershipListener
+{
+    /**
+     * The index to keep current, lazy as explained in AfterCommit
+     */
+    @Lazy
+    @Autowired
+    private RoleMembership roleMembership;
+
+    /**
+     * Adds the new user role combination to the index
+     *
+     * @param userRoles The user role combination inserted
+     */
+    @PostPersist
+    public void saved(UserRoles userRoles)
+    {
+        roleMembership.added(userRoles.getUser()
+                .getUserid(),
+            userRoles.getRole()
+                .getRoleid());
+    }
+
+    /**
+     * Takes the deleted user role combination out of the index
+     *
+     * @param userRoles The user role combination deleted
+     */
+    @PostRemove
+    public void removed(UserRoles userRoles)
+    {
+        roleMembership.removed(userRoles.getUser()
+                .getUserid(),
+            userRoles.getRole()
+                .getRoleid());
+    }
+}
@@ -1,6 +1,8 @@
 package com.lambdaschool.usermodel.services;
 
+import com.lambdaschool.usermodel.models.CacheStats;
 import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.views.RoleVersion;
 
 import java.util.List;
 
@@ -24,6 +26,27 @@ public interface RoleService
      */
     Role findRoleById(long id);
 
+    /**
+     * Returns the version of the Role with the given primary key and what its users add up to, without reading the users
+     *
+     * @param id The primary key (long) of the Role you seek
+     * @return The version of the Role and its users or throws an exception if not found
+     */
+    RoleVersion findVersionById(long id);
+
+    /**
+     * Returns one page of the users having the Role, from the role membership index once it is read
+     *
+     * @param id    The primary key (long) of the Role
+     * @param after The user id (long) of the last user of the previous page, 0 for the first page
+     * @param size  The most user ids (int) in the page, limited to 1000
+     * @return The user ids of the page ordered by user id, or throws an exception if the Role is not found
+     */
+    List<Long> findMemberIds(
+        long id,
+        long after,
+        int size);
+
     /**
      * Given a complete Role object, saved that Role object in the database.
      * If a primary key is provided, the record is completely replaced
@@ -68,4 +91,11 @@ public interface RoleService
         long id,
         Role role);
 
+    /**
+     * Returns the counters of the in-process role cache used by findRoleById and findByName
+     *
+     * @return The hits, misses, loads, evictions and size of the role cache
+     */
+    CacheStats getCacheStats();
+
 }
\ No newline at end of file
@@ -1,16 +1,23 @@
 package com.lambdaschool.usermodel.services;
 
+import com.lambdaschool.usermodel.models.CacheStats;
 import com.lambdaschool.usermodel.models.Role;
 import com.lambdaschool.usermodel.repository.RoleRepository;
 import com.lambdaschool.usermodel.repository.UserRepository;
+import com.lambdaschool.usermodel.views.RoleVersion;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityExistsException;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceContext;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 /**
  * Implements the RoleService Interface
@@ -19,6 +26,11 @@ import java.util.List;
 @Service(value = "roleService")
 public class RoleServiceImpl implements RoleService
 {
+    /**
+     * The largest page size allowed when paging through the users of a role
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
     /**
      * Connects this service to the Role Model
      */
@@ -37,6 +49,31 @@ public class RoleServiceImpl implements RoleService
     @Autowired
     private UserAuditing userAuditing;
 
+    /**
+     * Keeps the ids and names of the roles in memory so looking up a role does not go to the database
+     */
+    @Autowired
+    private RoleCache roleCache;
+
+    /**
+     * Which users have which roles, kept in memory
+     */
+    @Autowired
+    private RoleMembership roleMembership;
+
+    /**
+     * The change history, given the roles renamed here with a plain query
+     */
+    @Autowired
+    private AuditLog auditLog;
+
+    /**
+     * The entity manager of the current transaction. Used to hand out references to cached roles.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
     @Override
     public List<Role> findAll()
     {
@@ -52,21 +89,67 @@ public class RoleServiceImpl implements RoleService
     }
 
 
+    /*
+     * Role lookups are answered by the role cache. The role returned is a reference;
+     * its fields are only read from the database if they are used, so callers that only need the role
+     * to connect it to a user never query the roles table.
+     */
+    @Transactional(readOnly = true)
     @Override
     public Role findRoleById(long id)
     {
-        return rolerepos.findById(id)
+        if (!roleCache.containsId(id))
+        {
+            throw new EntityNotFoundException("Role id " + id + " not found!");
+        }
+        return entityManager.getReference(Role.class,
+            id);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public RoleVersion findVersionById(long id)
+    {
+        return rolerepos.findVersionByRoleid(id)
             .orElseThrow(() -> new EntityNotFoundException("Role id " + id + " not found!"));
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public List<Long> findMemberIds(
+        long id,
+        long after,
+        int size)
+    {
+        findRoleById(id); // see if id exists
+
+        int pageSize = Math.max(1,
+            Math.min(size,
+                MAX_PAGE_SIZE));
+        if (roleMembership.isReady())
+        {
+            return LongStream.of(roleMembership.findMembers(id,
+                after,
+                pageSize))
+                .boxed()
+                .collect(Collectors.toList());
+        }
+        return userrepos.findUseridsWithRoleAfter(id,
+            after,
+            PageRequest.of(0,
+                pageSize));
+    }
+
+    @Transactional(readOnly = true)
     @Override
     public Role findByName(String name)
     {
-        Role rr = rolerepos.findByNameIgnoreCase(name);
+        Long roleid = roleCache.findIdByName(name);
 
-        if (rr != null)
+        if (roleid != null)
         {
-            return rr;
+            return entityManager.getReference(Role.class,
+                roleid);
         } else
         {
             throw new EntityNotFoundException(name);
@@ -83,7 +166,9 @@ public class RoleServiceImpl implements RoleService
             throw new EntityExistsException("User Roles are not updated through Role.");
         }
 
-        return rolerepos.save(role);
+        Role newRole = rolerepos.save(role);
+        roleCache.invalidate();
+        return newRole;
     }
 
     /*
@@ -98,7 +183,10 @@ public class RoleServiceImpl implements RoleService
     {
         rolerepos.findById(id)
             .orElseThrow(() -> new EntityNotFoundException("Role id " + id + " not found!"));
+        // the users lose the role, see User.version
+        userrepos.incrementVersionsWithRole(id);
         rolerepos.deleteById(id);
+        roleCache.invalidate();
     }
 
     @Transactional
@@ -120,10 +208,23 @@ public class RoleServiceImpl implements RoleService
 
         Role newRole = findRoleById(id); // see if id exists
 
+        // the name of the role is part of its users, see User.version
+        userrepos.incrementVersionsWithRole(id);
         rolerepos.updateRoleName(userAuditing.getCurrentAuditor()
                 .get(),
             id,
             role.getName());
+        auditLog.recorded("roles",
+            Long.toString(id),
+            "UPDATE");
+        roleCache.invalidate();
         return findRoleById(id);
     }
+
+    @Transactional(readOnly = true)
+    @Override
+    public CacheStats getCacheStats()
+    {
+        return roleCache.getStats();
+    }
 }
@@ -0,0 +1,27 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.BulkImportResult;
+import com.lambdaschool.usermodel.models.User;
+
+import java.util.Iterator;
+
+/**
+ * The Service that imports large numbers of users at once.
+ * <p>
+ * Note: Roles must already exist. Emails are added along with their user.
+ */
+public interface UserImportService
+{
+    /**
+     * Saves the given users in batches, one transaction per batch. Users are read from the iterator
+     * one batch at a time so the whole import never has to be held in memory.
+     * <p>
+     * A user that cannot be saved, for example because its username is taken or one of its roles does not exist,
+     * is reported in the result and skipped. The rest of its batch is still saved.
+     * If the next user cannot be read from the iterator, the import stops there and the error is reported.
+     *
+     * @param users The users to import, in the same form as when adding a single user
+     * @return How many users were received, imported and rejected, along with why they were rejected
+     */
+    BulkImportResult saveAll(Iterator<User> users);
+}
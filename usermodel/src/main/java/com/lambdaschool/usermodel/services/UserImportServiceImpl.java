@@ -0,0 +1,359 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.BulkImportError;
+import com.lambdaschool.usermodel.models.BulkImportResult;
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserRoles;
+import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implements the UserImportService Interface
+ * <p>
+ * Unlike the other services this class is not @Transactional. Each batch of users commits in its own transaction
+ * so a failing batch does not undo the batches before it, and a large import never holds one huge transaction open.
+ */
+@Service(value = "userImportService")
+public class UserImportServiceImpl implements UserImportService
+{
+    /**
+     * Connects this service to the User table
+     */
+    @Autowired
+    private UserRepository userrepos;
+
+    /**
+     * Connects this service to the Role table
+     */
+    @Autowired
+    private RoleService roleService;
+
+    /**
+     * Checks the users against the constraints of the model, for example that emails are well formed
+     */
+    @Autowired
+    private Validator validator;
+
+    /**
+     * Used to run each batch in its own transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The entity manager of the current transaction. Used to persist, flush and clear each batch.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * The number of users (int) saved per transaction. Matches the JDBC batch size so each batch is sent in one go.
+     */
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Override
+    public BulkImportResult saveAll(Iterator<User> users)
+    {
+        BulkImportResult result = new BulkImportResult();
+        long index = 0;
+        boolean more = true;
+
+        while (more)
+        {
+            List<User> batch = new ArrayList<>(batchSize);
+            BulkImportError readError = null;
+            try
+            {
+                while (batch.size() < batchSize && users.hasNext())
+                {
+                    batch.add(users.next());
+                }
+                more = batch.size() == batchSize;
+            } catch (RuntimeException e)
+            {
+                // the rest of the input cannot be trusted once a record cannot be read
+                readError = new BulkImportError(index + batch.size(),
+                    null,
+                    "Record could not be read, import stopped: " + NestedExceptionUtils.getMostSpecificCause(e)
+                        .getMessage());
+                more = false;
+            }
+
+            if (!batch.isEmpty())
+            {
+                importBatch(batch,
+                    index,
+                    result);
+                index += batch.size();
+            }
+            if (readError != null)
+            {
+                result.setReceived(result.getReceived() + 1);
+                result.addError(readError);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Saves one batch of users in a single transaction. If the database rejects the batch,
+     * the users of the batch are saved again one per transaction so only the failing users are rejected.
+     *
+     * @param batch      The users to save
+     * @param firstIndex The position (long) of the first user of the batch in the import
+     * @param result     The report to add the outcome of the batch to
+     */
+    private void importBatch(
+        List<User> batch,
+        long firstIndex,
+        BulkImportResult result)
+    {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        result.setReceived(result.getReceived() + batch.size());
+
+        List<BulkImportError> errors = new ArrayList<>();
+        try
+        {
+            Integer imported = transactionTemplate.execute(status -> persistAll(batch,
+                firstIndex,
+                errors));
+            result.setImported(result.getImported() + imported);
+            errors.forEach(result::addError);
+        } catch (RuntimeException e)
+        {
+            for (int i = 0; i < batch.size(); i++)
+            {
+                User user = batch.get(i);
+                long index = firstIndex + i;
+                List<BulkImportError> userErrors = new ArrayList<>();
+                try
+                {
+                    Integer imported = transactionTemplate.execute(status -> persistAll(Collections.singletonList(user),
+                        index,
+                        userErrors));
+                    result.setImported(result.getImported() + imported);
+                    userErrors.forEach(result::addError);
+                } catch (RuntimeException ex)
+                {
+                    result.addError(new BulkImportError(index,
+                        user.getUsername(),
+                        NestedExceptionUtils.getMostSpecificCause(ex)
+                            .getMessage()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks and persists the given users. Roles and taken usernames and emails are looked up once for the whole list.
+     * Users that do not pass the checks are added to errors and skipped.
+     * Must be called inside of a transaction.
+     *
+     * @param users      The users to save
+     * @param firstIndex The position (long) of the first user in the import
+     * @param errors     The list to add the users that do not pass the checks to
+     * @return The number of users persisted
+     */
+    private int persistAll(
+        List<User> users,
+        long firstIndex,
+        List<BulkImportError> errors)
+    {
+        Map<Long, Role> roles = new HashMap<>();
+        for (Role r : roleService.findAll())
+        {
+            roles.put(r.getRoleid(),
+                r);
+        }
+
+        Set<String> usernames = new HashSet<>();
+        Set<String> primaryemails = new HashSet<>();
+        for (User user : users)
+        {
+            if (user.getUsername() != null)
+            {
+                usernames.add(user.getUsername());
+            }
+            if (user.getPrimaryemail() != null)
+            {
+                primaryemails.add(user.getPrimaryemail());
+            }
+        }
+        Set<String> takenUsernames = new HashSet<>();
+        if (!usernames.isEmpty())
+        {
+            takenUsernames.addAll(userrepos.findExistingUsernames(usernames));
+        }
+        Set<String> takenPrimaryemails = new HashSet<>();
+        if (!primaryemails.isEmpty())
+        {
+            takenPrimaryemails.addAll(userrepos.findExistingPrimaryemails(primaryemails));
+        }
+
+        int imported = 0;
+        for (int i = 0; i < users.size(); i++)
+        {
+            User user = users.get(i);
+            String error = checkUser(user,
+                roles,
+                takenUsernames,
+                takenPrimaryemails);
+
+            User newUser = null;
+            if (error == null)
+            {
+                newUser = newUser(user,
+                    roles);
+                error = checkConstraints(newUser);
+            }
+
+            if (error != null)
+            {
+                errors.add(new BulkImportError(firstIndex + i,
+                    user.getUsername(),
+                    error));
+            } else
+            {
+                entityManager.persist(newUser);
+                takenUsernames.add(newUser.getUsername());
+                takenPrimaryemails.add(newUser.getPrimaryemail());
+                imported++;
+            }
+        }
+
+        // send the batch to the database and let go of the saved users before the next batch
+        entityManager.flush();
+        entityManager.clear();
+        return imported;
+    }
+
+    /**
+     * Checks the given user against the required fields, the roles that exist and the usernames and emails already taken
+     *
+     * @param user               The user to check
+     * @param roles              All the roles keyed by roleid
+     * @param takenUsernames     The usernames already used
+     * @param takenPrimaryemails The primary emails already used
+     * @return Why the user cannot be saved, null if it can be
+     */
+    private String checkUser(
+        User user,
+        Map<Long, Role> roles,
+        Set<String> takenUsernames,
+        Set<String> takenPrimaryemails)
+    {
+        if (user.getUsername() == null || user.getPassword() == null || user.getPrimaryemail() == null)
+        {
+            return "username, password and primaryemail are required";
+        }
+        if (takenUsernames.contains(user.getUsername()))
+        {
+            return "User name " + user.getUsername() + " already exists!";
+        }
+        if (takenPrimaryemails.contains(user.getPrimaryemail()))
+        {
+            return "Primary email " + user.getPrimaryemail() + " already exists!";
+        }
+        for (UserRoles ur : user.getRoles())
+        {
+            if (ur.getRole() == null)
+            {
+                return "Role is required for each user role combination";
+            }
+            if (!roles.containsKey(ur.getRole()
+                .getRoleid()))
+            {
+                return "Role id " + ur.getRole()
+                    .getRoleid() + " not found!";
+            }
+        }
+        for (Useremail ue : user.getUseremails())
+        {
+            if (ue.getUseremail() == null)
+            {
+                return "useremail is required for each useremail";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the given user and its useremails against the validation constraints of the model
+     *
+     * @param user The new user to check
+     * @return The first constraint the user breaks, null if it breaks none
+     */
+    private String checkConstraints(User user)
+    {
+        Set<ConstraintViolation<Object>> violations = new LinkedHashSet<>(validator.validate((Object) user));
+        for (Useremail ue : user.getUseremails())
+        {
+            violations.addAll(validator.validate((Object) ue));
+        }
+
+        for (ConstraintViolation<Object> violation : violations)
+        {
+            return violation.getPropertyPath() + " " + violation.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * Builds the user to persist out of the given user, the same way adding a single user does
+     *
+     * @param user  The user as it was received
+     * @param roles All the roles keyed by roleid
+     * @return A new user with its roles and useremails
+     */
+    private User newUser(
+        User user,
+        Map<Long, Role> roles)
+    {
+        User newUser = new User();
+        newUser.setUsername(user.getUsername());
+        newUser.setPassword(user.getPassword());
+        newUser.setPrimaryemail(user.getPrimaryemail());
+
+        // a role listed twice for the same user would break the primary key of userroles
+        Set<Long> roleids = new LinkedHashSet<>();
+        for (UserRoles ur : user.getRoles())
+        {
+            roleids.add(ur.getRole()
+                .getRoleid());
+        }
+        for (long roleid : roleids)
+        {
+            newUser.addRole(roles.get(roleid));
+        }
+
+        for (Useremail ue : user.getUseremails())
+        {
+            newUser.getUseremails()
+                .add(new Useremail(newUser,
+                    ue.getUseremail()));
+        }
+        return newUser;
+    }
+}
@@ -2,8 +2,10 @@ package com.lambdaschool.usermodel.services;
 
 import com.lambdaschool.usermodel.models.User;
 import com.lambdaschool.usermodel.views.UserNameCountEmails;
+import com.lambdaschool.usermodel.views.UserSummary;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The Service that works with User Model.
@@ -22,13 +24,75 @@ public interface UserService
     List<User> findAll();
 
     /**
-     * A list of all users whose username contains the given substring
+     * Returns one page of users using keyset pagination
+     *
+     * @param userid The userid (long) of the last user of the previous page. Use 0 to get the first page.
+     * @param size   The maximum number of users (int) to return. Limited to between 1 and 1000.
+     * @return List of users whose userid is greater than the given userid, ordered by userid. If no users, empty list.
+     */
+    List<User> findAllAfter(
+        long userid,
+        int size);
+
+    /**
+     * Returns the id, username and primary email of all the users, ordered by userid
+     *
+     * @return List of user summaries. If no users, empty list.
+     */
+    List<UserSummary> findAllSummaries();
+
+    /**
+     * Returns one page of user summaries using keyset pagination
+     *
+     * @param userid The userid (long) of the last user of the previous page. Use 0 to get the first page.
+     * @param size   The maximum number of users (int) to return. Limited to between 1 and 1000.
+     * @return List of the summaries of the users whose userid is greater than the given userid, ordered by userid. If no users, empty list.
+     */
+    List<UserSummary> findSummariesAfter(
+        long userid,
+        int size);
+
+    /**
+     * Returns the id, username and primary email of the user with the given primary key
+     *
+     * @param id The primary key (long) of the user you seek
+     * @return The summary of the given user or throws an exception if not found.
+     */
+    UserSummary findSummaryById(long id);
+
+    /**
+     * Hands each user, ordered by userid, to the given action as it is read from the database.
+     * Users, useremails and roles are read from three cursors ordered by userid and merged as they are read, so the
+     * whole stream takes a fixed number of queries. H2 runs the queries lazily, reading the next rows as they are
+     * fetched instead of the whole result up front, so memory use stays the same no matter how many users there are.
+     *
+     * @param action What to do with each user. The user is detached, with its useremails and roles filled in,
+     *               and must not be saved.
+     */
+    void forEachUser(Consumer<User> action);
+
+    /**
+     * A list of all users whose username contains the given substring, best matches first
      *
      * @param username The substring (String) of the username of the Users you seek
      * @return List of users whose username contains the given substring
+     * @see #findByNameContaining(String, int)
      */
     List<User> findByNameContaining(String username);
 
+    /**
+     * A list of the users whose username contains the given substring, best matches first:
+     * the exact match, then usernames starting with the substring, then by how early the substring appears,
+     * then shorter usernames, then alphabetically.
+     *
+     * @param username The substring (String) of the username of the Users you seek
+     * @param limit    The most users (int) to return
+     * @return List of at most limit users whose username contains the given substring
+     */
+    List<User> findByNameContaining(
+        String username,
+        int limit);
+
     /**
      * Returns the user with the given primary key.
      *
@@ -37,6 +101,15 @@ public interface UserService
      */
     User findUserById(long id);
 
+    /**
+     * Returns the version of the user with the given primary key, without reading its useremails and roles.
+     * The version changes with every change to the user, its useremails or its roles.
+     *
+     * @param id The primary key (long) of the user you seek.
+     * @return The version (long) of the given user or throws an exception if not found.
+     */
+    long findVersionById(long id);
+
     /**
      * Returns the user with the given name
      *
@@ -62,6 +135,18 @@ public interface UserService
      */
     User save(User user);
 
+    /**
+     * Like save, but a user that exists is only replaced if it is still at the version the client read
+     *
+     * @param user    the user object to be saved
+     * @param version The version (Long) of the user the client read, or null to replace whatever version is current
+     * @return the saved user object including any automatically generated fields
+     * @throws javax.persistence.OptimisticLockException if the user is at another version by now
+     */
+    User save(
+        User user,
+        Long version);
+
     /**
      * Updates the provided fields in the user record referenced by the primary key.
      * <p>
@@ -76,6 +161,20 @@ public interface UserService
         User user,
         long id);
 
+    /**
+     * Like update, but only if the user is still at the version the client read
+     *
+     * @param user    just the user fields to be updated.
+     * @param id      The primary key (long) of the user to update
+     * @param version The version (Long) of the user the client read, or null to update whatever version is current
+     * @return the complete user object that got updated
+     * @throws javax.persistence.OptimisticLockException if the user is at another version by now
+     */
+    User update(
+        User user,
+        long id,
+        Long version);
+
     /*
      *
      * The following are new from initial
@@ -87,6 +186,7 @@ public interface UserService
      *
      * @param userid The user id of the user part of this user role combination
      * @param roleid The role id of the role part of this user role combination
+     * @throws javax.persistence.EntityNotFoundException if the user, the role or the combination does not exist
      */
     void deleteUserRole(
         long userid,
@@ -97,15 +197,37 @@ public interface UserService
      *
      * @param userid The user id of the user part of this user role combination
      * @param roleid The role id of the role part of this user role combination
+     * @throws javax.persistence.EntityNotFoundException if the user or the role does not exist
+     * @throws javax.persistence.EntityExistsException   if the combination already exists
      */
     void addUserRole(
         long userid,
         long roleid);
 
     /**
-     * List containing usernames and the number of emails they have - not counting the primary email
+     * Checks if the user has the role, from the role membership index once it is read
+     *
+     * @param userid The user id of the user
+     * @param roleid The role id of the role
+     * @return true if the user has the role, false if not or if either does not exist
+     */
+    boolean hasRole(
+        long userid,
+        long roleid);
+
+    /**
+     * List containing usernames and the number of emails they have - not counting the primary email.
+     * Users without emails are included with a count of 0.
      *
      * @return List (element type is the interface UserNameCountEmails) containing usernames and the number of emails they have - not counting the primary email
      */
     List<UserNameCountEmails> getCountUserEmails();
+
+    /**
+     * The username and the number of emails of one user - not counting the primary email
+     *
+     * @param userid The primary key (long) of the user you seek
+     * @return The username and number of emails of the given user or throws an exception if not found.
+     */
+    UserNameCountEmails getCountUserEmails(long userid);
 }
\ No newline at end of file
@@ -5,15 +5,40 @@ import com.lambdaschool.usermodel.models.User;
 import com.lambdaschool.usermodel.models.UserRoles;
 import com.lambdaschool.usermodel.models.Useremail;
 import com.lambdaschool.usermodel.repository.UserRepository;
+import com.lambdaschool.usermodel.repository.UseremailRepository;
+import com.lambdaschool.usermodel.views.UserEmailCount;
+import com.lambdaschool.usermodel.views.UserIdEmail;
+import com.lambdaschool.usermodel.views.UserIdRole;
 import com.lambdaschool.usermodel.views.UserNameCountEmails;
+import com.lambdaschool.usermodel.views.UserSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Cache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityExistsException;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceContext;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Implements the Userservice Interface
@@ -22,12 +47,28 @@ import java.util.List;
 @Service(value = "userService")
 public class UserServiceImpl implements UserService
 {
+    /**
+     * The largest page size allowed when paging through users
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The number of users (int) loaded per query when loading the results of a username search
+     */
+    private static final int SEARCH_LOAD_CHUNK = 1000;
+
     /**
      * Connects this service to the User table.
      */
     @Autowired
     private UserRepository userrepos;
 
+    /**
+     * Connects this service to the Useremail table
+     */
+    @Autowired
+    private UseremailRepository useremailrepos;
+
     /**
      * Connects this service to the Role table
      */
@@ -40,18 +81,116 @@ public class UserServiceImpl implements UserService
     @Autowired
     private UserAuditing userAuditing;
 
+    /**
+     * Counts the userroles and useremails rows written when replacing a user, see usermodel.user.replace.rows
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Which users have which roles, kept current with the user role combinations written here with plain queries
+     */
+    @Autowired
+    private RoleMembership roleMembership;
+
+    /**
+     * The change history, given the user role combinations written here with plain queries
+     */
+    @Autowired
+    private AuditLog auditLog;
+
+    /**
+     * The entity manager of the current transaction. Used to detach streamed users once they are processed.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Finds usernames containing a substring without scanning the users table
+     */
+    @Autowired
+    private UsernameIndex usernameIndex;
+
+    /**
+     * The number of useremails of every user, kept in memory
+     */
+    @Autowired
+    private EmailCounts emailCounts;
+
+    @Transactional(readOnly = true)
+    @Override
     public User findUserById(long id) throws EntityNotFoundException
     {
         return userrepos.findById(id)
             .orElseThrow(() -> new EntityNotFoundException("User id " + id + " not found!"));
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public long findVersionById(long id)
+    {
+        return userrepos.findVersionByUserid(id)
+            .orElseThrow(() -> new EntityNotFoundException("User id " + id + " not found!"));
+    }
+
+    @Transactional(readOnly = true)
     @Override
     public List<User> findByNameContaining(String username)
     {
-        return userrepos.findByUsernameContainingIgnoreCase(username.toLowerCase());
+        return findByNameContaining(username,
+            Integer.MAX_VALUE);
+    }
+
+    /*
+     * Substrings of at least 3 characters are looked up in the username index once it is built.
+     * Shorter substrings, or any substring while the index is still being built, go to the database
+     * and are put in the same order.
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public List<User> findByNameContaining(
+        String username,
+        int limit)
+    {
+        String name = username.toLowerCase();
+
+        if (name.length() < UsernameIndex.GRAM || !usernameIndex.isReady())
+        {
+            List<User> list = userrepos.findByUsernameContainingIgnoreCase(name);
+            Comparator<String> rank = UsernameIndex.rank(name);
+            list.sort((a, b) -> rank.compare(a.getUsername(),
+                b.getUsername()));
+            return list.size() > limit ? new ArrayList<>(list.subList(0,
+                limit)) : list;
+        }
+
+        List<Long> userids = usernameIndex.search(name,
+            limit);
+
+        // load the users a chunk at a time and put them back in rank order
+        Map<Long, User> users = new HashMap<>();
+        for (int i = 0; i < userids.size(); i += SEARCH_LOAD_CHUNK)
+        {
+            userrepos.findAllById(userids.subList(i,
+                Math.min(i + SEARCH_LOAD_CHUNK,
+                    userids.size())))
+                .forEach(u -> users.put(u.getUserid(),
+                    u));
+        }
+
+        List<User> list = new ArrayList<>(userids.size());
+        for (long userid : userids)
+        {
+            User u = users.get(userid);
+            if (u != null)
+            {
+                list.add(u);
+            }
+        }
+        return list;
     }
 
+    @Transactional(readOnly = true)
     @Override
     public List<User> findAll()
     {
@@ -66,6 +205,98 @@ public class UserServiceImpl implements UserService
         return list;
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public List<User> findAllAfter(
+        long userid,
+        int size)
+    {
+        int pageSize = Math.max(1,
+            Math.min(size,
+                MAX_PAGE_SIZE));
+        return userrepos.findByUseridGreaterThanOrderByUseridAsc(userid,
+            PageRequest.of(0,
+                pageSize));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<UserSummary> findAllSummaries()
+    {
+        return userrepos.findSummariesByOrderByUseridAsc();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<UserSummary> findSummariesAfter(
+        long userid,
+        int size)
+    {
+        int pageSize = Math.max(1,
+            Math.min(size,
+                MAX_PAGE_SIZE));
+        return userrepos.findSummariesByUseridGreaterThanOrderByUseridAsc(userid,
+            PageRequest.of(0,
+                pageSize));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public UserSummary findSummaryById(long id)
+    {
+        return userrepos.findSummaryByUserid(id)
+            .orElseThrow(() -> new EntityNotFoundException("User id " + id + " not found!"));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public void forEachUser(Consumer<User> action)
+    {
+        // the few roles are looked up here so the userroles stream needs no join, as in ExportServiceImpl
+        Map<Long, Role> rolesById = new HashMap<>();
+        for (Role role : roleService.findAll())
+        {
+            rolesById.put(role.getRoleid(),
+                role);
+        }
+
+        LazyQueryExecution.set(entityManager,
+            true);
+        try (Stream<User> users = userrepos.streamAllByOrderByUserid();
+             Stream<UserIdEmail> useremails = useremailrepos.streamAllByOrderByUserid();
+             Stream<UserIdRole> roles = userrepos.streamAllRoleIdsByOrderByUserid())
+        {
+            UseridCursor<UserIdEmail> emailCursor = new UseridCursor<>(useremails.iterator(),
+                UserIdEmail::getUserid);
+            UseridCursor<UserIdRole> roleCursor = new UseridCursor<>(roles.iterator(),
+                UserIdRole::getUserid);
+
+            Iterator<User> userIterator = users.iterator();
+            while (userIterator.hasNext())
+            {
+                User user = userIterator.next();
+                // detached first, so the collections filled from the cursors are never loaded or flushed
+                entityManager.detach(user);
+                user.setUseremails(emailCursor.takeAll(user.getUserid(),
+                    row ->
+                    {
+                        Useremail useremail = new Useremail(user,
+                            row.getUseremail());
+                        useremail.setUseremailid(row.getUseremailid());
+                        return useremail;
+                    }));
+                user.setRoles(roleCursor.takeAll(user.getUserid(),
+                    row -> new UserRoles(user,
+                        rolesById.get(row.getRoleid()))));
+                action.accept(user);
+            }
+        } finally
+        {
+            LazyQueryExecution.set(entityManager,
+                false);
+        }
+    }
+
     @Transactional
     @Override
     public void delete(long id)
@@ -75,6 +306,7 @@ public class UserServiceImpl implements UserService
         userrepos.deleteById(id);
     }
 
+    @Transactional(readOnly = true)
     @Override
     public User findByName(String name)
     {
@@ -90,24 +322,39 @@ public class UserServiceImpl implements UserService
     @Override
     public User save(User user)
     {
-        User newUser = new User();
+        return save(user,
+            null);
+    }
 
+    @Transactional
+    @Override
+    public User save(
+        User user,
+        Long version)
+    {
         if (user.getUserid() != 0)
         {
-            User oldUser = userrepos.findById(user.getUserid())
+            // replacing a user: only the fields, roles and emails that differ are written
+            User currentUser = userrepos.findById(user.getUserid())
                 .orElseThrow(() -> new EntityNotFoundException("User id " + user.getUserid() + " not found!"));
+            checkVersion(currentUser,
+                version);
 
-            // delete the roles for the old user we are replacing
-            for (UserRoles ur : oldUser.getRoles())
-            {
-                deleteUserRole(ur.getUser()
-                        .getUserid(),
-                    ur.getRole()
-                        .getRoleid());
-            }
-            newUser.setUserid(user.getUserid());
+            currentUser.setUsername(user.getUsername()
+                .toLowerCase());
+            currentUser.setPassword(user.getPassword());
+            currentUser.setPrimaryemail(user.getPrimaryemail()
+                .toLowerCase());
+            replaceRoles(currentUser,
+                user.getRoles());
+            replaceUseremails(currentUser,
+                user.getUseremails());
+
+            return userrepos.save(currentUser);
         }
 
+        User newUser = new User();
+
         newUser.setUsername(user.getUsername()
             .toLowerCase());
         newUser.setPassword(user.getPassword());
@@ -116,24 +363,12 @@ public class UserServiceImpl implements UserService
 
         newUser.getRoles()
             .clear();
-        if (user.getUserid() == 0)
+        for (UserRoles ur : user.getRoles())
         {
-            for (UserRoles ur : user.getRoles())
-            {
-                Role newRole = roleService.findRoleById(ur.getRole()
-                    .getRoleid());
+            Role newRole = roleService.findRoleById(ur.getRole()
+                .getRoleid());
 
-                newUser.addRole(newRole);
-            }
-        } else
-        {
-            // add the new roles for the user we are replacing
-            for (UserRoles ur : user.getRoles())
-            {
-                addUserRole(newUser.getUserid(),
-                    ur.getRole()
-                        .getRoleid());
-            }
+            newUser.addRole(newRole);
         }
 
         newUser.getUseremails()
@@ -153,8 +388,22 @@ public class UserServiceImpl implements UserService
     public User update(
         User user,
         long id)
+    {
+        return update(user,
+            id,
+            null);
+    }
+
+    @Transactional
+    @Override
+    public User update(
+        User user,
+        long id,
+        Long version)
     {
         User currentUser = findUserById(id);
+        checkVersion(currentUser,
+            version);
 
         if (user.getUsername() != null)
         {
@@ -176,38 +425,220 @@ public class UserServiceImpl implements UserService
         if (user.getRoles()
             .size() > 0)
         {
-            // delete the roles for the old user we are replacing
-            for (UserRoles ur : currentUser.getRoles())
+            replaceRoles(currentUser,
+                user.getRoles());
+        }
+
+        if (user.getUseremails()
+            .size() > 0)
+        {
+            replaceUseremails(currentUser,
+                user.getUseremails());
+        }
+
+        return userrepos.save(currentUser);
+    }
+
+    /**
+     * Gives the user exactly the roles of the given user role combinations.
+     * Only the combinations the user does not have yet are inserted and only the ones no longer wanted are deleted.
+     *
+     * @param currentUser The user, as loaded from the database, whose roles are replaced
+     * @param roles       The user role combinations the user should end up with. Roles must already exist.
+     */
+    private void replaceRoles(
+        User currentUser,
+        List<UserRoles> roles)
+    {
+        Set<Long> wanted = new LinkedHashSet<>();
+        for (UserRoles ur : roles)
+        {
+            wanted.add(roleService.findRoleById(ur.getRole()
+                    .getRoleid())
+                .getRoleid());
+        }
+
+        Set<Long> changed = new HashSet<>();
+        Set<Long> kept = new HashSet<>();
+        int deleted = 0;
+        Iterator<UserRoles> current = currentUser.getRoles()
+            .iterator();
+        while (current.hasNext())
+        {
+            long roleid = current.next()
+                .getRole()
+                .getRoleid();
+            if (wanted.contains(roleid) && kept.add(roleid))
             {
-                deleteUserRole(ur.getUser()
-                        .getUserid(),
-                    ur.getRole()
-                        .getRoleid());
+                continue;
             }
+            // removing the combination from the user deletes it, see User.roles
+            current.remove();
+            changed.add(roleid);
+            deleted++;
+        }
 
-            // add the new roles for the user we are replacing
-            for (UserRoles ur : user.getRoles())
+        int inserted = 0;
+        for (long roleid : wanted)
+        {
+            if (!kept.contains(roleid))
             {
-                addUserRole(currentUser.getUserid(),
-                    ur.getRole()
-                        .getRoleid());
+                currentUser.addRole(roleService.findRoleById(roleid));
+                changed.add(roleid);
+                inserted++;
             }
         }
 
-        if (user.getUseremails()
-            .size() > 0)
+        rowsTouched("userroles",
+            "delete",
+            deleted);
+        rowsTouched("userroles",
+            "insert",
+            inserted);
+        incrementVersionIfChanged(currentUser,
+            deleted + inserted);
+
+        // Role.users is the inverse side, Hibernate does not evict it from the second-level cache on its own
+        Cache cache = entityManager.getEntityManagerFactory()
+            .getCache()
+            .unwrap(Cache.class);
+        for (long roleid : changed)
         {
-            currentUser.getUseremails()
-                .clear();
-            for (Useremail ue : user.getUseremails())
+            cache.evictCollectionData(Role.class.getName() + ".users",
+                roleid);
+        }
+    }
+
+    /**
+     * Gives the user exactly the given useremails.
+     * Emails the user already has are kept as they are, only the ones added or dropped are inserted or deleted.
+     *
+     * @param currentUser The user, as loaded from the database, whose useremails are replaced
+     * @param useremails  The useremails the user should end up with
+     */
+    private void replaceUseremails(
+        User currentUser,
+        List<Useremail> useremails)
+    {
+        // the same address may be listed more than once, so count how many of each are wanted
+        Map<String, Integer> wanted = new LinkedHashMap<>();
+        for (Useremail ue : useremails)
+        {
+            wanted.merge(ue.getUseremail()
+                    .toLowerCase(),
+                1,
+                Integer::sum);
+        }
+
+        int deleted = 0;
+        Iterator<Useremail> current = currentUser.getUseremails()
+            .iterator();
+        while (current.hasNext())
+        {
+            String address = current.next()
+                .getUseremail()
+                .toLowerCase();
+            Integer count = wanted.get(address);
+            if (count != null)
+            {
+                if (count == 1)
+                {
+                    wanted.remove(address);
+                } else
+                {
+                    wanted.put(address,
+                        count - 1);
+                }
+            } else
+            {
+                current.remove();
+                deleted++;
+            }
+        }
+
+        int inserted = 0;
+        for (Map.Entry<String, Integer> address : wanted.entrySet())
+        {
+            for (int i = 0; i < address.getValue(); i++)
             {
                 currentUser.getUseremails()
                     .add(new Useremail(currentUser,
-                        ue.getUseremail()));
+                        address.getKey()));
+                inserted++;
             }
         }
 
-        return userrepos.save(currentUser);
+        rowsTouched("useremails",
+            "delete",
+            deleted);
+        rowsTouched("useremails",
+            "insert",
+            inserted);
+        incrementVersionIfChanged(currentUser,
+            deleted + inserted);
+    }
+
+    /**
+     * Turns the change away if the user is no longer at the version the client read. The user was read in this
+     * transaction, so a change committed after this check still fails when the user is written, see User.version.
+     *
+     * @param currentUser The user, as loaded from the database
+     * @param version     The version (Long) the client read, null if it did not say
+     * @throws OptimisticLockException if the user is at another version
+     */
+    private void checkVersion(
+        User currentUser,
+        Long version)
+    {
+        if (version != null && version != currentUser.getVersion())
+        {
+            throw new OptimisticLockException("User id " + currentUser.getUserid() + " is at version " + currentUser.getVersion() + ", not " + version,
+                null,
+                currentUser);
+        }
+    }
+
+    /**
+     * Counts up the version of the user if its roles or useremails changed. Hibernate only does so by itself for
+     * changes to the columns of the users table, and the roles and useremails are part of the user, see User.version.
+     *
+     * @param currentUser The user, as loaded from the database
+     * @param rows        The number of userroles or useremails rows (int) inserted or deleted
+     */
+    private void incrementVersionIfChanged(
+        User currentUser,
+        int rows)
+    {
+        if (rows > 0)
+        {
+            entityManager.lock(currentUser,
+                LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+    }
+
+    /**
+     * Adds to the count of rows written while replacing the roles or useremails of a user
+     *
+     * @param table     The table written to
+     * @param operation insert or delete
+     * @param rows      The number of rows (int) written
+     */
+    private void rowsTouched(
+        String table,
+        String operation,
+        int rows)
+    {
+        if (rows > 0)
+        {
+            Counter.builder("usermodel.user.replace.rows")
+                .description("userroles and useremails rows written when replacing the roles or useremails of a user")
+                .tags("table",
+                    table,
+                    "operation",
+                    operation)
+                .register(meterRegistry)
+                .increment(rows);
+        }
     }
 
     /*
@@ -216,32 +647,73 @@ public class UserServiceImpl implements UserService
      *
      */
 
+    /*
+     * Answered from the in-memory email counts once they are read, from the database until then.
+     */
+    @Transactional(readOnly = true)
     @Override
     public List<UserNameCountEmails> getCountUserEmails()
     {
+        if (emailCounts.isReady())
+        {
+            return emailCounts.findAll();
+        }
         return userrepos.getCountUserEmails();
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public UserNameCountEmails getCountUserEmails(long userid)
+    {
+        if (emailCounts.isReady())
+        {
+            return emailCounts.find(userid)
+                .orElseThrow(() -> new EntityNotFoundException("User id " + userid + " not found!"));
+        }
+        UserEmailCount count = userrepos.findEmailCountByUserid(userid)
+            .orElseThrow(() -> new EntityNotFoundException("User id " + userid + " not found!"));
+        return new UserNameCountEmails()
+        {
+            @Override
+            public String getUsernamerpt()
+            {
+                return count.getUsername();
+            }
+
+            @Override
+            public int getCountemails()
+            {
+                return (int) count.getCountemails();
+            }
+        };
+    }
+
     @Transactional
     @Override
     public void deleteUserRole(
         long userid,
         long roleid)
     {
-        userrepos.findById(userid)
-            .orElseThrow(() -> new EntityNotFoundException("User id " + userid + " not found!"));
+        // the role is checked against the role cache, the user only when nothing was deleted
         roleService.findRoleById(roleid);
 
-        if (userrepos.checkUserRolesCombo(userid,
-            roleid)
-            .getCount() > 0)
-        {
-            userrepos.deleteUserRoles(userid,
-                roleid);
-        } else
+        if (userrepos.deleteUserRoles(userid,
+            roleid) == 0)
         {
+            if (!userrepos.existsById(userid))
+            {
+                throw new EntityNotFoundException("User id " + userid + " not found!");
+            }
             throw new EntityNotFoundException("Role and User Combination Does Not Exists");
         }
+        // the roles are part of the user, see User.version
+        userrepos.incrementVersion(userid);
+        roleMembership.removed(userid,
+            roleid);
+        auditLog.recorded("userroles",
+            AuditLogListener.userRolesKey(userid,
+                roleid),
+            "DELETE");
     }
 
     @Transactional
@@ -250,21 +722,54 @@ public class UserServiceImpl implements UserService
         long userid,
         long roleid)
     {
-        userrepos.findById(userid)
-            .orElseThrow(() -> new EntityNotFoundException("User id " + userid + " not found!"));
+        // the role is checked against the role cache, the user only when nothing was inserted
         roleService.findRoleById(roleid);
 
-        if (userrepos.checkUserRolesCombo(userid,
-            roleid)
-            .getCount() <= 0)
+        int inserted;
+        try
         {
-            userrepos.insertUserRoles(userAuditing.getCurrentAuditor()
+            inserted = userrepos.insertUserRoles(userAuditing.getCurrentAuditor()
                     .get(),
                 userid,
                 roleid);
-        } else
+        } catch (DataIntegrityViolationException e)
+        {
+            // a concurrent request inserted the same combination first, the primary key of userroles turned this one away
+            throw new EntityExistsException("Role and User Combination Already Exists");
+        }
+
+        if (inserted == 0)
         {
+            if (!userrepos.existsById(userid))
+            {
+                throw new EntityNotFoundException("User id " + userid + " not found!");
+            }
             throw new EntityExistsException("Role and User Combination Already Exists");
         }
+        userrepos.incrementVersion(userid);
+        roleMembership.added(userid,
+            roleid);
+        auditLog.recorded("userroles",
+            AuditLogListener.userRolesKey(userid,
+                roleid),
+            "INSERT");
+    }
+
+    // a lookup of a few nanoseconds once the index is read, so it starts no transaction and MethodTimingAspect leaves
+    // it out; until then the query runs in the read-only transaction of the repository
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public boolean hasRole(
+        long userid,
+        long roleid)
+    {
+        if (roleMembership.isReady())
+        {
+            return roleMembership.hasRole(userid,
+                roleid);
+        }
+        return userrepos.checkUserRolesCombo(userid,
+            roleid)
+            .getCount() > 0;
     }
 }
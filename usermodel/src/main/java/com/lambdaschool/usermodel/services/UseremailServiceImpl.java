@@ -7,7 +7,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,6 +33,13 @@ public class UseremailServiceImpl implements UseremailService
     @Autowired
     private UserService userService;
 
+    /**
+     * The entity manager of the current transaction. Used to count up the version of the user of a changed useremail.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
     @Override
     public List<Useremail> findAll()
     {
@@ -44,6 +54,7 @@ public class UseremailServiceImpl implements UseremailService
         return list;
     }
 
+    @Transactional(readOnly = true)
     @Override
     public Useremail findUseremailById(long id)
     {
@@ -58,6 +69,7 @@ public class UseremailServiceImpl implements UseremailService
         if (useremailrepos.findById(id)
             .isPresent())
         {
+            incrementUserVersion(findUseremailById(id).getUser());
             useremailrepos.deleteById(id);
         } else
         {
@@ -76,6 +88,7 @@ public class UseremailServiceImpl implements UseremailService
         {
             Useremail useremail = findUseremailById(useremailid);
             useremail.setUseremail(emailaddress.toLowerCase());
+            incrementUserVersion(useremail.getUser());
             return useremailrepos.save(useremail);
         } else
         {
@@ -93,14 +106,28 @@ public class UseremailServiceImpl implements UseremailService
 
         Useremail newUserEmail = new Useremail(currentUser,
             emailaddress);
+        incrementUserVersion(currentUser);
         return useremailrepos.save(newUserEmail);
     }
 
+    /**
+     * Counts up the version of the user of a useremail being changed, as its useremails are part of the user,
+     * see User.version. Fails when the transaction commits if someone else changed the user in the meantime.
+     *
+     * @param user The user of the useremail, as loaded in this transaction
+     */
+    private void incrementUserVersion(User user)
+    {
+        entityManager.lock(user,
+            LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    }
+
     /*
      *
      * The following are new from initial
      *
      */
+    @Transactional(readOnly = true)
     @Override
     public List<Useremail> findByUserName(String username)
     {
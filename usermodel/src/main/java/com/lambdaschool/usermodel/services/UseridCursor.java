@@ -0,0 +1,70 @@
+package com.lambdaschool.usermodel.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reads rows ordered by userid, handing out the rows of one user at a time. Used to merge the useremails and roles
+ * of all users into a stream of users ordered by userid, so each user needs no queries of its own.
+ *
+ * @param <T> The type of the rows
+ */
+class UseridCursor<T>
+{
+    /**
+     * The rows not read yet
+     */
+    private final Iterator<T> rows;
+
+    /**
+     * Gives the user id of a row
+     */
+    private final ToLongFunction<T> userid;
+
+    /**
+     * The row read but not handed out yet, null if none
+     */
+    private T next;
+
+    /**
+     * Given the params, create a cursor
+     *
+     * @param rows   The rows, ordered by user id
+     * @param userid Gives the user id of a row
+     */
+    UseridCursor(
+        Iterator<T> rows,
+        ToLongFunction<T> userid)
+    {
+        this.rows = rows;
+        this.userid = userid;
+        this.next = rows.hasNext() ? rows.next() : null;
+    }
+
+    /**
+     * Hands out the rows of one user. Rows of users before it, which have no user, are skipped.
+     *
+     * @param id    The user id (long), at least that of the last call
+     * @param value The part of each row handed out
+     * @param <V>   The type of the part handed out
+     * @return The parts of the rows of the user, empty if it has none
+     */
+    <V> List<V> takeAll(
+        long id,
+        Function<T, V> value)
+    {
+        List<V> values = new ArrayList<>();
+        while (next != null && userid.applyAsLong(next) <= id)
+        {
+            if (userid.applyAsLong(next) == id)
+            {
+                values.add(value.apply(next));
+            }
+            next = rows.hasNext() ? rows.next() : null;
+        }
+        return values;
+    }
+}
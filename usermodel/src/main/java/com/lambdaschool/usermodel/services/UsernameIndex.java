@@ -0,0 +1,811 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.repository.UserRepository;
+import com.lambdaschool.usermodel.views.UserIdName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory trigram index of usernames, used to find the users whose username contains a substring
+ * without scanning the users table.
+ * <p>
+ * Every username is split into its overlapping 3 character pieces (trigrams). For each trigram and the position it
+ * is at, the index keeps the sorted list of users having it there. A search tries the substring at each position of
+ * the usernames in turn, from the start: the users having every trigram of the substring one after the other from
+ * that position are the ones whose username has the substring there. As usernames having the substring earlier rank
+ * first, the search stops after the first position by which it has found enough users, so a common substring costs
+ * about the users having it at the first few positions rather than all of them.
+ * Substrings shorter than 3 characters cannot be looked up and are left to the database.
+ * <p>
+ * The index is built in the background once the application is up and kept current by UsernameIndexListener,
+ * which passes on every committed change to a user. Until the index is built, searches go to the database.
+ * Set usermodel.search.index.enabled=false to never build it.
+ */
+@Component
+public class UsernameIndex
+{
+    /**
+     * The number of characters (int) in each piece of a username that is indexed
+     */
+    public static final int GRAM = 3;
+
+    /**
+     * How far (int) the position of a trigram is shifted up when packed with the trigram into a long
+     */
+    private static final int POSITION_SHIFT = 48;
+
+    /**
+     * The number of users (int) added to the index at a time while building it,
+     * so searches and changes are not held up for the whole build
+     */
+    private static final int BUILD_CHUNK = 10000;
+
+    private static final Logger logger = LoggerFactory.getLogger(UsernameIndex.class);
+
+    /**
+     * Searches read under the read lock, changes are made under the write lock
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The position of each user in userids and usernames, keyed by user id.
+     * Positions of removed users are not reused.
+     */
+    private final Map<Long, Integer> docs = new HashMap<>();
+
+    /**
+     * The user id (long) at each position
+     */
+    private long[] userids = new long[1024];
+
+    /**
+     * The username (String) at each position, null once the user is removed
+     */
+    private String[] usernames = new String[1024];
+
+    /**
+     * The next position (int) to hand out
+     */
+    private int nextDoc = 0;
+
+    /**
+     * The sorted positions of the users having each trigram at each position of their username,
+     * keyed by the trigram and its position packed into a long
+     */
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * The length (int) of the longest username ever added, so a search knows where to stop trying positions
+     */
+    private int longest = 0;
+
+    /**
+     * The user ids changed while the index is being built, so the build does not put back older names.
+     * Null when no build is running.
+     */
+    private Set<Long> changedDuringBuild;
+
+    /**
+     * True (boolean) once the index holds every user
+     */
+    private volatile boolean ready = false;
+
+    /**
+     * Whether (boolean) to build the index at all
+     */
+    @Value("${usermodel.search.index.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Connects the index to the User table
+     */
+    @Autowired
+    private UserRepository userrepos;
+
+    /**
+     * Used to read all the usernames in one read-only transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Runs the build in the background
+     */
+    @Autowired
+    private TaskExecutor taskExecutor;
+
+    /**
+     * Starts building the index once the application, including the seed data, is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground()
+    {
+        if (enabled)
+        {
+            taskExecutor.execute(this::build);
+        }
+    }
+
+    /**
+     * Reads every username and adds it to the index. Changes committed while the build runs are applied
+     * as they come and win over what the build read.
+     */
+    public void build()
+    {
+        lock.writeLock()
+            .lock();
+        try
+        {
+            changedDuringBuild = new HashSet<>();
+        } finally
+        {
+            lock.writeLock()
+                .unlock();
+        }
+
+        try
+        {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            transactionTemplate.executeWithoutResult(status ->
+            {
+                try (Stream<UserIdName> users = userrepos.streamAllUsernames())
+                {
+                    List<UserIdName> chunk = new ArrayList<>(BUILD_CHUNK);
+                    users.forEach(u ->
+                    {
+                        chunk.add(u);
+                        if (chunk.size() == BUILD_CHUNK)
+                        {
+                            addBuilt(chunk);
+                            chunk.clear();
+                        }
+                    });
+                    addBuilt(chunk);
+                }
+            });
+            ready = true;
+        } catch (RuntimeException e)
+        {
+            logger.error("Username index could not be built, username searches stay on the database",
+                e);
+        } finally
+        {
+            lock.writeLock()
+                .lock();
+            try
+            {
+                changedDuringBuild = null;
+            } finally
+            {
+                lock.writeLock()
+                    .unlock();
+            }
+        }
+    }
+
+    /**
+     * Checks if the index holds every user and can answer searches
+     *
+     * @return true if the index has been built
+     */
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * Adds the user to the index, or changes its username if it is already there
+     *
+     * @param userid   The primary key (long) of the user
+     * @param username The username (String) of the user
+     */
+    public void put(
+        long userid,
+        String username)
+    {
+        String name = username.toLowerCase();
+        lock.writeLock()
+            .lock();
+        try
+        {
+            if (changedDuringBuild != null)
+            {
+                changedDuringBuild.add(userid);
+            }
+            Integer doc = docs.get(userid);
+            if (doc == null)
+            {
+                add(userid,
+                    name);
+            } else if (!name.equals(usernames[doc]))
+            {
+                for (long gram : grams(usernames[doc]))
+                {
+                    removePosting(gram,
+                        doc);
+                }
+                usernames[doc] = name;
+                longest = Math.max(longest,
+                    name.length());
+                for (long gram : grams(name))
+                {
+                    postings.computeIfAbsent(gram,
+                        g -> new Postings())
+                        .add(doc);
+                }
+            }
+        } finally
+        {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Takes the user out of the index
+     *
+     * @param userid The primary key (long) of the user
+     */
+    public void remove(long userid)
+    {
+        lock.writeLock()
+            .lock();
+        try
+        {
+            if (changedDuringBuild != null)
+            {
+                changedDuringBuild.add(userid);
+            }
+            Integer doc = docs.remove(userid);
+            if (doc != null)
+            {
+                for (long gram : grams(usernames[doc]))
+                {
+                    removePosting(gram,
+                        doc);
+                }
+                usernames[doc] = null;
+            }
+        } finally
+        {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Finds the users whose username contains the given substring, best matches first.
+     * See rank(String) for the order. The substring is looked for at each position in turn, and only the best limit
+     * matches are kept while the users having it there are checked.
+     *
+     * @param substring The substring (String) to look for, at least GRAM characters long
+     * @param limit     The most user ids (int) to return
+     * @return The user ids of the matching users, in rank order
+     */
+    public List<Long> search(
+        String substring,
+        int limit)
+    {
+        String name = substring.toLowerCase();
+        if (name.length() < GRAM)
+        {
+            throw new IllegalArgumentException("Username searches need at least " + GRAM + " characters");
+        }
+
+        lock.readLock()
+            .lock();
+        try
+        {
+            TopMatches top = new TopMatches(usernames,
+                limit);
+            List<Postings> lists = new ArrayList<>();
+            // every match found at a later position ranks after the ones found so far, so once there are enough, stop
+            for (int start = 0; start + name.length() <= longest && !top.isFull(); start++)
+            {
+                lists.clear();
+                for (int i = 0; i + GRAM <= name.length(); i++)
+                {
+                    Postings p = postings.get(gram(name,
+                        i) | ((long) (start + i) << POSITION_SHIFT));
+                    if (p == null)
+                    {
+                        lists.clear();
+                        break;
+                    }
+                    lists.add(p);
+                }
+                if (lists.isEmpty())
+                {
+                    continue;
+                }
+
+                // intersect the smallest lists first so the candidates shrink as fast as possible
+                lists.sort(Comparator.comparingInt(p -> p.size));
+                int[] candidates = Arrays.copyOf(lists.get(0).docs,
+                    lists.get(0).size);
+                int count = candidates.length;
+                for (int i = 1; i < lists.size() && count > 0; i++)
+                {
+                    count = lists.get(i)
+                        .retainAll(candidates,
+                            count);
+                }
+
+                for (int i = 0; i < count; i++)
+                {
+                    String username = usernames[candidates[i]];
+                    // a username having the substring at an earlier position as well was kept or passed over there
+                    if (username.indexOf(name) == start)
+                    {
+                        top.offer(candidates[i],
+                            username.length() == name.length(),
+                            start);
+                    }
+                }
+            }
+
+            int[] best = top.sorted();
+            List<Long> found = new ArrayList<>(best.length);
+            for (int doc : best)
+            {
+                found.add(userids[doc]);
+            }
+            return found;
+        } finally
+        {
+            lock.readLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * The order of the usernames matching a substring: the exact match first, then usernames starting with
+     * the substring, then by how early the substring appears, then shorter usernames, then alphabetically.
+     * Also used to order searches answered by the database so both give the same order.
+     *
+     * @param substring The substring (String) searched for, in lowercase
+     * @return Comparator of usernames, in lowercase, that contain the substring
+     */
+    public static Comparator<String> rank(String substring)
+    {
+        return Comparator.comparing((String name) -> !name.equals(substring))
+            .thenComparingInt(name -> name.indexOf(substring))
+            .thenComparingInt(String::length)
+            .thenComparing(Comparator.naturalOrder());
+    }
+
+    /**
+     * Adds a chunk of users read by the build, skipping users already changed since the build started
+     *
+     * @param chunk The users read by the build
+     */
+    private void addBuilt(List<UserIdName> chunk)
+    {
+        lock.writeLock()
+            .lock();
+        try
+        {
+            for (UserIdName u : chunk)
+            {
+                if (!changedDuringBuild.contains(u.getUserid()) && !docs.containsKey(u.getUserid()))
+                {
+                    add(u.getUserid(),
+                        u.getUsername()
+                            .toLowerCase());
+                }
+            }
+        } finally
+        {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Gives a user not yet in the index the next position. Must hold the write lock.
+     *
+     * @param userid The primary key (long) of the user
+     * @param name   The username (String) of the user, in lowercase
+     */
+    private void add(
+        long userid,
+        String name)
+    {
+        if (nextDoc == userids.length)
+        {
+            userids = Arrays.copyOf(userids,
+                nextDoc * 2);
+            usernames = Arrays.copyOf(usernames,
+                nextDoc * 2);
+        }
+        int doc = nextDoc++;
+        userids[doc] = userid;
+        usernames[doc] = name;
+        longest = Math.max(longest,
+            name.length());
+        docs.put(userid,
+            doc);
+        for (long gram : grams(name))
+        {
+            postings.computeIfAbsent(gram,
+                g -> new Postings())
+                .add(doc);
+        }
+    }
+
+    /**
+     * Takes a position out of the list of a trigram, dropping the list once it is empty. Must hold the write lock.
+     *
+     * @param gram The trigram packed into a long
+     * @param doc  The position (int) to take out
+     */
+    private void removePosting(
+        long gram,
+        int doc)
+    {
+        Postings p = postings.get(gram);
+        if (p != null && p.remove(doc) && p.size == 0)
+        {
+            postings.remove(gram);
+        }
+    }
+
+    /**
+     * Splits the text into its trigrams, each packed into a long with its position
+     *
+     * @param text The text (String) to split
+     * @return The trigrams of the text with their positions, empty if it is shorter than GRAM characters
+     */
+    private static List<Long> grams(String text)
+    {
+        List<Long> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM <= text.length(); i++)
+        {
+            grams.add(gram(text,
+                i) | ((long) i << POSITION_SHIFT));
+        }
+        return grams;
+    }
+
+    /**
+     * Packs the trigram at a position of the text into a long
+     *
+     * @param text The text (String)
+     * @param at   Where (int) the trigram starts in the text
+     * @return The three characters (long) of the trigram, 16 bits each
+     */
+    private static long gram(
+        String text,
+        int at)
+    {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+
+    /**
+     * The sorted positions of the users having one trigram
+     */
+    private static class Postings
+    {
+        /**
+         * The positions (int), sorted, in the first size slots
+         */
+        private int[] docs = new int[4];
+
+        /**
+         * The number of positions (int) in the list
+         */
+        private int size = 0;
+
+        /**
+         * Adds a position, keeping the list sorted. New users get the highest position so this is usually an append.
+         *
+         * @param doc The position (int) to add
+         */
+        private void add(int doc)
+        {
+            int at = size == 0 || docs[size - 1] < doc ? size : Arrays.binarySearch(docs,
+                0,
+                size,
+                doc);
+            if (at < 0)
+            {
+                at = -at - 1;
+            } else if (at < size)
+            {
+                return;
+            }
+            if (size == docs.length)
+            {
+                docs = Arrays.copyOf(docs,
+                    size * 2);
+            }
+            System.arraycopy(docs,
+                at,
+                docs,
+                at + 1,
+                size - at);
+            docs[at] = doc;
+            size++;
+        }
+
+        /**
+         * Takes a position out of the list
+         *
+         * @param doc The position (int) to take out
+         * @return true if the position was in the list
+         */
+        private boolean remove(int doc)
+        {
+            int at = Arrays.binarySearch(docs,
+                0,
+                size,
+                doc);
+            if (at < 0)
+            {
+                return false;
+            }
+            System.arraycopy(docs,
+                at + 1,
+                docs,
+                at,
+                size - at - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * Keeps only the candidates that are also in this list. Each candidate is looked for by doubling steps
+         * from where the previous one was found, then a binary search within the last step, so lists of about
+         * the same size cost about as much as merging them and a short list of candidates about as much as
+         * binary searching each one.
+         *
+         * @param candidates Sorted positions (int), changed in place
+         * @param count      The number of candidates (int) in use
+         * @return The number of candidates (int) left, at the start of the array
+         */
+        private int retainAll(
+            int[] candidates,
+            int count)
+        {
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < count && from < size; i++)
+            {
+                int step = 1;
+                while (from + step < size && docs[from + step - 1] < candidates[i])
+                {
+                    step *= 2;
+                }
+                int at = Arrays.binarySearch(docs,
+                    from,
+                    Math.min(from + step,
+                        size),
+                    candidates[i]);
+                if (at >= 0)
+                {
+                    candidates[kept++] = candidates[i];
+                    from = at + 1;
+                } else
+                {
+                    from = -at - 1;
+                }
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * The best matches of a search so far, in a heap with the worst of them on top, ordered like rank(String).
+     * The exact match, the position of the substring and the length are packed into one long per match, so usernames
+     * are only compared when those tie.
+     */
+    private static class TopMatches
+    {
+        /**
+         * The usernames by position, read only
+         */
+        private final String[] usernames;
+
+        /**
+         * The most matches (int) to keep
+         */
+        private final int limit;
+
+        /**
+         * The positions (int) of the matches kept, as a heap in the first size slots. Grows up to limit.
+         */
+        private int[] docs;
+
+        /**
+         * The packed rank (long) of each match kept, in the same slot as its position
+         */
+        private long[] keys;
+
+        /**
+         * The number of matches (int) kept
+         */
+        private int size = 0;
+
+        /**
+         * Given the params, create an empty set of matches
+         *
+         * @param usernames The usernames by position
+         * @param limit     The most matches (int) to keep
+         */
+        TopMatches(
+            String[] usernames,
+            int limit)
+        {
+            this.usernames = usernames;
+            this.limit = limit;
+            this.docs = new int[Math.min(limit,
+                64)];
+            this.keys = new long[docs.length];
+        }
+
+        /**
+         * Checks if no more matches can be kept without replacing one
+         *
+         * @return true if limit matches are kept
+         */
+        boolean isFull()
+        {
+            return size == limit;
+        }
+
+        /**
+         * Keeps a match if there is room or it ranks before the worst match kept, which it then replaces
+         *
+         * @param doc   The position (int) of the user
+         * @param exact Whether (boolean) the username is the substring
+         * @param at    Where (int) the substring starts in the username
+         */
+        void offer(
+            int doc,
+            boolean exact,
+            int at)
+        {
+            if (limit == 0)
+            {
+                return;
+            }
+            long key = ((exact ? 0L : 1L) << 62) | ((long) at << 31) | usernames[doc].length();
+            if (size < limit)
+            {
+                if (size == docs.length)
+                {
+                    docs = Arrays.copyOf(docs,
+                        (int) Math.min(limit,
+                            2L * size));
+                    keys = Arrays.copyOf(keys,
+                        docs.length);
+                }
+                docs[size] = doc;
+                keys[size] = key;
+                siftUp(size++);
+            } else if (compare(doc,
+                key,
+                0) < 0)
+            {
+                docs[0] = doc;
+                keys[0] = key;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Takes the matches out of the heap, best first
+         *
+         * @return The positions (int) of the matches kept, in rank order
+         */
+        int[] sorted()
+        {
+            int[] sorted = new int[size];
+            while (size > 0)
+            {
+                sorted[size - 1] = docs[0];
+                size--;
+                docs[0] = docs[size];
+                keys[0] = keys[size];
+                siftDown(0);
+            }
+            return sorted;
+        }
+
+        /**
+         * Compares a match with the one kept in a slot
+         *
+         * @param doc  The position (int) of the match
+         * @param key  The packed rank (long) of the match
+         * @param slot The slot (int) of the kept match
+         * @return Negative (int) if the match ranks first, positive if the kept one does
+         */
+        private int compare(
+            int doc,
+            long key,
+            int slot)
+        {
+            int byKey = Long.compare(key,
+                keys[slot]);
+            return byKey != 0 ? byKey : usernames[doc].compareTo(usernames[docs[slot]]);
+        }
+
+        /**
+         * Moves the match in a slot up until its parent ranks after it
+         *
+         * @param slot The slot (int) of the match
+         */
+        private void siftUp(int slot)
+        {
+            int doc = docs[slot];
+            long key = keys[slot];
+            while (slot > 0)
+            {
+                int parent = (slot - 1) / 2;
+                if (compare(doc,
+                    key,
+                    parent) <= 0)
+                {
+                    break;
+                }
+                docs[slot] = docs[parent];
+                keys[slot] = keys[parent];
+                slot = parent;
+            }
+            docs[slot] = doc;
+            keys[slot] = key;
+        }
+
+        /**
+         * Moves the match in a slot down until both its children rank before it
+         *
+         * @param slot The slot (int) of the match
+         */
+        private void siftDown(int slot)
+        {
+            int doc = docs[slot];
+            long key = keys[slot];
+            while (2 * slot + 1 < size)
+            {
+                int child = 2 * slot + 1;
+                if (child + 1 < size && compare(docs[child + 1],
+                    keys[child + 1],
+                    child) > 0)
+                {
+                    child++;
+                }
+                if (compare(doc,
+                    key,
+                    child) >= 0)
+                {
+                    break;
+                }
+                docs[slot] = docs[child];
+                keys[slot] = keys[child];
+                slot = child;
+            }
+            docs[slot] = doc;
+            keys[slot] = key;
+        }
+    }
+}
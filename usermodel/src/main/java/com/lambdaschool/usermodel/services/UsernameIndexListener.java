@@ -0,0 +1,54 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Keeps the username search index current. Hibernate calls this listener for every user it inserts,
+ * updates or deletes; the index is changed once the transaction commits so a rolled back change never shows up.
+ * <p>
+ * Rows written with SQL that does not go through the User entity are not seen.
+ */
+@Component
+public class UsernameIndexListener
+{
+    /**
+     * The index to keep current, lazy as explained in AfterCommit
+     */
+    @Lazy
+    @Autowired
+    private UsernameIndex usernameIndex;
+
+    /**
+     * Puts the new or changed username in the index
+     *
+     * @param user The user inserted or updated
+     */
+    @PostPersist
+    @PostUpdate
+    public void userSaved(User user)
+    {
+        long userid = user.getUserid();
+        String username = user.getUsername();
+        AfterCommit.run(() -> usernameIndex.put(userid,
+            username));
+    }
+
+    /**
+     * Takes the deleted user out of the index
+     *
+     * @param user The user deleted
+     */
+    @PostRemove
+    public void userRemoved(User user)
+    {
+        long userid = user.getUserid();
+        AfterCommit.run(() -> usernameIndex.remove(userid));
+    }
+}
@@ -0,0 +1,35 @@
+package com.lambdaschool.usermodel.views;
+
+/**
+ * Used to read what the ETag of a role is made of without reading its users, see RoleRepository.findVersionByRoleid
+ */
+public interface RoleVersion
+{
+    /**
+     * The version of the role itself
+     *
+     * @return the version (long) of the role
+     */
+    long getVersion();
+
+    /**
+     * The number of users having the role
+     *
+     * @return the count (long) of the users, 0 if none
+     */
+    long getMembers();
+
+    /**
+     * The versions of the users having the role added up
+     *
+     * @return the sum (long) of the versions, 0 if no users
+     */
+    long getMemberversions();
+
+    /**
+     * A hash of the id and version of each user having the role, added up
+     *
+     * @return the sum (long) of the hashes, 0 if no users
+     */
+    long getMemberhash();
+}
@@ -0,0 +1,28 @@
+package com.lambdaschool.usermodel.views;
+
+/**
+ * Used to read the number of useremails of each user, with the user's id and name, to fill the email counts
+ */
+public interface UserEmailCount
+{
+    /**
+     * The primary key of the user
+     *
+     * @return the user id (long)
+     */
+    long getUserid();
+
+    /**
+     * The name of the user
+     *
+     * @return the username (String), in lowercase
+     */
+    String getUsername();
+
+    /**
+     * The number of useremails of the user, 0 if none
+     *
+     * @return the count (long) of the useremails
+     */
+    long getCountemails();
+}
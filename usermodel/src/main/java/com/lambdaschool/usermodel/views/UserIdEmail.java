@@ -0,0 +1,28 @@
+package com.lambdaschool.usermodel.views;
+
+/**
+ * Used to read only a useremail and the id of its user, for example to export the useremails next to their users
+ */
+public interface UserIdEmail
+{
+    /**
+     * The primary key of the user the useremail belongs to
+     *
+     * @return the user id (long)
+     */
+    long getUserid();
+
+    /**
+     * The primary key of the useremail
+     *
+     * @return the useremail id (long)
+     */
+    long getUseremailid();
+
+    /**
+     * The email address
+     *
+     * @return the useremail (String)
+     */
+    String getUseremail();
+}
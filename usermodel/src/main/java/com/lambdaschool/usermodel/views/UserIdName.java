@@ -0,0 +1,21 @@
+package com.lambdaschool.usermodel.views;
+
+/**
+ * Used to read only the id and username of users, for example to build the username search index
+ */
+public interface UserIdName
+{
+    /**
+     * The primary key of the user
+     *
+     * @return the user id (long)
+     */
+    long getUserid();
+
+    /**
+     * The name of the user
+     *
+     * @return the username (String), in lowercase
+     */
+    String getUsername();
+}
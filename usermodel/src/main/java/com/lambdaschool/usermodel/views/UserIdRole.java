@@ -0,0 +1,21 @@
+package com.lambdaschool.usermodel.views;
+
+/**
+ * Used to read only the id of a user and the id of one of its roles, for example to export the roles next to their users
+ */
+public interface UserIdRole
+{
+    /**
+     * The primary key of the user
+     *
+     * @return the user id (long)
+     */
+    long getUserid();
+
+    /**
+     * The primary key of the role
+     *
+     * @return the role id (long)
+     */
+    long getRoleid();
+}
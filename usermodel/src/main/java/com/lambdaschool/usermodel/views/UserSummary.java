@@ -0,0 +1,29 @@
+package com.lambdaschool.usermodel.views;
+
+/**
+ * Used to read only the id, username and primary email of users, for the view=summary lists.
+ * Queries returning this projection select only those three columns.
+ */
+public interface UserSummary
+{
+    /**
+     * The primary key of the user
+     *
+     * @return the user id (long)
+     */
+    long getUserid();
+
+    /**
+     * The name of the user
+     *
+     * @return the username (String), in lowercase
+     */
+    String getUsername();
+
+    /**
+     * The primary email of the user
+     *
+     * @return the primary email (String), in lowercase
+     */
+    String getPrimaryemail();
+}
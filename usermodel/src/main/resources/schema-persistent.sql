@@ -0,0 +1,71 @@
+-- Schema of the persistent profile, run on every start. Only creates what does not exist yet, so existing data is kept.
+-- Must match the models: Hibernate checks it against them at startup (spring.jpa.hibernate.ddl-auto=validate).
+CREATE SEQUENCE IF NOT EXISTS hibernate_sequence START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS roles
+(
+    roleid             BIGINT       NOT NULL PRIMARY KEY,
+    created_by         VARCHAR(255),
+    created_date       TIMESTAMP,
+    last_modified_by   VARCHAR(255),
+    last_modified_date TIMESTAMP,
+    name               VARCHAR(255) NOT NULL UNIQUE,
+    version            BIGINT       NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS users
+(
+    userid             BIGINT       NOT NULL PRIMARY KEY,
+    created_by         VARCHAR(255),
+    created_date       TIMESTAMP,
+    last_modified_by   VARCHAR(255),
+    last_modified_date TIMESTAMP,
+    password           VARCHAR(255) NOT NULL,
+    primaryemail       VARCHAR(255) NOT NULL UNIQUE,
+    username           VARCHAR(255) NOT NULL UNIQUE,
+    version            BIGINT       NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS useremails
+(
+    useremailid        BIGINT       NOT NULL PRIMARY KEY,
+    created_by         VARCHAR(255),
+    created_date       TIMESTAMP,
+    last_modified_by   VARCHAR(255),
+    last_modified_date TIMESTAMP,
+    useremail          VARCHAR(255) NOT NULL,
+    userid             BIGINT       NOT NULL REFERENCES users (userid),
+    version            BIGINT       NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS userroles
+(
+    roleid             BIGINT NOT NULL REFERENCES roles (roleid),
+    userid             BIGINT NOT NULL REFERENCES users (userid),
+    created_by         VARCHAR(255),
+    created_date       TIMESTAMP,
+    last_modified_by   VARCHAR(255),
+    last_modified_date TIMESTAMP,
+    PRIMARY KEY (roleid, userid)
+);
+
+-- databases created before the version columns existed get them here, every row starting at version 0
+ALTER TABLE roles ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE useremails ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- the primary key starts with roleid, this one finds the roles of a user
+CREATE INDEX IF NOT EXISTS userroles_userid ON userroles (userid);
+
+-- the change history, only ever appended to, see AuditLog
+CREATE TABLE IF NOT EXISTS auditlog
+(
+    auditid     BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    tablename   VARCHAR(255) NOT NULL,
+    rowkey      VARCHAR(255) NOT NULL,
+    action      VARCHAR(255) NOT NULL,
+    changedby   VARCHAR(255),
+    changeddate TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS auditlog_row ON auditlog (tablename, rowkey);
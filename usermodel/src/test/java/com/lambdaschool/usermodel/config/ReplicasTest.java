@@ -0,0 +1,139 @@
+package com.lambdaschool.usermodel.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that a write committed outside a request keeps the reads outside a request on the primary until the replica
+ * has it, and leaves nothing behind on the thread for a request it serves later. The replica is the primary itself.
+ */
+public class ReplicasTest
+{
+    private static final String URL = "jdbc:h2:mem:replicastest;DB_CLOSE_DELAY=-1";
+
+    private Replicas replicas;
+
+    @Before
+    public void setUp()
+    {
+        replicas = new Replicas(pool(),
+            Collections.singletonList(pool()),
+            Duration.ofSeconds(5));
+        replicas.createHeartbeatTable();
+        replicas.heartbeat();
+    }
+
+    @After
+    public void tearDown()
+    {
+        RequestContextHolder.resetRequestAttributes();
+        replicas.close();
+    }
+
+    @Test
+    public void backgroundWriteIsReadFromPrimaryUntilReplicaHasIt() throws Exception
+    {
+        commitWrite();
+
+        assertEquals(Replicas.PRIMARY,
+            routeRead());
+        // another thread outside a request, like the next run of a scheduled job, sees the write too
+        assertEquals(Replicas.PRIMARY,
+            CompletableFuture.supplyAsync(this::routeRead)
+                .get(10,
+                    TimeUnit.SECONDS));
+
+        replicas.heartbeat();
+        assertEquals("replica-0",
+            routeRead());
+    }
+
+    @Test
+    public void backgroundWriteIsNotKeptForLaterRequests() throws Exception
+    {
+        commitWrite();
+
+        // the same pooled thread now serves a request from a client that has not written
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(),
+            new MockHttpServletResponse()));
+        assertEquals("replica-0",
+            routeRead());
+    }
+
+    @Test
+    public void requestWriteIsKeptForTheRestOfTheRequest() throws Exception
+    {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(),
+            response));
+
+        commitWrite();
+
+        assertEquals(Replicas.PRIMARY,
+            routeRead());
+        assertNotNull(response.getHeader(Replicas.READ_AFTER_HEADER));
+        replicas.clearReadAfter();
+    }
+
+    /**
+     * Routes a read-write transaction and commits it a little after the last heartbeat
+     */
+    private void commitWrite() throws InterruptedException
+    {
+        Thread.sleep(5);
+        TransactionSynchronizationManager.initSynchronization();
+        try
+        {
+            assertEquals(Replicas.PRIMARY,
+                replicas.route());
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            {
+                synchronization.afterCommit();
+            }
+        } finally
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Routes a read-only transaction
+     *
+     * @return The lookup key of the data source picked
+     */
+    private Object routeRead()
+    {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try
+        {
+            return replicas.route();
+        } finally
+        {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+    }
+
+    private static HikariDataSource pool()
+    {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(URL);
+        pool.setMaximumPoolSize(1);
+        return pool;
+    }
+}
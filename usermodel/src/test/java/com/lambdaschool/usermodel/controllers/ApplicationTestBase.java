@@ -0,0 +1,73 @@
+package com.lambdaschool.usermodel.controllers;
+
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The settings shared by the tests running the whole application through MockMvc: each test class gets its own
+ * in-memory database, and the H2 servers are not started.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"spring.datasource.generate-unique-name=true",
+    "h2.tcp.enabled=false",
+    "h2.web.enabled=false"})
+@AutoConfigureMockMvc
+abstract class ApplicationTestBase
+{
+    /**
+     * The longest (long) a request is given to start the statement awaited, in seconds
+     */
+    private static final long LOCK_WAIT_TIMEOUT = 10;
+
+    @Autowired
+    protected MockMvc mockMvc;
+
+    @Autowired
+    protected EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Waits until another session of the database is running a statement starting with the given text, for example a
+     * request writing a row another transaction changed and has not committed yet. H2 shows the statement for as long
+     * as it waits, whether it is blocked on the row or retries the statement until the row is released.
+     *
+     * @param statement The start (String) of the statement, in any case
+     * @param request   The request expected to run it, which fails the test if it ends before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    protected void awaitStatement(
+        String statement,
+        Future<?> request) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(LOCK_WAIT_TIMEOUT);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try
+        {
+            while (((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS WHERE ID <> SESSION_ID() AND LOWER(STATEMENT) LIKE :statement")
+                .setParameter("statement",
+                    statement.toLowerCase() + "%")
+                .getSingleResult()).longValue() == 0)
+            {
+                assertFalse("The request ended before running " + statement,
+                    request.isDone());
+                assertTrue("The request did not run " + statement + " within " + LOCK_WAIT_TIMEOUT + " seconds",
+                    System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        } finally
+        {
+            entityManager.close();
+        }
+    }
+}
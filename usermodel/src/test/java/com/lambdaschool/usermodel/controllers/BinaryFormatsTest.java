@@ -0,0 +1,75 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.lambdaschool.usermodel.config.BinaryFormatsConfig;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that a user sent as Smile is read like one sent as JSON, and comes back the same in Smile
+ */
+public class BinaryFormatsTest extends ApplicationTestBase
+{
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+    @Test
+    public void userPostedAsSmileComesBackTheSame() throws Exception
+    {
+        String username = "smile" + System.nanoTime();
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username",
+            username);
+        user.put("password",
+            "password");
+        user.put("primaryemail",
+            username + "@lambdaschool.local");
+        user.put("roles",
+            Collections.emptyList());
+        user.put("useremails",
+            Collections.singletonList(Collections.singletonMap("useremail",
+                "second." + username + "@lambdaschool.local")));
+
+        String location = mockMvc.perform(post("/users/user").contentType(BinaryFormatsConfig.SMILE)
+            .content(smileMapper.writeValueAsBytes(user)))
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LOCATION);
+
+        try
+        {
+            byte[] body = mockMvc.perform(get(location).accept(BinaryFormatsConfig.SMILE))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+            JsonNode read = smileMapper.readTree(body);
+            assertEquals(username,
+                read.get("username")
+                    .asText());
+            assertEquals(username + "@lambdaschool.local",
+                read.get("primaryemail")
+                    .asText());
+            assertEquals("second." + username + "@lambdaschool.local",
+                read.get("useremails")
+                    .get(0)
+                    .get("useremail")
+                    .asText());
+        } finally
+        {
+            mockMvc.perform(delete(location));
+        }
+    }
+}
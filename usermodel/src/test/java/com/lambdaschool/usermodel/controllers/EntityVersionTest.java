@@ -0,0 +1,196 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.lambdaschool.usermodel.config.BinaryFormatsConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that users and roles the client already has are answered with NOT_MODIFIED, that the ETag of a user
+ * changes when the user does and differs between formats, and that a change made from an older version of the user,
+ * whether the client says so with If-Match or the version changes while the change is made, is turned away with CONFLICT.
+ */
+public class EntityVersionTest extends ApplicationTestBase
+{
+    private long userid;
+
+    private long roleid;
+
+    @Before
+    public void setUp()
+    {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        userid = entityManager.createQuery("SELECT MAX(u.userid) FROM User u",
+            Long.class)
+            .getSingleResult();
+        roleid = entityManager.createQuery("SELECT MIN(r.roleid) FROM Role r",
+            Long.class)
+            .getSingleResult();
+        entityManager.close();
+    }
+
+    @Test
+    public void getUserWithMatchingETagIsNotModified() throws Exception
+    {
+        String etag = etag("/users/user/" + userid);
+
+        mockMvc.perform(get("/users/user/" + userid).header(HttpHeaders.IF_NONE_MATCH,
+            etag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void getRoleWithMatchingETagIsNotModified() throws Exception
+    {
+        String etag = etag("/roles/role/" + roleid);
+
+        mockMvc.perform(get("/roles/role/" + roleid).header(HttpHeaders.IF_NONE_MATCH,
+            etag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void changedUserGetsNewETag() throws Exception
+    {
+        String etag = etag("/users/user/" + userid);
+
+        mockMvc.perform(patch("/users/user/" + userid).contentType(MediaType.APPLICATION_JSON)
+            .content("{\"primaryemail\":\"changed." + System.nanoTime() + "@lambdaschool.local\"}"))
+            .andExpect(status().isOk());
+
+        assertNotEquals(etag,
+            etag("/users/user/" + userid));
+        mockMvc.perform(get("/users/user/" + userid).header(HttpHeaders.IF_NONE_MATCH,
+            etag))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    public void changeWithOldETagConflicts() throws Exception
+    {
+        String etag = etag("/users/user/" + userid);
+
+        // someone else changes the user after the client read it
+        mockMvc.perform(patch("/users/user/" + userid).contentType(MediaType.APPLICATION_JSON)
+            .content("{\"primaryemail\":\"other." + System.nanoTime() + "@lambdaschool.local\"}"))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(patch("/users/user/" + userid).contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.IF_MATCH,
+                etag)
+            .content("{\"primaryemail\":\"lost." + System.nanoTime() + "@lambdaschool.local\"}"))
+            .andExpect(status().isConflict());
+        mockMvc.perform(put("/users/user/" + userid).contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.IF_MATCH,
+                etag)
+            .content("{\"username\":\"lost\",\"password\":\"password\",\"primaryemail\":\"lost@lambdaschool.local\",\"roles\":[],\"useremails\":[]}"))
+            .andExpect(status().isConflict());
+        String user = mockMvc.perform(get("/users/user/" + userid))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        assertFalse(user,
+            user.contains("lost"));
+
+        mockMvc.perform(patch("/users/user/" + userid).contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.IF_MATCH,
+                etag("/users/user/" + userid))
+            .content("{\"primaryemail\":\"current." + System.nanoTime() + "@lambdaschool.local\"}"))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    public void changeFromStaleVersionConflicts() throws Exception
+    {
+        // another transaction changes the user and holds the change uncommitted, so the request reads the user at
+        // the older version and its update waits on the row until the other transaction commits
+        EntityManager other = entityManagerFactory.createEntityManager();
+        other.getTransaction()
+            .begin();
+        other.createNativeQuery("UPDATE users SET version = version + 1 WHERE userid = :userid")
+            .setParameter("userid",
+                userid)
+            .executeUpdate();
+
+        CompletableFuture<Integer> request = CompletableFuture.supplyAsync(() ->
+        {
+            try
+            {
+                return mockMvc.perform(patch("/users/user/" + userid).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"primaryemail\":\"stale." + System.nanoTime() + "@lambdaschool.local\"}"))
+                    .andReturn()
+                    .getResponse()
+                    .getStatus();
+            } catch (Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        awaitStatement("update users",
+            request);
+        other.getTransaction()
+            .commit();
+        other.close();
+
+        assertEquals(409,
+            (int) request.get(10,
+                TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void formatsGetDifferentETags() throws Exception
+    {
+        String json = mockMvc.perform(get("/users/user/" + userid).accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.VARY,
+                HttpHeaders.ACCEPT))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        String smile = mockMvc.perform(get("/users/user/" + userid).accept(BinaryFormatsConfig.SMILE))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.VARY,
+                HttpHeaders.ACCEPT))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        assertNotEquals(json,
+            smile);
+        // a client holding the JSON does not get NOT_MODIFIED for the Smile
+        mockMvc.perform(get("/users/user/" + userid).accept(BinaryFormatsConfig.SMILE)
+            .header(HttpHeaders.IF_NONE_MATCH,
+                json))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/users/user/" + userid).accept(BinaryFormatsConfig.SMILE)
+            .header(HttpHeaders.IF_NONE_MATCH,
+                smile))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.VARY,
+                HttpHeaders.ACCEPT));
+    }
+
+    private String etag(String url) throws Exception
+    {
+        return mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+    }
+}
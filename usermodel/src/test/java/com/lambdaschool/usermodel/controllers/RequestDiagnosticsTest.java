@@ -0,0 +1,52 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.config.DiagnosticsFilter;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that the diagnostics of a request count the entities and collections it loaded with the Hibernate statistics
+ * off, as they are by default
+ */
+public class RequestDiagnosticsTest extends ApplicationTestBase
+{
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void loadsAreCountedWithoutStatistics() throws Exception
+    {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        long userid = ((Number) entityManager.createNativeQuery("SELECT MAX(userid) FROM useremails")
+            .getSingleResult()).longValue();
+        entityManager.close();
+
+        String id = mockMvc.perform(get("/users/user/" + userid).header(DiagnosticsFilter.DIAGNOSTICS_HEADER,
+            "true"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(DiagnosticsFilter.DIAGNOSTICS_ID_HEADER);
+
+        JsonNode diagnostics = objectMapper.readTree(mockMvc.perform(get("/diagnostics/request/" + id))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString());
+        // the user and its roles, then its useremails and roles collections on first use
+        assertTrue(diagnostics.toString(),
+            diagnostics.get("entitiesLoaded")
+                .asLong() > 1);
+        assertTrue(diagnostics.toString(),
+            diagnostics.get("collectionsLoaded")
+                .asLong() > 0);
+    }
+}
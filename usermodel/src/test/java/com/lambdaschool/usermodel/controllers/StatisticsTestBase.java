@@ -0,0 +1,23 @@
+package com.lambdaschool.usermodel.controllers;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * The tests that count what Hibernate runs, with the statistics turned on and their per session log lines off
+ */
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+    "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"})
+abstract class StatisticsTestBase extends ApplicationTestBase
+{
+    protected Statistics statistics;
+
+    @Before
+    public void setUpStatistics()
+    {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class)
+            .getStatistics();
+    }
+}
@@ -0,0 +1,95 @@
+package com.lambdaschool.usermodel.controllers;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that listing users runs a small, fixed number of SQL statements no matter how many users are returned.
+ * The seed data has 30 users so loading their useremails and roles one user at a time would take over 60 statements.
+ * Also checks that a user the client already has is answered from its version alone.
+ */
+public class UserControllerStatementCountTest extends StatisticsTestBase
+{
+    /**
+     * The most statements a listing endpoint may run: the users, their roles and their useremails
+     */
+    private static final long MAX_STATEMENTS = 3;
+
+    @Test
+    public void listAllUsersRunsFixedNumberOfStatements() throws Exception
+    {
+        assertStatementCount("/users/users");
+    }
+
+    @Test
+    public void listUsersLikeNameRunsFixedNumberOfStatements() throws Exception
+    {
+        assertStatementCount("/users/user/name/like/a");
+    }
+
+    @Test
+    public void listUsersPageRunsFixedNumberOfStatements() throws Exception
+    {
+        assertStatementCount("/users/users/page?size=100");
+    }
+
+    @Test
+    public void streamAllUsersRunsFixedNumberOfStatements() throws Exception
+    {
+        // the users, their useremails and their role ids are merged from three streams, plus one for the roles
+        assertStatementCount("/users/users/stream",
+            MAX_STATEMENTS + 1);
+    }
+
+    @Test
+    public void getUserNotModifiedOnlyReadsTheVersion() throws Exception
+    {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        long userid = entityManager.createQuery("SELECT MIN(u.userid) FROM User u",
+            Long.class)
+            .getSingleResult();
+        entityManager.close();
+
+        String etag = mockMvc.perform(get("/users/user/" + userid))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        statistics.clear();
+
+        mockMvc.perform(get("/users/user/" + userid).header(HttpHeaders.IF_NONE_MATCH,
+            etag))
+            .andExpect(status().isNotModified());
+
+        assertEquals(1,
+            statistics.getPrepareStatementCount());
+    }
+
+    private void assertStatementCount(String url) throws Exception
+    {
+        assertStatementCount(url,
+            MAX_STATEMENTS);
+    }
+
+    private void assertStatementCount(
+        String url,
+        long maxStatements) throws Exception
+    {
+        statistics.clear();
+
+        mockMvc.perform(get(url))
+            .andExpect(status().isOk());
+
+        long count = statistics.getPrepareStatementCount();
+        assertTrue(url + " ran " + count + " statements",
+            count <= maxStatements);
+    }
+}
@@ -0,0 +1,185 @@
+package com.lambdaschool.usermodel.controllers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that replacing the roles or useremails of a user, with PATCH or with PUT, only inserts and deletes the rows
+ * that changed, and touches nothing when the user sends back what it already has.
+ */
+public class UserReplaceChildrenTest extends StatisticsTestBase
+{
+    private long userid;
+
+    private String username;
+
+    private String password;
+
+    private String primaryemail;
+
+    private List<Long> roleids;
+
+    private List<String> useremails;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp()
+    {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        userid = ((Number) entityManager.createNativeQuery("SELECT MAX(userid) FROM useremails")
+            .getSingleResult()).longValue();
+        Object[] user = (Object[]) entityManager.createNativeQuery("SELECT username, password, primaryemail FROM users WHERE userid = :userid")
+            .setParameter("userid",
+                userid)
+            .getSingleResult();
+        username = (String) user[0];
+        password = (String) user[1];
+        primaryemail = (String) user[2];
+        roleids = ((List<Number>) entityManager.createNativeQuery("SELECT roleid FROM userroles WHERE userid = :userid")
+            .setParameter("userid",
+                userid)
+            .getResultList()).stream()
+            .map(Number::longValue)
+            .collect(Collectors.toList());
+        useremails = entityManager.createNativeQuery("SELECT useremail FROM useremails WHERE userid = :userid")
+            .setParameter("userid",
+                userid)
+            .getResultList();
+        entityManager.close();
+    }
+
+    @Test
+    public void unchangedRolesAndUseremailsTouchNoRows() throws Exception
+    {
+        assertUnchangedTouchesNoRows(false);
+    }
+
+    @Test
+    public void unchangedUserTouchesNoRowsOnPut() throws Exception
+    {
+        assertUnchangedTouchesNoRows(true);
+    }
+
+    @Test
+    public void changedUseremailInsertsAndDeletesOneRow() throws Exception
+    {
+        assertChangedUseremailInsertsAndDeletesOneRow(false);
+    }
+
+    @Test
+    public void changedUseremailInsertsAndDeletesOneRowOnPut() throws Exception
+    {
+        assertChangedUseremailInsertsAndDeletesOneRow(true);
+    }
+
+    @Test
+    public void changedRoleInsertsAndDeletesOneRow() throws Exception
+    {
+        assertChangedRoleInsertsAndDeletesOneRow(false);
+    }
+
+    @Test
+    public void changedRoleInsertsAndDeletesOneRowOnPut() throws Exception
+    {
+        assertChangedRoleInsertsAndDeletesOneRow(true);
+    }
+
+    private void assertUnchangedTouchesNoRows(boolean usePut) throws Exception
+    {
+        statistics.clear();
+
+        replaceUser(usePut,
+            roleids,
+            useremails);
+
+        assertEquals(0,
+            statistics.getEntityInsertCount());
+        assertEquals(0,
+            statistics.getEntityDeleteCount());
+        assertEquals(0,
+            statistics.getEntityUpdateCount());
+    }
+
+    private void assertChangedUseremailInsertsAndDeletesOneRow(boolean usePut) throws Exception
+    {
+        List<String> changed = new ArrayList<>(useremails);
+        changed.set(0,
+            "replaced." + System.nanoTime() + "@lambdaschool.local");
+
+        statistics.clear();
+
+        replaceUser(usePut,
+            roleids,
+            changed);
+
+        assertEquals(1,
+            statistics.getEntityInsertCount());
+        assertEquals(1,
+            statistics.getEntityDeleteCount());
+    }
+
+    private void assertChangedRoleInsertsAndDeletesOneRow(boolean usePut) throws Exception
+    {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        long otherRoleid = ((Number) entityManager.createNativeQuery("SELECT MIN(roleid) FROM roles WHERE roleid NOT IN (:roleids)")
+            .setParameter("roleids",
+                roleids)
+            .getSingleResult()).longValue();
+        entityManager.close();
+
+        List<Long> changed = new ArrayList<>(roleids);
+        changed.set(0,
+            otherRoleid);
+
+        statistics.clear();
+
+        replaceUser(usePut,
+            changed,
+            useremails);
+
+        assertEquals(1,
+            statistics.getEntityInsertCount());
+        assertEquals(1,
+            statistics.getEntityDeleteCount());
+    }
+
+    private void replaceUser(
+        boolean usePut,
+        List<Long> roleids,
+        List<String> useremails) throws Exception
+    {
+        String roles = roleids.stream()
+            .map(roleid -> "{\"role\":{\"roleid\":" + roleid + "}}")
+            .collect(Collectors.joining(","));
+        String emails = useremails.stream()
+            .map(useremail -> "{\"useremail\":\"" + useremail + "\"}")
+            .collect(Collectors.joining(","));
+
+        String children = "\"roles\":[" + roles + "],\"useremails\":[" + emails + "]";
+
+        // PUT sends the rest of the user as it is, PATCH only the roles and useremails
+        MockHttpServletRequestBuilder request;
+        if (usePut)
+        {
+            request = put("/users/user/" + userid).content("{\"username\":\"" + username + "\",\"password\":\"" + password +
+                "\",\"primaryemail\":\"" + primaryemail + "\"," + children + "}");
+        } else
+        {
+            request = patch("/users/user/" + userid).content("{" + children + "}");
+        }
+        mockMvc.perform(request.contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,95 @@
+package com.lambdaschool.usermodel.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that adding a user role combination that exists already is turned away with status CONFLICT,
+ * both when it was there before and when a concurrent request inserts it first.
+ */
+public class UserRolesConflictTest extends ApplicationTestBase
+{
+    private long userid;
+
+    private long roleid;
+
+    @Before
+    public void setUp()
+    {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        roleid = ((Number) entityManager.createNativeQuery("SELECT roleid FROM roles WHERE name = 'DATA'")
+            .getSingleResult()).longValue();
+        userid = ((Number) entityManager.createNativeQuery("SELECT MIN(u.userid) FROM users u " +
+            "WHERE NOT EXISTS (SELECT 1 FROM userroles ur WHERE ur.userid = u.userid AND ur.roleid = :roleid)")
+            .setParameter("roleid",
+                roleid)
+            .getSingleResult()).longValue();
+        entityManager.close();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        mockMvc.perform(delete("/users/user/" + userid + "/role/" + roleid));
+    }
+
+    @Test
+    public void addExistingUserRoleConflicts() throws Exception
+    {
+        mockMvc.perform(post("/users/user/" + userid + "/role/" + roleid))
+            .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/users/user/" + userid + "/role/" + roleid))
+            .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void addUserRoleInsertedConcurrentlyConflicts() throws Exception
+    {
+        // another transaction inserts the combination first and holds it uncommitted, so the request does not see it,
+        // tries to insert it too and waits on the primary key until the other transaction commits
+        EntityManager other = entityManagerFactory.createEntityManager();
+        other.getTransaction()
+            .begin();
+        other.createNativeQuery("INSERT INTO userroles(userid, roleid) VALUES (:userid, :roleid)")
+            .setParameter("userid",
+                userid)
+            .setParameter("roleid",
+                roleid)
+            .executeUpdate();
+
+        CompletableFuture<Integer> request = CompletableFuture.supplyAsync(() ->
+        {
+            try
+            {
+                return mockMvc.perform(post("/users/user/" + userid + "/role/" + roleid))
+                    .andReturn()
+                    .getResponse()
+                    .getStatus();
+            } catch (Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        awaitStatement("INSERT INTO userroles",
+            request);
+        other.getTransaction()
+            .commit();
+        other.close();
+
+        assertEquals(409,
+            (int) request.get(10,
+                TimeUnit.SECONDS));
+    }
+}
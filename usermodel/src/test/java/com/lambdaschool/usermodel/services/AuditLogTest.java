@@ -0,0 +1,204 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.repository.AuditRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that changes reach the audit log only once their transaction commits, and that a full queue slows
+ * recording down, once for all the changes recorded together, and then drops what finds no room. The queue is kept
+ * small and the wait short so it fills quickly.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"usermodel.audit.queue-size=2",
+    "usermodel.audit.batch-size=1",
+    "usermodel.audit.max-wait=PT0.1S",
+    "spring.datasource.generate-unique-name=true",
+    "h2.tcp.enabled=false",
+    "h2.web.enabled=false"})
+public class AuditLogTest
+{
+    /**
+     * How long (long) in milliseconds to wait for the writer to write a change
+     */
+    private static final long WRITE_TIMEOUT_MILLIS = 10000;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void committedChangeIsWritten() throws Exception
+    {
+        new TransactionTemplate(transactionManager).execute(status ->
+        {
+            auditLog.recorded("roles",
+                "committed",
+                "UPDATE");
+            // nothing is queued before the commit
+            assertEquals(0,
+                auditRepository.findByTablenameAndRowkeyOrderByAuditid("roles",
+                    "committed")
+                    .size());
+            return null;
+        });
+
+        awaitWritten("committed");
+    }
+
+    @Test
+    public void rolledBackChangeIsNotWritten() throws Exception
+    {
+        new TransactionTemplate(transactionManager).execute(status ->
+        {
+            auditLog.recorded("roles",
+                "rolledback",
+                "UPDATE");
+            status.setRollbackOnly();
+            return null;
+        });
+        // changes are written in the order they are recorded, so once this one is written the other would have been too
+        auditLog.recorded("roles",
+            "afterrollback",
+            "UPDATE");
+
+        awaitWritten("afterrollback");
+        assertEquals(0,
+            auditRepository.findByTablenameAndRowkeyOrderByAuditid("roles",
+                "rolledback")
+                .size());
+    }
+
+    @Test
+    public void fullQueueWaitsThenDrops() throws Exception
+    {
+        double droppedBefore = meterRegistry.get("usermodel.audit.dropped")
+            .counter()
+            .count();
+        long backpressureBefore = meterRegistry.get("usermodel.audit.backpressure")
+            .timer()
+            .count();
+
+        // the writer cannot write while the table is away, so it holds one change and the queue two
+        jdbcTemplate.execute("ALTER TABLE auditlog RENAME TO auditlog_away");
+        try
+        {
+            for (int i = 0; i < 6; i++)
+            {
+                auditLog.recorded("roles",
+                    "full" + i,
+                    "UPDATE");
+            }
+        } finally
+        {
+            jdbcTemplate.execute("ALTER TABLE auditlog_away RENAME TO auditlog");
+        }
+
+        double dropped = meterRegistry.get("usermodel.audit.dropped")
+            .counter()
+            .count() - droppedBefore;
+        long backpressure = meterRegistry.get("usermodel.audit.backpressure")
+            .timer()
+            .count() - backpressureBefore;
+        assertTrue("dropped " + dropped,
+            dropped >= 3);
+        assertTrue("waited " + backpressure + " times",
+            backpressure >= dropped);
+
+        // what was held is written once the table is back
+        awaitWritten("full0");
+    }
+
+    @Test
+    public void fullQueueWaitsOncePerBatch() throws Exception
+    {
+        double droppedBefore = meterRegistry.get("usermodel.audit.dropped")
+            .counter()
+            .count();
+        long backpressureBefore = meterRegistry.get("usermodel.audit.backpressure")
+            .timer()
+            .count();
+        List<String> rowkeys = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            rowkeys.add("batch" + i);
+        }
+
+        jdbcTemplate.execute("ALTER TABLE auditlog RENAME TO auditlog_away");
+        long elapsedMillis;
+        try
+        {
+            long start = System.nanoTime();
+            auditLog.recordedAll("userroles",
+                rowkeys,
+                "INSERT");
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally
+        {
+            jdbcTemplate.execute("ALTER TABLE auditlog_away RENAME TO auditlog");
+        }
+
+        double dropped = meterRegistry.get("usermodel.audit.dropped")
+            .counter()
+            .count() - droppedBefore;
+        long backpressure = meterRegistry.get("usermodel.audit.backpressure")
+            .timer()
+            .count() - backpressureBefore;
+        // waiting for each of the 17 or so changes that find no room would take 1.7 seconds
+        assertTrue("took " + elapsedMillis + " ms",
+            elapsedMillis < 1000);
+        assertTrue("dropped " + dropped,
+            dropped >= 15);
+        assertEquals(1,
+            backpressure);
+
+        // what found room is written once the table is back
+        long deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM auditlog WHERE tablename = 'userroles' AND rowkey LIKE 'batch%'",
+            Integer.class) < rowkeys.size() - dropped)
+        {
+            assertTrue("batch not written",
+                System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private void awaitWritten(String rowkey) throws
+                                            InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+        while (auditRepository.findByTablenameAndRowkeyOrderByAuditid("roles",
+            rowkey)
+            .isEmpty())
+        {
+            assertTrue(rowkey + " not written",
+                System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+}
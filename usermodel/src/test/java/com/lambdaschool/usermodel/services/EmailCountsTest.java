@@ -0,0 +1,64 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.views.UserNameCountEmails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the email count report stays ordered by username as users are added, renamed and removed
+ */
+public class EmailCountsTest
+{
+    @Test
+    public void reportStaysOrderedByUsername()
+    {
+        EmailCounts emailCounts = new EmailCounts(new SimpleMeterRegistry());
+        emailCounts.putUser(1,
+            "mike");
+        emailCounts.putUser(2,
+            "alice");
+        emailCounts.putUser(3,
+            "zed");
+        emailCounts.addEmails(1,
+            2);
+        emailCounts.addEmails(3,
+            1);
+        assertEquals("[alice=0, mike=2, zed=1]",
+            report(emailCounts));
+
+        // a rename moves the user, keeping its count
+        emailCounts.putUser(3,
+            "bob");
+        emailCounts.addEmails(1,
+            -1);
+        assertEquals("[alice=0, bob=1, mike=1]",
+            report(emailCounts));
+
+        emailCounts.removeUser(2);
+        // users not counted are left to the next scan
+        emailCounts.addEmails(4,
+            1);
+        assertEquals("[bob=1, mike=1]",
+            report(emailCounts));
+    }
+
+    /**
+     * The report as text
+     *
+     * @param emailCounts The counts to report
+     * @return Each username and its number of emails (String), in report order
+     */
+    private static String report(EmailCounts emailCounts)
+    {
+        List<UserNameCountEmails> report = emailCounts.findAll();
+        return report.stream()
+            .map(count -> count.getUsernamerpt() + "=" + count.getCountemails())
+            .collect(Collectors.toList())
+            .toString();
+    }
+}
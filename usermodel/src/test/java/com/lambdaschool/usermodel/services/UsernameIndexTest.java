@@ -0,0 +1,119 @@
+package com.lambdaschool.usermodel.services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the best matches kept by a search come out in the same order as all matches sorted by rank,
+ * also after users are renamed and removed
+ */
+public class UsernameIndexTest
+{
+    @Test
+    public void searchKeepsTheBestMatchesInRankOrder()
+    {
+        // few letters, so substrings are common, usernames share lengths and positions and the ties go to the names
+        Random random = new Random(42);
+        UsernameIndex index = new UsernameIndex();
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            usernames.add(randomUsername(random));
+            index.put(i,
+                usernames.get(i));
+        }
+
+        assertSearchesMatchAll(index,
+            usernames);
+    }
+
+    @Test
+    public void searchFindsRenamedAndNotRemovedUsers()
+    {
+        Random random = new Random(7);
+        UsernameIndex index = new UsernameIndex();
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            usernames.add(randomUsername(random));
+            index.put(i,
+                usernames.get(i));
+        }
+        for (int i = 0; i < usernames.size(); i += 3)
+        {
+            usernames.set(i,
+                randomUsername(random));
+            index.put(i,
+                usernames.get(i));
+        }
+        for (int i = 0; i < usernames.size(); i += 5)
+        {
+            usernames.set(i,
+                null);
+            index.remove(i);
+        }
+
+        assertSearchesMatchAll(index,
+            usernames);
+    }
+
+    private static String randomUsername(Random random)
+    {
+        StringBuilder username = new StringBuilder();
+        int length = 3 + random.nextInt(8);
+        for (int j = 0; j < length; j++)
+        {
+            username.append((char) ('a' + random.nextInt(4)));
+        }
+        return username.toString();
+    }
+
+    private static void assertSearchesMatchAll(
+        UsernameIndex index,
+        List<String> usernames)
+    {
+        for (String substring : new String[]{"abc", "aaa", "dcba", "abcdab"})
+        {
+            List<Long> all = new ArrayList<>();
+            for (int i = 0; i < usernames.size(); i++)
+            {
+                if (usernames.get(i) != null && usernames.get(i)
+                    .contains(substring))
+                {
+                    all.add((long) i);
+                }
+            }
+            all.sort((a, b) -> UsernameIndex.rank(substring)
+                .compare(usernames.get(a.intValue()),
+                    usernames.get(b.intValue())));
+
+            for (int limit : new int[]{0, 1, 10, 100, all.size() + 1})
+            {
+                // usernames may repeat, so the names are compared rather than which of the equal users came first
+                assertEquals(substring + " limit " + limit,
+                    names(all.subList(0,
+                        Math.min(limit,
+                            all.size())),
+                        usernames),
+                    names(index.search(substring,
+                        limit),
+                        usernames));
+            }
+        }
+    }
+
+    private static List<String> names(
+        List<Long> userids,
+        List<String> usernames)
+    {
+        return userids.stream()
+            .map(userid -> usernames.get(userid.intValue()))
+            .collect(Collectors.toList());
+    }
+}